@@ -13,18 +13,39 @@ import java.util.stream.Collectors;
  */
 public final class Analyzer implements Ast.Visitor<Void> {
 
+    /**
+     * The built-in range functions, which the {@link Generator} emits as
+     * counted loops.
+     */
+    public static final Environment.Function RANGE = new Environment.Function("range", "range", Arrays.asList(Environment.Type.INTEGER, Environment.Type.INTEGER), Environment.Type.INTEGER_ITERABLE, args -> Environment.NIL);
+    public static final Environment.Function RANGE_STEP = new Environment.Function("range", "range", Arrays.asList(Environment.Type.INTEGER, Environment.Type.INTEGER, Environment.Type.INTEGER), Environment.Type.INTEGER_ITERABLE, args -> Environment.NIL);
+
     public Scope scope;
     private Ast.Method method;
+    private final RuntimeContext context;
+    private final SymbolTable symbols;
 
     public Analyzer(Scope parent) {
-        scope = new Scope(parent);
+        this(parent, RuntimeContext.shared());
+    }
+
+    public Analyzer(Scope parent, RuntimeContext context) {
+        this.context = context;
+        scope = context.createScope(parent);
+        symbols = scope.getSymbols();
         scope.defineFunction("print", "System.out.println", Arrays.asList(Environment.Type.ANY), Environment.Type.NIL, args -> Environment.NIL);
+        scope.defineFunction(RANGE);
+        scope.defineFunction(RANGE_STEP);
     }
 
     public Scope getScope() {
         return scope;
     }
 
+    public RuntimeContext getContext() {
+        return context;
+    }
+
     @Override
     public Void visit(Ast.Source ast) {
         try {
@@ -42,6 +63,7 @@ public final class Analyzer implements Ast.Visitor<Void> {
                         main = true;
                     }
                 }
+                Purity.classify(ast.getMethods());
             }
 
             if (!main) {
@@ -61,11 +83,11 @@ public final class Analyzer implements Ast.Visitor<Void> {
         try {
             if (ast.getValue().isPresent()) {
                 visit(ast.getValue().get());
-                requireAssignable(Environment.getType(ast.getTypeName()), ast.getValue().get().getType());
+                requireAssignable(context.getTypes().getType(ast.getTypeName()), ast.getValue().get().getType());
                 scope.defineVariable(ast.getName(), ast.getName(), ast.getValue().get().getType(), Environment.NIL);
             }
             else {
-                scope.defineVariable(ast.getName(), ast.getName(), Environment.getType(ast.getTypeName()), Environment.NIL);
+                scope.defineVariable(ast.getName(), ast.getName(), context.getTypes().getType(ast.getTypeName()), Environment.NIL);
             }
             ast.setVariable(scope.lookupVariable(ast.getName()));
         }
@@ -99,11 +121,11 @@ public final class Analyzer implements Ast.Visitor<Void> {
             if (!ast.getReturnTypeName().isPresent())
                 r_type = Environment.Type.NIL;
             else
-                r_type = Environment.getType(ast.getReturnTypeName().get());
+                r_type = context.getTypes().getType(ast.getReturnTypeName().get());
 
             if (!parameters.isEmpty()) {
                 for (int i = 0; i < parameters.size(); i++)
-                    _parameters[i] = Environment.getType(parameters.get(i));
+                    _parameters[i] = context.getTypes().getType(parameters.get(i));
             }
 
             scope.defineVariable("r_type", "r_type", r_type, Environment.NIL);
@@ -140,7 +162,7 @@ public final class Analyzer implements Ast.Visitor<Void> {
         Environment.Type type = null;
 
         if(ast.getTypeName().isPresent()){
-            type = Environment.getType(ast.getTypeName().get());
+            type = context.getTypes().getType(ast.getTypeName().get());
         }
 
         if (ast.getValue().isPresent()){
@@ -154,7 +176,7 @@ public final class Analyzer implements Ast.Visitor<Void> {
             requireAssignable(type,ast.getValue().get().getType() );
         }
 
-        ast.setVariable(scope.defineVariable(ast.getName(), ast.getName(), type, Environment.NIL));
+        ast.setVariable(scope.defineVariable(ast.getSymbol(symbols), ast.getName(), type, Environment.NIL));
         return null;
     }
 
@@ -214,7 +236,7 @@ public final class Analyzer implements Ast.Visitor<Void> {
             {
                 try {
                     scope = new Scope(scope);
-                    scope.defineVariable(ast.getName(), ast.getName(), Environment.Type.INTEGER, Environment.NIL);
+                    scope.defineVariable(ast.getSymbol(symbols), ast.getName(), Environment.Type.INTEGER, Environment.NIL);
                 }
                 finally {
                     scope = scope.getParent();
@@ -253,6 +275,8 @@ public final class Analyzer implements Ast.Visitor<Void> {
     @Override
     public Void visit(Ast.Stmt.Return ast) {
         visit(ast.getValue());
+        ast.setTailCall(ast.getValue() instanceof Ast.Expr.Function
+                && !((Ast.Expr.Function) ast.getValue()).getReceiver().isPresent());
         try {
             requireAssignable(scope.lookupVariable("returnType").getType(), ast.getValue().getType());
         }
@@ -328,23 +352,23 @@ public final class Analyzer implements Ast.Visitor<Void> {
         //throw new UnsupportedOperationException();
         visit(ast.getLeft());
         visit(ast.getRight());
-        switch (ast.getOperator()) {
-            case "AND": case "OR":
+        if (ast.getKind() == Ast.Expr.Binary.Operator.ADD
+                && (ast.getLeft().getType().equals(Environment.Type.STRING) || ast.getRight().getType().equals(Environment.Type.STRING))) {
+            ast.setType(Environment.Type.STRING);
+            return null;
+        }
+        switch (ast.getKind()) {
+            case AND: case OR:
                 requireAssignable(Environment.Type.BOOLEAN,ast.getRight().getType());
                 requireAssignable(Environment.Type.BOOLEAN,ast.getLeft().getType());
                 ast.setType(Environment.Type.BOOLEAN);
                 break;
-            case "<": case "<=": case ">": case ">=": case "==": case "!=":
+            case LESS: case LESS_EQUAL: case GREATER: case GREATER_EQUAL: case EQUAL: case NOT_EQUAL:
                 requireAssignable(Environment.Type.COMPARABLE,ast.getLeft().getType());
                 requireAssignable(ast.getLeft().getType(),ast.getRight().getType());
                 ast.setType(Environment.Type.BOOLEAN);
                 break;
-            case "+":
-                if(ast.getLeft().getType().equals(Environment.Type.STRING)||ast.getRight().getType().equals(Environment.Type.STRING)) {
-                    ast.setType(Environment.Type.STRING);
-                    break;
-                }
-            case "-": case "*": case "/":
+            case ADD: case SUBTRACT: case MULTIPLY: case DIVIDE:
                 if(ast.getLeft().getType().equals(Environment.Type.INTEGER)){
                     requireAssignable(Environment.Type.INTEGER,ast.getRight().getType());
                     ast.setType(Environment.Type.INTEGER);
@@ -368,9 +392,9 @@ public final class Analyzer implements Ast.Visitor<Void> {
         try {
             if (ast.getReceiver().isPresent()) {
                 Ast.Expr.Access temp = (Ast.Expr.Access) ast.getReceiver().get();
-                temp.setVariable(scope.lookupVariable(temp.getName()));
+                temp.setVariable(scope.lookupVariable(temp.getSymbol(symbols)));
                 try {
-                    scope = scope.lookupVariable(temp.getName()).getType().getScope();
+                    scope = scope.lookupVariable(temp.getSymbol(symbols)).getType().getScope();
                     ast.setVariable(scope.lookupVariable(ast.getName()));
                 }
                 finally {
@@ -378,7 +402,7 @@ public final class Analyzer implements Ast.Visitor<Void> {
                 }
             }
             else {
-                ast.setVariable(scope.lookupVariable(ast.getName()));
+                ast.setVariable(scope.lookupVariable(ast.getSymbol(symbols)));
             }
         }
         catch (RuntimeException re) {
@@ -396,7 +420,7 @@ public final class Analyzer implements Ast.Visitor<Void> {
             if (ast.getReceiver().isPresent()) {
                 visit(ast.getReceiver().get());
 
-                f_parameters = scope.lookupVariable(((Ast.Expr.Access) ast.getReceiver().get()).getName()).getType().getMethod(ast.getName(),
+                f_parameters = scope.lookupVariable(((Ast.Expr.Access) ast.getReceiver().get()).getSymbol(symbols)).getType().getMethod(ast.getName(),
                         ast.getArguments().size()).getParameterTypes();
 
                 for (int i = 0; i < ast.getArguments().size(); i++) {
@@ -404,12 +428,12 @@ public final class Analyzer implements Ast.Visitor<Void> {
                     requireAssignable(f_parameters.get(i + 1), ast.getArguments().get(i).getType());
                 }
 
-                ast.setFunction(scope.lookupVariable(((Ast.Expr.Access) ast.getReceiver().get()).getName()).getType().getMethod(ast.getName(),
+                ast.setFunction(scope.lookupVariable(((Ast.Expr.Access) ast.getReceiver().get()).getSymbol(symbols)).getType().getMethod(ast.getName(),
                         ast.getArguments().size()));
 
             }
             else {
-                f_parameters = scope.lookupFunction(ast.getName(),
+                f_parameters = scope.lookupFunction(ast.getSymbol(symbols),
                         ast.getArguments().size()).getParameterTypes();
 
                 for (int i = 0; i < ast.getArguments().size(); i++) {
@@ -417,7 +441,7 @@ public final class Analyzer implements Ast.Visitor<Void> {
                     requireAssignable(f_parameters.get(i), ast.getArguments().get(i).getType());
                 }
 
-                ast.setFunction(scope.lookupFunction(ast.getName(), ast.getArguments().size()));
+                ast.setFunction(scope.lookupFunction(ast.getSymbol(symbols), ast.getArguments().size()));
             }
         }
         catch (RuntimeException re) {
@@ -115,6 +115,8 @@ public abstract class Ast {
         private final Optional<String> returnTypeName;
         private final List<Stmt> statements;
         private Environment.Function function = null;
+        private final List<SymbolTable.Symbol> parsedSymbols;
+        private boolean pure = false;
 
         public Method(String name, List<String> parameters, List<Stmt> statements) {
             this(name, parameters, new ArrayList<>(), Optional.of("Any"), statements);
@@ -124,11 +126,20 @@ public abstract class Ast {
         }
 
         public Method(String name, List<String> parameters, List<String> parameterTypeNames, Optional<String> returnTypeName, List<Stmt> statements) {
+            this(name, parameters, parameterTypeNames, returnTypeName, statements, null);
+        }
+
+        /**
+         * Creates a method whose parameter names were interned as the given
+         * symbols, any of which may be null.
+         */
+        public Method(String name, List<String> parameters, List<String> parameterTypeNames, Optional<String> returnTypeName, List<Stmt> statements, List<SymbolTable.Symbol> parameterSymbols) {
             this.name = name;
             this.parameters = parameters;
             this.parameterTypeNames = parameterTypeNames;
             this.returnTypeName = returnTypeName;
             this.statements = statements;
+            this.parsedSymbols = parameterSymbols;
         }
 
         public String getName() {
@@ -139,6 +150,20 @@ public abstract class Ast {
             return parameters;
         }
 
+        /**
+         * Returns the symbol ids of the parameters in the given table,
+         * interning those which were parsed with another. Callers resolve
+         * them once per method rather than per call.
+         */
+        public int[] getParameterSymbols(SymbolTable symbols) {
+            int[] ids = new int[parameters.size()];
+            for (int i = 0; i < ids.length; i++) {
+                SymbolTable.Symbol parsed = parsedSymbols != null ? parsedSymbols.get(i) : null;
+                ids[i] = parsed != null && parsed.getTable() == symbols ? parsed.getId() : symbols.intern(parameters.get(i));
+            }
+            return ids;
+        }
+
         public List<String> getParameterTypeNames() {
             return parameterTypeNames;
         }
@@ -162,6 +187,19 @@ public abstract class Ast {
             this.function = function;
         }
 
+        /**
+         * Returns whether the method's result depends only on its arguments
+         * and it has no side effects, so that calls may be memoized. Set by
+         * the analyzer.
+         */
+        public boolean isPure() {
+            return pure;
+        }
+
+        public void setPure(boolean pure) {
+            this.pure = pure;
+        }
+
         @Override
         public boolean equals(Object obj) {
             return obj instanceof Method &&
@@ -187,6 +225,32 @@ public abstract class Ast {
 
     }
 
+    /**
+     * A node naming a variable or function, whose name is interned as a
+     * symbol when it is parsed.
+     */
+    public interface Named {
+
+        String getName();
+
+        /**
+         * Returns the symbol the name was interned as when it was parsed, or
+         * null if the node was built without one.
+         */
+        SymbolTable.Symbol getParsedSymbol();
+
+        /**
+         * Returns the symbol id of the name in the given table, interning it
+         * there if it was parsed with another. The node is not changed, so
+         * that it can be shared by runtimes with different tables.
+         */
+        default int getSymbol(SymbolTable symbols) {
+            SymbolTable.Symbol symbol = getParsedSymbol();
+            return symbol != null && symbol.getTable() == symbols ? symbol.getId() : symbols.intern(getName());
+        }
+
+    }
+
     public static abstract class Stmt extends Ast {
 
         public static final class Expression extends Stmt {
@@ -216,27 +280,42 @@ public abstract class Ast {
 
         }
 
-        public static final class Declaration extends Stmt {
+        public static final class Declaration extends Stmt implements Named {
 
             private final String name;
             private final Optional<String> typeName;
             private final Optional<Expr> value;
             private Environment.Variable variable;
+            private final SymbolTable.Symbol symbol;
 
             public Declaration(String name, Optional<Expr> value) {
                 this(name, Optional.empty(), value);
             }
 
             public Declaration(String name, Optional<String> typeName, Optional<Expr> value) {
+                this(name, typeName, value, null);
+            }
+
+            /**
+             * Creates a declaration whose name was interned as the given
+             * symbol, if it is not null.
+             */
+            public Declaration(String name, Optional<String> typeName, Optional<Expr> value, SymbolTable.Symbol symbol) {
                 this.name = name;
                 this.typeName = typeName;
                 this.value = value;
+                this.symbol = symbol;
             }
 
             public String getName() {
                 return name;
             }
 
+            @Override
+            public SymbolTable.Symbol getParsedSymbol() {
+                return symbol;
+            }
+
             public Optional<String> getTypeName() {
                 return typeName;
             }
@@ -356,22 +435,37 @@ public abstract class Ast {
 
         }
 
-        public static final class For extends Stmt {
+        public static final class For extends Stmt implements Named {
 
             private final String name;
             private final Expr value;
             private final List<Stmt> statements;
+            private final SymbolTable.Symbol symbol;
 
             public For(String name, Expr value, List<Stmt> statements) {
+                this(name, value, statements, null);
+            }
+
+            /**
+             * Creates a loop whose variable name was interned as the given
+             * symbol, if it is not null.
+             */
+            public For(String name, Expr value, List<Stmt> statements, SymbolTable.Symbol symbol) {
                 this.name = name;
                 this.value = value;
                 this.statements = statements;
+                this.symbol = symbol;
             }
 
             public String getName() {
                 return name;
             }
 
+            @Override
+            public SymbolTable.Symbol getParsedSymbol() {
+                return symbol;
+            }
+
             public Expr getValue() {
                 return value;
             }
@@ -437,6 +531,7 @@ public abstract class Ast {
         public static final class Return extends Stmt {
 
             private final Expr value;
+            private boolean tailCall = false;
 
             public Return(Expr value) {
                 this.value = value;
@@ -446,6 +541,19 @@ public abstract class Ast {
                 return value;
             }
 
+            /**
+             * Returns whether the value is a call to a function without a
+             * receiver, which the interpreter may run in place of the
+             * returning method. Set by the analyzer.
+             */
+            public boolean isTailCall() {
+                return tailCall;
+            }
+
+            public void setTailCall(boolean tailCall) {
+                this.tailCall = tailCall;
+            }
+
             @Override
             public boolean equals(Object obj) {
                 return obj instanceof Return &&
@@ -471,6 +579,7 @@ public abstract class Ast {
 
             private final Object literal;
             private Environment.Type type = null;
+            private Environment.PlcObject object = null;
 
             public Literal(Object literal) {
                 this.literal = literal;
@@ -480,6 +589,17 @@ public abstract class Ast {
                 return literal;
             }
 
+            /**
+             * Returns the runtime value of this literal, which is created on
+             * first use and then shared by every evaluation of this node.
+             */
+            public Environment.PlcObject getObject() {
+                if (object == null) {
+                    object = Environment.create(literal);
+                }
+                return object;
+            }
+
             @Override
             public Environment.Type getType() {
                 if (type == null) {
@@ -552,13 +672,54 @@ public abstract class Ast {
 
         public static final class Binary extends Expr {
 
+            /**
+             * The binary operators, resolved once when the node is created
+             * so that evaluating a node never compares operator strings.
+             */
+            public enum Operator {
+                AND("AND"),
+                OR("OR"),
+                LESS("<"),
+                GREATER(">"),
+                LESS_EQUAL("<="),
+                GREATER_EQUAL(">="),
+                EQUAL("=="),
+                NOT_EQUAL("!="),
+                ADD("+"),
+                SUBTRACT("-"),
+                MULTIPLY("*"),
+                DIVIDE("/");
+
+                private final String symbol;
+
+                Operator(String symbol) {
+                    this.symbol = symbol;
+                }
+
+                public String getSymbol() {
+                    return symbol;
+                }
+
+                public static Operator of(String symbol) {
+                    for (Operator operator : values()) {
+                        if (operator.symbol.equals(symbol)) {
+                            return operator;
+                        }
+                    }
+                    throw new IllegalArgumentException("Unknown operator " + symbol + ".");
+                }
+
+            }
+
             private final String operator;
+            private final Operator kind;
             private final Expr left;
             private final Expr right;
             private Environment.Type type = null;
 
             public Binary(String operator, Expr left, Expr right) {
                 this.operator = operator;
+                this.kind = Operator.of(operator);
                 this.left = left;
                 this.right = right;
             }
@@ -567,6 +728,10 @@ public abstract class Ast {
                 return operator;
             }
 
+            public Operator getKind() {
+                return kind;
+            }
+
             public Expr getLeft() {
                 return left;
             }
@@ -608,15 +773,26 @@ public abstract class Ast {
 
         }
 
-        public static final class Access extends Expr {
+        public static final class Access extends Expr implements Named {
 
             private final Optional<Expr> receiver;
             private final String name;
             private Environment.Variable variable = null;
+            private FieldCache cache = null;
+            private final SymbolTable.Symbol symbol;
 
             public Access(Optional<Expr> receiver, String name) {
+                this(receiver, name, null);
+            }
+
+            /**
+             * Creates an access whose name was interned as the given symbol,
+             * if it is not null.
+             */
+            public Access(Optional<Expr> receiver, String name, SymbolTable.Symbol symbol) {
                 this.receiver = receiver;
                 this.name = name;
+                this.symbol = symbol;
             }
 
             public Optional<Expr> getReceiver() {
@@ -627,6 +803,11 @@ public abstract class Ast {
                 return name;
             }
 
+            @Override
+            public SymbolTable.Symbol getParsedSymbol() {
+                return symbol;
+            }
+
             public Environment.Variable getVariable() {
                 if (variable == null) {
                     throw new IllegalStateException("variable is uninitialized");
@@ -638,6 +819,13 @@ public abstract class Ast {
                 this.variable = variable;
             }
 
+            FieldCache getCache() {
+                if (cache == null) {
+                    cache = new FieldCache();
+                }
+                return cache;
+            }
+
             @Override
             public Environment.Type getType() {
                 return getVariable().getType();
@@ -662,17 +850,28 @@ public abstract class Ast {
 
         }
 
-        public static final class Function extends Expr {
+        public static final class Function extends Expr implements Named {
 
             private final Optional<Expr> receiver;
             private final String name;
             private final List<Expr> arguments;
             private Environment.Function function = null;
+            private InlineCache cache = null;
+            private final SymbolTable.Symbol symbol;
 
             public Function(Optional<Expr> receiver, String name, List<Expr> arguments) {
+                this(receiver, name, arguments, null);
+            }
+
+            /**
+             * Creates a call whose name was interned as the given symbol, if
+             * it is not null.
+             */
+            public Function(Optional<Expr> receiver, String name, List<Expr> arguments, SymbolTable.Symbol symbol) {
                 this.receiver = receiver;
                 this.name = name;
                 this.arguments = arguments;
+                this.symbol = symbol;
             }
 
             public Optional<Expr> getReceiver() {
@@ -683,6 +882,11 @@ public abstract class Ast {
                 return name;
             }
 
+            @Override
+            public SymbolTable.Symbol getParsedSymbol() {
+                return symbol;
+            }
+
             public List<Expr> getArguments() {
                 return arguments;
             }
@@ -698,6 +902,13 @@ public abstract class Ast {
                 this.function = function;
             }
 
+            InlineCache getCache() {
+                if (cache == null) {
+                    cache = new InlineCache();
+                }
+                return cache;
+            }
+
             @Override
             public Environment.Type getType() {
                 return getFunction().getReturnType();
@@ -0,0 +1,29 @@
+package plc.project;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+
+/**
+ * The functions every execution engine provides to programs.
+ */
+final class Builtins {
+
+    private Builtins() {}
+
+    static void define(Scope scope) {
+        scope.defineFunction("print", arg -> {
+            System.out.println(arg.getValue());
+            return Environment.NIL;
+        });
+
+        scope.defineFunction("logarithm", arg -> {
+            BigDecimal bd1 = Operators.requireType(BigDecimal.class, arg);
+            BigDecimal result = BigDecimal.valueOf(Math.log(bd1.doubleValue()));
+            return Environment.create(result);
+        });
+
+        scope.defineFunction("range", (start, end) -> Environment.create(Range.of(start, end, Environment.create(BigInteger.ONE))));
+        scope.defineFunction("range", (start, end, step) -> Environment.create(Range.of(start, end, step)));
+    }
+
+}
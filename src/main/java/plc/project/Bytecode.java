@@ -0,0 +1,322 @@
+package plc.project;
+
+import java.util.List;
+
+/**
+ * The bytecode executed by the {@link VirtualMachine}. Each method compiles
+ * to a {@link Chunk}: a flat {@code int[]} of opcodes, each followed by its
+ * operands, and a constant pool holding literal objects and call, variable
+ * and field sites. Instructions operate on an operand stack; locals are
+ * numbered slots of the frame.
+ */
+public final class Bytecode {
+
+    public static final int NIL = 0;
+    public static final int CONST = 1;           // constant
+    public static final int POP = 2;
+    public static final int LOAD_LOCAL = 3;      // slot
+    public static final int STORE_LOCAL = 4;     // slot
+    public static final int LOAD_GLOBAL = 5;     // variable site
+    public static final int STORE_GLOBAL = 6;    // variable site
+    public static final int DEFINE_GLOBAL = 7;   // variable site
+    public static final int GET_FIELD = 8;       // field site
+    public static final int SET_FIELD = 9;       // field site
+    public static final int ADD = 10;
+    public static final int SUBTRACT = 11;
+    public static final int MULTIPLY = 12;
+    public static final int DIVIDE = 13;
+    public static final int LESS = 14;
+    public static final int GREATER = 15;
+    public static final int LESS_EQUAL = 16;
+    public static final int GREATER_EQUAL = 17;
+    public static final int EQUAL = 18;
+    public static final int NOT_EQUAL = 19;
+    public static final int AND = 20;            // target
+    public static final int OR = 21;             // target
+    public static final int BOOLEAN = 22;
+    public static final int JUMP = 23;           // target
+    public static final int JUMP_IF_FALSE = 24;  // target
+    public static final int ITERATE = 25;
+    public static final int NEXT = 26;           // slot, target
+    public static final int CALL = 27;           // call site, arguments
+    public static final int CALL_DIRECT = 28;    // method, arguments
+    public static final int INVOKE = 29;         // method site, arguments
+    public static final int RETURN = 30;
+
+    private static final String[] NAMES = {
+            "NIL", "CONST", "POP", "LOAD_LOCAL", "STORE_LOCAL", "LOAD_GLOBAL",
+            "STORE_GLOBAL", "DEFINE_GLOBAL", "GET_FIELD", "SET_FIELD", "ADD",
+            "SUBTRACT", "MULTIPLY", "DIVIDE", "LESS", "GREATER", "LESS_EQUAL",
+            "GREATER_EQUAL", "EQUAL", "NOT_EQUAL", "AND", "OR", "BOOLEAN", "JUMP",
+            "JUMP_IF_FALSE", "ITERATE", "NEXT", "CALL", "CALL_DIRECT", "INVOKE",
+            "RETURN"
+    };
+
+    private static final int[] OPERANDS = {
+            0, 1, 0, 1, 1, 1,
+            1, 1, 1, 1, 0,
+            0, 0, 0, 0, 0, 0,
+            0, 0, 0, 1, 1, 0, 1,
+            1, 0, 2, 2, 2, 2,
+            0
+    };
+
+    private Bytecode() {}
+
+    /**
+     * Returns the number of operands following the given opcode.
+     */
+    public static int getOperands(int opcode) {
+        return OPERANDS[opcode];
+    }
+
+    /**
+     * A compiled source: the chunk initializing its fields, run once, and
+     * the chunks of its methods, which {@link #CALL_DIRECT} indexes.
+     */
+    public static final class Program {
+
+        private final Chunk fields;
+        private final List<Chunk> methods;
+
+        public Program(Chunk fields, List<Chunk> methods) {
+            this.fields = fields;
+            this.methods = methods;
+        }
+
+        public Chunk getFields() {
+            return fields;
+        }
+
+        public List<Chunk> getMethods() {
+            return methods;
+        }
+
+        /**
+         * Returns a readable listing of every chunk of the program.
+         */
+        public String disassemble() {
+            StringBuilder builder = new StringBuilder();
+            builder.append(fields.disassemble());
+            for (Chunk method : methods) {
+                builder.append(method.disassemble());
+            }
+            return builder.toString();
+        }
+
+    }
+
+    public static final class Chunk {
+
+        private final String name;
+        private final int arity;
+        private final int[] code;
+        private final Object[] constants;
+        private final int locals;
+        private final int maxStack;
+
+        public Chunk(String name, int arity, int[] code, Object[] constants, int locals, int maxStack) {
+            this.name = name;
+            this.arity = arity;
+            this.code = code;
+            this.constants = constants;
+            this.locals = locals;
+            this.maxStack = maxStack;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public int getArity() {
+            return arity;
+        }
+
+        int[] getCode() {
+            return code;
+        }
+
+        Object[] getConstants() {
+            return constants;
+        }
+
+        /**
+         * Returns the number of local slots, including the parameters.
+         */
+        public int getLocals() {
+            return locals;
+        }
+
+        public int getMaxStack() {
+            return maxStack;
+        }
+
+        public String disassemble() {
+            StringBuilder builder = new StringBuilder();
+            builder.append("== ").append(name).append('/').append(arity)
+                    .append(" (locals ").append(locals).append(", stack ").append(maxStack).append(") ==\n");
+            for (int pc = 0; pc < code.length; pc += 1 + OPERANDS[code[pc]]) {
+                int opcode = code[pc];
+                builder.append(String.format("%04d  %-14s", pc, NAMES[opcode]));
+                for (int i = 1; i <= OPERANDS[opcode]; i++) {
+                    builder.append(String.format(" %4d", code[pc + i]));
+                }
+                if (opcode == CONST || opcode == LOAD_GLOBAL || opcode == STORE_GLOBAL || opcode == DEFINE_GLOBAL
+                        || opcode == GET_FIELD || opcode == SET_FIELD || opcode == CALL || opcode == INVOKE) {
+                    builder.append("  ; ").append(describe(constants[code[pc + 1]]));
+                }
+                builder.append('\n');
+            }
+            return builder.toString();
+        }
+
+        private static String describe(Object constant) {
+            if (constant instanceof Environment.PlcObject) {
+                Object value = ((Environment.PlcObject) constant).getValue();
+                return value instanceof String ? "\"" + value + "\"" : String.valueOf(value);
+            }
+            return constant.toString();
+        }
+
+    }
+
+    /**
+     * A global variable operand, resolved in the executing scope and cached
+     * until a variable of that scope chain is defined.
+     */
+    static final class VariableSite {
+
+        private final SymbolTable symbols;
+        private final int symbol;
+        private volatile Resolved<Environment.Variable> resolved;
+
+        VariableSite(SymbolTable symbols, int symbol) {
+            this.symbols = symbols;
+            this.symbol = symbol;
+        }
+
+        /**
+         * Returns the symbol id of the variable in the given table, which is
+         * the compiler's unless the program runs in another runtime.
+         */
+        int getSymbol(SymbolTable symbols) {
+            return symbols.intern(this.symbols, symbol);
+        }
+
+        Environment.Variable resolve(Scope scope) {
+            int version = scope.getVariableVersion();
+            Resolved<Environment.Variable> current = resolved;
+            if (current == null || current.scope != scope || current.version != version) {
+                current = new Resolved<>(scope, version, scope.lookupVariable(getSymbol(scope.getSymbols())));
+                resolved = current;
+            }
+            return current.value;
+        }
+
+        @Override
+        public String toString() {
+            return symbols.name(symbol);
+        }
+
+    }
+
+    /**
+     * The function counterpart of {@link VariableSite}, validated by the
+     * function version of the scope chain instead.
+     */
+    static final class CallSite {
+
+        private final SymbolTable symbols;
+        private final int symbol;
+        private final int arity;
+        private volatile Resolved<Environment.Function> resolved;
+
+        CallSite(SymbolTable symbols, int symbol, int arity) {
+            this.symbols = symbols;
+            this.symbol = symbol;
+            this.arity = arity;
+        }
+
+        Environment.Function resolve(Scope scope) {
+            int version = scope.getFunctionVersion();
+            Resolved<Environment.Function> current = resolved;
+            if (current == null || current.scope != scope || current.version != version) {
+                int own = scope.getSymbols().intern(symbols, symbol);
+                current = new Resolved<>(scope, version, scope.lookupFunction(own, arity));
+                resolved = current;
+            }
+            return current.value;
+        }
+
+        @Override
+        public String toString() {
+            return symbols.name(symbol) + "/" + arity;
+        }
+
+    }
+
+    static final class MethodSite {
+
+        private final SymbolTable symbols;
+        private final int symbol;
+        private final int arity;
+        private final InlineCache cache = new InlineCache();
+
+        MethodSite(SymbolTable symbols, int symbol, int arity) {
+            this.symbols = symbols;
+            this.symbol = symbol;
+            this.arity = arity;
+        }
+
+        Environment.Function resolve(Environment.Type type) {
+            return cache.lookup(type, symbols, symbol, arity);
+        }
+
+        @Override
+        public String toString() {
+            return "." + symbols.name(symbol) + "/" + arity;
+        }
+
+    }
+
+    static final class FieldSite {
+
+        private final SymbolTable symbols;
+        private final int symbol;
+        private final FieldCache cache = new FieldCache();
+
+        FieldSite(SymbolTable symbols, int symbol) {
+            this.symbols = symbols;
+            this.symbol = symbol;
+        }
+
+        Environment.PlcObject get(Environment.PlcObject object) {
+            return cache.get(object, symbols, symbol);
+        }
+
+        void set(Environment.PlcObject object, Environment.PlcObject value) {
+            cache.set(object, symbols, symbol, value);
+        }
+
+        @Override
+        public String toString() {
+            return "." + symbols.name(symbol);
+        }
+
+    }
+
+    private static final class Resolved<T> {
+
+        private final Scope scope;
+        private final int version;
+        private final T value;
+
+        private Resolved(Scope scope, int version, T value) {
+            this.scope = scope;
+            this.version = version;
+            this.value = value;
+        }
+
+    }
+
+}
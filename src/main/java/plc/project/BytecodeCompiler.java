@@ -0,0 +1,293 @@
+package plc.project;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compiles an {@link Ast.Source} to {@link Bytecode} for the
+ * {@link VirtualMachine}. Name resolution follows the closure compiler:
+ * parameters and block declarations become local slots, other names are
+ * globals, and calls to methods of the same source are linked directly.
+ * Names are interned in the compiler's table, which should be the one of
+ * the machine's scope; a program runs in any other as well, translating its
+ * names once per site.
+ */
+public final class BytecodeCompiler {
+
+    private final SymbolTable symbols;
+    private final Map<String, Integer> methods = new HashMap<>();
+
+    private Locals locals;
+    private Emitter emitter;
+
+    public BytecodeCompiler() {
+        this(SymbolTable.shared());
+    }
+
+    public BytecodeCompiler(SymbolTable symbols) {
+        this.symbols = symbols;
+    }
+
+    public Bytecode.Program compile(Ast.Source ast) {
+        methods.clear();
+        for (int i = 0; i < ast.getMethods().size(); i++) {
+            Ast.Method method = ast.getMethods().get(i);
+            methods.put(method.getName() + "/" + method.getParameters().size(), i);
+        }
+
+        locals = new Locals(true, symbols);
+        emitter = new Emitter();
+        for (Ast.Field field : ast.getFields()) {
+            if (field.getValue().isPresent())
+                compile(field.getValue().get());
+            else
+                emitter.emit(Bytecode.NIL, 1);
+            emitter.emit(Bytecode.DEFINE_GLOBAL, -1, emitter.constant(new Bytecode.VariableSite(symbols, symbols.intern(field.getName()))));
+        }
+        emitter.emit(Bytecode.NIL, 1);
+        emitter.emit(Bytecode.RETURN, -1);
+        Bytecode.Chunk fields = emitter.build("<fields>", 0, locals.getSize());
+
+        List<Bytecode.Chunk> chunks = new ArrayList<>();
+        for (Ast.Method method : ast.getMethods()) {
+            chunks.add(compile(method));
+        }
+        return new Bytecode.Program(fields, chunks);
+    }
+
+    private Bytecode.Chunk compile(Ast.Method ast) {
+        locals = new Locals(false, symbols);
+        emitter = new Emitter();
+        for (int parameter : ast.getParameterSymbols(symbols)) {
+            locals.declare(parameter);
+        }
+        for (Ast.Stmt statement : ast.getStatements()) {
+            compile(statement);
+        }
+        emitter.emit(Bytecode.NIL, 1);
+        emitter.emit(Bytecode.RETURN, -1);
+        return emitter.build(ast.getName(), ast.getParameters().size(), locals.getSize());
+    }
+
+    private void compileBlock(List<Ast.Stmt> statements) {
+        locals.push();
+        for (Ast.Stmt statement : statements) {
+            compile(statement);
+        }
+        locals.pop();
+    }
+
+    private void compile(Ast.Stmt ast) {
+        if (ast instanceof Ast.Stmt.Expression) {
+            compile(((Ast.Stmt.Expression) ast).getExpression());
+            emitter.emit(Bytecode.POP, -1);
+        } else if (ast instanceof Ast.Stmt.Declaration) {
+            Ast.Stmt.Declaration declaration = (Ast.Stmt.Declaration) ast;
+            if (declaration.getValue().isPresent())
+                compile(declaration.getValue().get());
+            else
+                emitter.emit(Bytecode.NIL, 1);
+            emitter.emit(Bytecode.STORE_LOCAL, -1, locals.declare(declaration.getSymbol(symbols)));
+        } else if (ast instanceof Ast.Stmt.Assignment) {
+            compileAssignment((Ast.Stmt.Assignment) ast);
+        } else if (ast instanceof Ast.Stmt.If) {
+            Ast.Stmt.If statement = (Ast.Stmt.If) ast;
+            compile(statement.getCondition());
+            int otherwise = emitter.emitJump(Bytecode.JUMP_IF_FALSE, -1);
+            compileBlock(statement.getThenStatements());
+            int end = emitter.emitJump(Bytecode.JUMP, 0);
+            emitter.patch(otherwise);
+            compileBlock(statement.getElseStatements());
+            emitter.patch(end);
+        } else if (ast instanceof Ast.Stmt.For) {
+            Ast.Stmt.For statement = (Ast.Stmt.For) ast;
+            compile(statement.getValue());
+            emitter.emit(Bytecode.ITERATE, 0);
+            locals.push();
+            int slot = locals.declare(statement.getSymbol(symbols));
+            int loop = emitter.position();
+            int end = emitter.emitJump(Bytecode.NEXT, 0, slot);
+            compileBlock(statement.getStatements());
+            emitter.emit(Bytecode.JUMP, 0, loop);
+            emitter.patch(end);
+            locals.pop();
+            emitter.adjust(-1);
+        } else if (ast instanceof Ast.Stmt.While) {
+            Ast.Stmt.While statement = (Ast.Stmt.While) ast;
+            int loop = emitter.position();
+            compile(statement.getCondition());
+            int end = emitter.emitJump(Bytecode.JUMP_IF_FALSE, -1);
+            compileBlock(statement.getStatements());
+            emitter.emit(Bytecode.JUMP, 0, loop);
+            emitter.patch(end);
+        } else if (ast instanceof Ast.Stmt.Return) {
+            compile(((Ast.Stmt.Return) ast).getValue());
+            emitter.emit(Bytecode.RETURN, -1);
+        } else {
+            throw new AssertionError(ast.getClass());
+        }
+    }
+
+    private void compileAssignment(Ast.Stmt.Assignment ast) {
+        if (!(ast.getReceiver() instanceof Ast.Expr.Access))
+            throw new RuntimeException("Assignment Target Error!");
+
+        Ast.Expr.Access target = (Ast.Expr.Access) ast.getReceiver();
+        compile(ast.getValue());
+        if (target.getReceiver().isPresent()) {
+            compile(target.getReceiver().get());
+            emitter.emit(Bytecode.SET_FIELD, -2, emitter.constant(new Bytecode.FieldSite(symbols, target.getSymbol(symbols))));
+            return;
+        }
+        int slot = locals.lookup(target.getSymbol(symbols));
+        if (slot != -1)
+            emitter.emit(Bytecode.STORE_LOCAL, -1, slot);
+        else
+            emitter.emit(Bytecode.STORE_GLOBAL, -1, emitter.constant(new Bytecode.VariableSite(symbols, target.getSymbol(symbols))));
+    }
+
+    private void compile(Ast.Expr ast) {
+        if (ast instanceof Ast.Expr.Literal) {
+            emitter.emit(Bytecode.CONST, 1, emitter.constant(((Ast.Expr.Literal) ast).getObject()));
+        } else if (ast instanceof Ast.Expr.Group) {
+            compile(((Ast.Expr.Group) ast).getExpression());
+        } else if (ast instanceof Ast.Expr.Binary) {
+            compileBinary((Ast.Expr.Binary) ast);
+        } else if (ast instanceof Ast.Expr.Access) {
+            Ast.Expr.Access access = (Ast.Expr.Access) ast;
+            if (access.getReceiver().isPresent()) {
+                compile(access.getReceiver().get());
+                emitter.emit(Bytecode.GET_FIELD, 0, emitter.constant(new Bytecode.FieldSite(symbols, access.getSymbol(symbols))));
+                return;
+            }
+            int slot = locals.lookup(access.getSymbol(symbols));
+            if (slot != -1)
+                emitter.emit(Bytecode.LOAD_LOCAL, 1, slot);
+            else
+                emitter.emit(Bytecode.LOAD_GLOBAL, 1, emitter.constant(new Bytecode.VariableSite(symbols, access.getSymbol(symbols))));
+        } else if (ast instanceof Ast.Expr.Function) {
+            compileFunction((Ast.Expr.Function) ast);
+        } else {
+            throw new AssertionError(ast.getClass());
+        }
+    }
+
+    private void compileBinary(Ast.Expr.Binary ast) {
+        compile(ast.getLeft());
+        switch (ast.getKind()) {
+            case AND:
+            case OR: {
+                int end = emitter.emitJump(ast.getKind() == Ast.Expr.Binary.Operator.AND ? Bytecode.AND : Bytecode.OR, -1);
+                compile(ast.getRight());
+                emitter.emit(Bytecode.BOOLEAN, 0);
+                emitter.patch(end);
+                return;
+            }
+        }
+        compile(ast.getRight());
+        switch (ast.getKind()) {
+            case LESS: emitter.emit(Bytecode.LESS, -1); break;
+            case GREATER: emitter.emit(Bytecode.GREATER, -1); break;
+            case LESS_EQUAL: emitter.emit(Bytecode.LESS_EQUAL, -1); break;
+            case GREATER_EQUAL: emitter.emit(Bytecode.GREATER_EQUAL, -1); break;
+            case EQUAL: emitter.emit(Bytecode.EQUAL, -1); break;
+            case NOT_EQUAL: emitter.emit(Bytecode.NOT_EQUAL, -1); break;
+            case ADD: emitter.emit(Bytecode.ADD, -1); break;
+            case SUBTRACT: emitter.emit(Bytecode.SUBTRACT, -1); break;
+            case MULTIPLY: emitter.emit(Bytecode.MULTIPLY, -1); break;
+            case DIVIDE: emitter.emit(Bytecode.DIVIDE, -1); break;
+            default: throw new AssertionError(ast.getKind());
+        }
+    }
+
+    private void compileFunction(Ast.Expr.Function ast) {
+        List<Ast.Expr> arguments = ast.getArguments();
+        for (Ast.Expr argument : arguments) {
+            compile(argument);
+        }
+        int count = arguments.size();
+        if (ast.getReceiver().isPresent()) {
+            compile(ast.getReceiver().get());
+            emitter.emit(Bytecode.INVOKE, -count, emitter.constant(new Bytecode.MethodSite(symbols, ast.getSymbol(symbols), count)), count);
+            return;
+        }
+        Integer method = methods.get(ast.getName() + "/" + count);
+        if (method != null)
+            emitter.emit(Bytecode.CALL_DIRECT, 1 - count, method, count);
+        else
+            emitter.emit(Bytecode.CALL, 1 - count, emitter.constant(new Bytecode.CallSite(symbols, ast.getSymbol(symbols), count)), count);
+    }
+
+    /**
+     * Accumulates the code and constants of a chunk, tracking the operand
+     * stack depth to size the stack of its frames.
+     */
+    private static final class Emitter {
+
+        private int[] code = new int[32];
+        private int length = 0;
+        private final List<Object> constants = new ArrayList<>();
+        private final Map<Object, Integer> indices = new IdentityHashMap<>();
+        private int depth = 0;
+        private int maxStack = 0;
+
+        int position() {
+            return length;
+        }
+
+        void emit(int opcode, int effect, int... operands) {
+            if (length + operands.length + 1 > code.length) {
+                code = Arrays.copyOf(code, Math.max(code.length * 2, length + operands.length + 1));
+            }
+            code[length++] = opcode;
+            for (int operand : operands) {
+                code[length++] = operand;
+            }
+            adjust(effect);
+        }
+
+        /**
+         * Emits a jump with its target left open, returning the position of
+         * the operand to {@link #patch(int)} once the target is known.
+         */
+        int emitJump(int opcode, int effect, int... operands) {
+            int[] extended = Arrays.copyOf(operands, operands.length + 1);
+            emit(opcode, effect, extended);
+            return length - 1;
+        }
+
+        void patch(int operand) {
+            code[operand] = length;
+        }
+
+        void adjust(int effect) {
+            depth += effect;
+            maxStack = Math.max(maxStack, depth);
+        }
+
+        /**
+         * Adds a constant to the pool. Literal objects are shared; sites are
+         * unique to their instruction.
+         */
+        int constant(Object constant) {
+            if (constant instanceof Environment.PlcObject) {
+                return indices.computeIfAbsent(constant, c -> {
+                    constants.add(c);
+                    return constants.size() - 1;
+                });
+            }
+            constants.add(constant);
+            return constants.size() - 1;
+        }
+
+        Bytecode.Chunk build(String name, int arity, int locals) {
+            return new Bytecode.Chunk(name, arity, Arrays.copyOf(code, length), constants.toArray(), locals, maxStack);
+        }
+
+    }
+
+}
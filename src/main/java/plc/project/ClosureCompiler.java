@@ -0,0 +1,1275 @@
+package plc.project;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+
+/**
+ * An execution engine which compiles the AST into a tree of closures once
+ * and then runs the closures, instead of re-dispatching on the AST for every
+ * evaluation like the {@link Interpreter}. Names are resolved at compile
+ * time: method parameters and block declarations become slots in a frame
+ * array, globals are looked up in the scope once and cached, operators are
+ * selected up front and specialize themselves to the operand types they
+ * observe, and calls between methods of the same source are linked directly. The results and errors match those of the interpreter.
+ *
+ * With {@link Arithmetic#PRIMITIVE}, analyzed Integer and Decimal values are
+ * computed as {@code int} and {@code double} instead, as in the
+ * {@link Generator}'s output, and only boxed where they leave a method.
+ *
+ * A source may also be compiled into a {@link CompiledProgram}, whose fields
+ * live in each {@link ExecutionContext} instead of the scope, so that one
+ * compiled program can be executed by many threads at once. A context with
+ * a {@link ResourceBudget} consumes its fuel on every loop iteration and
+ * call, so the budget can stop the program.
+ */
+public final class ClosureCompiler {
+
+    /**
+     * The arithmetic of compiled programs. Exact arithmetic matches the
+     * interpreter; primitive arithmetic matches generated Java code, so
+     * Integer values wrap around at 32 bits and Decimal values are doubles.
+     * Expressions without type information always use exact arithmetic.
+     */
+    public enum Arithmetic {
+        EXACT,
+        PRIMITIVE
+    }
+
+    private final Scope scope;
+    private final SymbolTable symbols;
+    private final boolean primitive;
+
+    private Locals locals;
+    private final Map<String, CompiledMethod> methods = new HashMap<>();
+    private final Map<Integer, Environment.Type> primitives = new HashMap<>();
+    private final Set<Integer> counters = new HashSet<>();
+    private boolean counted;
+    private Map<String, Integer> fields;
+
+    public ClosureCompiler(Scope parent) {
+        this(parent, Arithmetic.EXACT);
+    }
+
+    public ClosureCompiler(Scope parent, Arithmetic arithmetic) {
+        scope = new Scope(parent);
+        symbols = scope.getSymbols();
+        primitive = arithmetic == Arithmetic.PRIMITIVE;
+        Builtins.define(scope);
+    }
+
+    public Scope getScope() {
+        return scope;
+    }
+
+    /**
+     * Compiles the given AST, which may be any node the interpreter accepts.
+     * Statements outside of a method define their top level declarations in
+     * the scope of this compiler.
+     */
+    public Program compile(Ast ast) {
+        methods.clear();
+        clearSlots();
+        locals = new Locals(true, symbols);
+        if (ast instanceof Ast.Source) {
+            return compileSource((Ast.Source) ast);
+        } else if (ast instanceof Ast.Field) {
+            Ast.Field field = (Ast.Field) ast;
+            Expr value = field.getValue().isPresent()
+                    ? compileExpression(field.getValue().get())
+                    : frame -> Environment.NIL;
+            return compileTopLevel(frame -> {
+                scope.defineVariable(field.getName(), value.evaluate(frame));
+                return false;
+            });
+        } else if (ast instanceof Ast.Method) {
+            CompiledMethod method = declare((Ast.Method) ast);
+            compileMethod((Ast.Method) ast, method);
+            return () -> {
+                define(method);
+                return Environment.NIL;
+            };
+        } else if (ast instanceof Ast.Stmt) {
+            Stmt statement = compileStatement((Ast.Stmt) ast);
+            return compileTopLevel(statement);
+        } else if (ast instanceof Ast.Expr) {
+            Expr expression = compileExpression((Ast.Expr) ast);
+            int size = locals.getSize();
+            boolean unboxed = isUnboxed();
+            return () -> expression.evaluate(new Frame(size, unboxed));
+        } else {
+            throw new AssertionError(ast.getClass());
+        }
+    }
+
+    public Environment.PlcObject execute(Ast ast) {
+        return compile(ast).execute();
+    }
+
+    /**
+     * Compiles an analyzed source into a program whose fields are stored per
+     * execution context. Names which are neither locals nor fields of the
+     * source resolve in the scope of this compiler, which the program shares
+     * between contexts and should not be modified while it runs.
+     */
+    public CompiledProgram compileProgram(Ast.Source ast) {
+        methods.clear();
+        clearSlots();
+        locals = new Locals(true, symbols);
+        fields = new HashMap<>();
+        try {
+            List<String> names = new ArrayList<>();
+            Expr[] values = new Expr[ast.getFields().size()];
+            for (int i = 0; i < values.length; i++) {
+                Ast.Field field = ast.getFields().get(i);
+                values[i] = compileValue(field.getValue());
+                fields.put(field.getName(), i);
+                names.add(field.getName());
+            }
+            int size = locals.getSize();
+            boolean unboxed = isUnboxed();
+            List<CompiledMethod> compiled = new ArrayList<>();
+            for (Ast.Method method : ast.getMethods()) {
+                compiled.add(declare(method));
+            }
+            Map<String, CompiledProgram.Entry> entries = new HashMap<>();
+            for (int i = 0; i < compiled.size(); i++) {
+                CompiledMethod method = compiled.get(i);
+                compileMethod(ast.getMethods().get(i), method);
+                entries.put(method.name + "/" + method.arity, (context, args) -> {
+                    Frame frame = method.frame(context);
+                    for (int j = 0; j < args.size(); j++) {
+                        frame.locals[j] = args.get(j);
+                    }
+                    return method.invoke(frame);
+                });
+            }
+            return new CompiledProgram(scope, Collections.unmodifiableList(names), context -> {
+                Frame frame = new Frame(size, unboxed, context);
+                for (int i = 0; i < values.length; i++) {
+                    context.fields[i] = values[i].evaluate(frame);
+                }
+            }, entries);
+        } finally {
+            fields = null;
+        }
+    }
+
+    private Program compileTopLevel(Stmt statement) {
+        int size = locals.getSize();
+        boolean unboxed = isUnboxed();
+        return () -> {
+            if (statement.execute(new Frame(size, unboxed))) {
+                throw new RuntimeException("Return statement outside of a method.");
+            }
+            return Environment.NIL;
+        };
+    }
+
+    private Program compileSource(Ast.Source ast) {
+        List<Ast.Field> fields = ast.getFields();
+        Expr[] values = new Expr[fields.size()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = fields.get(i).getValue().isPresent()
+                    ? compileExpression(fields.get(i).getValue().get())
+                    : frame -> Environment.NIL;
+        }
+        int size = locals.getSize();
+        boolean unboxed = isUnboxed();
+        List<CompiledMethod> compiled = new ArrayList<>();
+        for (Ast.Method method : ast.getMethods()) {
+            compiled.add(declare(method));
+        }
+        for (int i = 0; i < compiled.size(); i++) {
+            compileMethod(ast.getMethods().get(i), compiled.get(i));
+        }
+        return () -> {
+            Frame frame = new Frame(size, unboxed);
+            for (int i = 0; i < values.length; i++) {
+                scope.defineVariable(fields.get(i).getName(), values[i].evaluate(frame));
+            }
+            compiled.forEach(this::define);
+            return scope.lookupFunction("main", 0).invoke();
+        };
+    }
+
+    /**
+     * Declares a method before its body is compiled, so that calls to it
+     * from any method of the same source can be linked directly.
+     */
+    private CompiledMethod declare(Ast.Method ast) {
+        CompiledMethod method = new CompiledMethod(ast.getName(), ast.getParameters().size());
+        methods.put(ast.getName() + "/" + method.arity, method);
+        return method;
+    }
+
+    private void compileMethod(Ast.Method ast, CompiledMethod method) {
+        locals = new Locals(false, symbols);
+        clearSlots();
+        int[] parameters = ast.getParameterSymbols(symbols);
+        List<Stmt> prologue = new ArrayList<>();
+        for (int i = 0; i < parameters.length; i++) {
+            int slot = locals.declare(parameters[i]);
+            Environment.Type type = primitive ? parameterType(ast, i) : null;
+            if (type == Environment.Type.INTEGER || type == Environment.Type.DECIMAL) {
+                primitives.put(slot, type);
+                prologue.add(type == Environment.Type.INTEGER
+                        ? storeInt(slot, unboxInt(frame -> frame.locals[slot]))
+                        : storeDouble(slot, unboxDouble(frame -> frame.locals[slot])));
+            }
+        }
+        Stmt body = compileBlock(ast.getStatements(), false);
+        if (!prologue.isEmpty()) {
+            Stmt[] parameterStores = prologue.toArray(new Stmt[0]);
+            Stmt statements = body;
+            body = frame -> {
+                for (Stmt store : parameterStores) {
+                    store.execute(frame);
+                }
+                return statements.execute(frame);
+            };
+        }
+        method.body = body;
+        method.size = locals.getSize();
+        method.unboxed = isUnboxed();
+    }
+
+    /**
+     * Forgets the representations of the slots of the previous compilation
+     * unit.
+     */
+    private void clearSlots() {
+        primitives.clear();
+        counters.clear();
+        counted = false;
+    }
+
+    /**
+     * Returns whether frames of the current compilation unit need an array
+     * for unboxed values, which primitive mode and counted loops use.
+     */
+    private boolean isUnboxed() {
+        return primitive || counted;
+    }
+
+    private void define(CompiledMethod method) {
+        switch (method.arity) {
+            case 0:
+                scope.defineFunction(method.name, () -> method.invoke(method.frame()));
+                break;
+            case 1:
+                scope.defineFunction(method.name, first -> {
+                    Frame frame = method.frame();
+                    frame.locals[0] = first;
+                    return method.invoke(frame);
+                });
+                break;
+            case 2:
+                scope.defineFunction(method.name, (first, second) -> {
+                    Frame frame = method.frame();
+                    frame.locals[0] = first;
+                    frame.locals[1] = second;
+                    return method.invoke(frame);
+                });
+                break;
+            default:
+                scope.defineFunction(method.name, method.arity, args -> {
+                    Frame frame = method.frame();
+                    for (int i = 0; i < args.size(); i++) {
+                        frame.locals[i] = args.get(i);
+                    }
+                    return method.invoke(frame);
+                });
+        }
+    }
+
+    private Stmt compileBlock(List<Ast.Stmt> statements, boolean nested) {
+        if (nested) {
+            locals.push();
+        }
+        Stmt[] compiled = new Stmt[statements.size()];
+        for (int i = 0; i < compiled.length; i++) {
+            compiled[i] = compileStatement(statements.get(i));
+        }
+        if (nested) {
+            locals.pop();
+        }
+        if (compiled.length == 1) {
+            return compiled[0];
+        }
+        return frame -> {
+            for (Stmt statement : compiled) {
+                if (statement.execute(frame)) {
+                    return true;
+                }
+            }
+            return false;
+        };
+    }
+
+    private Stmt compileStatement(Ast.Stmt ast) {
+        if (ast instanceof Ast.Stmt.Expression) {
+            Expr expression = compileExpression(((Ast.Stmt.Expression) ast).getExpression());
+            return frame -> {
+                expression.evaluate(frame);
+                return false;
+            };
+        } else if (ast instanceof Ast.Stmt.Declaration) {
+            return compileDeclaration((Ast.Stmt.Declaration) ast);
+        } else if (ast instanceof Ast.Stmt.Assignment) {
+            return compileAssignment((Ast.Stmt.Assignment) ast);
+        } else if (ast instanceof Ast.Stmt.If) {
+            Ast.Stmt.If statement = (Ast.Stmt.If) ast;
+            Expr condition = compileExpression(statement.getCondition());
+            Stmt thenStatements = compileBlock(statement.getThenStatements(), true);
+            Stmt elseStatements = compileBlock(statement.getElseStatements(), true);
+            return frame -> Operators.requireType(Boolean.class, condition.evaluate(frame))
+                    ? thenStatements.execute(frame)
+                    : elseStatements.execute(frame);
+        } else if (ast instanceof Ast.Stmt.For) {
+            Ast.Stmt.For statement = (Ast.Stmt.For) ast;
+            Expr value = compileExpression(statement.getValue());
+            locals.push();
+            int slot = locals.declare(statement.getSymbol(symbols));
+            primitives.remove(slot);
+            counters.add(slot);
+            counted = true;
+            Stmt body = compileBlock(statement.getStatements(), true);
+            locals.pop();
+            return frame -> {
+                Environment.PlcObject iterable = value.evaluate(frame);
+                if (iterable.getValue() instanceof Range) {
+                    Range range = (Range) iterable.getValue();
+                    for (long i = range.getStart(); range.includes(i); i = range.next(i)) {
+                        frame.consume();
+                        frame.locals[slot] = null;
+                        frame.primitives[slot] = i;
+                        if (body.execute(frame)) {
+                            return true;
+                        }
+                    }
+                    return false;
+                }
+                for (Object object : Operators.requireType(Iterable.class, iterable)) {
+                    frame.consume();
+                    frame.locals[slot] = (Environment.PlcObject) object;
+                    if (body.execute(frame)) {
+                        return true;
+                    }
+                }
+                return false;
+            };
+        } else if (ast instanceof Ast.Stmt.While) {
+            Ast.Stmt.While statement = (Ast.Stmt.While) ast;
+            Expr condition = compileExpression(statement.getCondition());
+            Stmt body = compileBlock(statement.getStatements(), true);
+            return frame -> {
+                while (Operators.requireType(Boolean.class, condition.evaluate(frame))) {
+                    frame.consume();
+                    if (body.execute(frame)) {
+                        return true;
+                    }
+                }
+                return false;
+            };
+        } else if (ast instanceof Ast.Stmt.Return) {
+            Expr value = compileExpression(((Ast.Stmt.Return) ast).getValue());
+            return frame -> {
+                frame.result = value.evaluate(frame);
+                return true;
+            };
+        } else {
+            throw new AssertionError(ast.getClass());
+        }
+    }
+
+    private Stmt compileDeclaration(Ast.Stmt.Declaration ast) {
+        if (locals.isGlobal()) {
+            Expr value = compileValue(ast.getValue());
+            int symbol = ast.getSymbol(symbols);
+            return frame -> {
+                scope.defineVariable(symbol, value.evaluate(frame));
+                return false;
+            };
+        }
+        int slot = locals.declare(ast.getSymbol(symbols));
+        counters.remove(slot);
+        Environment.Type type = primitive ? variableType(ast) : null;
+        if (type == Environment.Type.INTEGER || type == Environment.Type.DECIMAL) {
+            primitives.put(slot, type);
+            if (!ast.getValue().isPresent()) {
+                return frame -> {
+                    frame.primitives[slot] = 0;
+                    return false;
+                };
+            }
+            return type == Environment.Type.INTEGER
+                    ? storeInt(slot, compileInt(ast.getValue().get()))
+                    : storeDouble(slot, compileDouble(ast.getValue().get()));
+        }
+        primitives.remove(slot);
+        Expr value = compileValue(ast.getValue());
+        return frame -> {
+            frame.locals[slot] = value.evaluate(frame);
+            return false;
+        };
+    }
+
+    private Stmt compileAssignment(Ast.Stmt.Assignment ast) {
+        if (!(ast.getReceiver() instanceof Ast.Expr.Access))
+            throw new RuntimeException("Assignment Target Error!");
+
+        Ast.Expr.Access target = (Ast.Expr.Access) ast.getReceiver();
+        int slot = target.getReceiver().isPresent() ? -1 : locals.lookup(target.getSymbol(symbols));
+        if (slot != -1 && primitives.containsKey(slot)) {
+            return primitives.get(slot) == Environment.Type.INTEGER
+                    ? storeInt(slot, compileInt(ast.getValue()))
+                    : storeDouble(slot, compileDouble(ast.getValue()));
+        }
+        Expr value = compileExpression(ast.getValue());
+        if (target.getReceiver().isPresent()) {
+            Expr receiver = compileExpression(target.getReceiver().get());
+            FieldCache cache = target.getCache();
+            int symbol = target.getSymbol(symbols);
+            return frame -> {
+                Environment.PlcObject result = value.evaluate(frame);
+                cache.set(receiver.evaluate(frame), symbols, symbol, result);
+                return false;
+            };
+        }
+        if (slot != -1) {
+            return frame -> {
+                frame.locals[slot] = value.evaluate(frame);
+                return false;
+            };
+        } else if (fields != null && fields.containsKey(target.getName())) {
+            int index = fields.get(target.getName());
+            return frame -> {
+                frame.context.fields[index] = value.evaluate(frame);
+                return false;
+            };
+        }
+        GlobalVariable variable = new GlobalVariable(target.getSymbol(symbols));
+        return frame -> {
+            variable.get().setValue(value.evaluate(frame));
+            return false;
+        };
+    }
+
+    private Expr compileValue(Optional<Ast.Expr> ast) {
+        return ast.isPresent() ? compileExpression(ast.get()) : frame -> Environment.NIL;
+    }
+
+    private Expr compileExpression(Ast.Expr ast) {
+        Environment.Type type = primitive && !(ast instanceof Ast.Expr.Access || ast instanceof Ast.Expr.Function) ? typeOf(ast) : null;
+        if (type == Environment.Type.INTEGER) {
+            IntExpr value = compileInt(ast);
+            if (ast instanceof Ast.Expr.Literal) {
+                Environment.PlcObject object = Environment.createInteger(value.evaluate(null));
+                return frame -> object;
+            }
+            return frame -> Environment.createInteger(value.evaluate(frame));
+        } else if (type == Environment.Type.DECIMAL) {
+            DoubleExpr value = compileDouble(ast);
+            if (ast instanceof Ast.Expr.Literal) {
+                Environment.PlcObject object = Environment.create(BigDecimal.valueOf(value.evaluate(null)));
+                return frame -> object;
+            }
+            return frame -> Environment.create(BigDecimal.valueOf(value.evaluate(frame)));
+        }
+        return compileObject(ast);
+    }
+
+    private Expr compileObject(Ast.Expr ast) {
+        if (ast instanceof Ast.Expr.Literal) {
+            Environment.PlcObject object = ((Ast.Expr.Literal) ast).getObject();
+            return frame -> object;
+        } else if (ast instanceof Ast.Expr.Group) {
+            return compileExpression(((Ast.Expr.Group) ast).getExpression());
+        } else if (ast instanceof Ast.Expr.Binary) {
+            return compileBinary((Ast.Expr.Binary) ast);
+        } else if (ast instanceof Ast.Expr.Access) {
+            Ast.Expr.Access access = (Ast.Expr.Access) ast;
+            if (access.getReceiver().isPresent()) {
+                Expr receiver = compileExpression(access.getReceiver().get());
+                FieldCache cache = access.getCache();
+                int symbol = access.getSymbol(symbols);
+                return frame -> cache.get(receiver.evaluate(frame), symbols, symbol);
+            }
+            int slot = locals.lookup(access.getSymbol(symbols));
+            if (slot != -1 && primitives.get(slot) == Environment.Type.INTEGER) {
+                return frame -> Environment.createInteger(frame.primitives[slot]);
+            } else if (slot != -1 && primitives.get(slot) == Environment.Type.DECIMAL) {
+                return frame -> Environment.create(BigDecimal.valueOf(Double.longBitsToDouble(frame.primitives[slot])));
+            } else if (slot != -1 && counters.contains(slot)) {
+                return frame -> {
+                    Environment.PlcObject object = frame.locals[slot];
+                    return object != null ? object : Environment.createInteger(frame.primitives[slot]);
+                };
+            } else if (slot != -1) {
+                return frame -> frame.locals[slot];
+            } else if (fields != null && fields.containsKey(access.getName())) {
+                int index = fields.get(access.getName());
+                return frame -> frame.context.fields[index];
+            }
+            GlobalVariable variable = new GlobalVariable(access.getSymbol(symbols));
+            return frame -> variable.get().getValue();
+        } else if (ast instanceof Ast.Expr.Function) {
+            return compileFunction((Ast.Expr.Function) ast);
+        } else {
+            throw new AssertionError(ast.getClass());
+        }
+    }
+
+    private Expr compileBinary(Ast.Expr.Binary ast) {
+        Ast.Expr.Binary.Operator operator = ast.getKind();
+        Environment.Type operands = primitive && isComparison(operator) ? typeOf(ast.getLeft()) : null;
+        if (operands != null && operands == typeOf(ast.getRight())) {
+            if (operands == Environment.Type.INTEGER) {
+                return compileIntComparison(operator, compileInt(ast.getLeft()), compileInt(ast.getRight()));
+            } else if (operands == Environment.Type.DECIMAL) {
+                return compileDoubleComparison(operator, compileDouble(ast.getLeft()), compileDouble(ast.getRight()));
+            }
+        }
+        Expr left = compileExpression(ast.getLeft());
+        Expr right = compileExpression(ast.getRight());
+        switch (operator) {
+            case AND:
+                return frame -> Environment.create(Operators.requireType(Boolean.class, left.evaluate(frame))
+                        && Operators.requireType(Boolean.class, right.evaluate(frame)));
+            case OR:
+                return frame -> Environment.create(Operators.requireType(Boolean.class, left.evaluate(frame))
+                        || Operators.requireType(Boolean.class, right.evaluate(frame)));
+            case ADD:
+                return new AddNode(left, right);
+            case SUBTRACT:
+                return new SubtractNode(left, right);
+            case MULTIPLY:
+                return new MultiplyNode(left, right);
+            case DIVIDE:
+                return new DivideNode(left, right);
+            default:
+                return new ComparisonNode(operator, left, right);
+        }
+    }
+
+    private static boolean isComparison(Ast.Expr.Binary.Operator operator) {
+        switch (operator) {
+            case LESS:
+            case GREATER:
+            case LESS_EQUAL:
+            case GREATER_EQUAL:
+            case EQUAL:
+            case NOT_EQUAL:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    private static Expr compileIntComparison(Ast.Expr.Binary.Operator operator, IntExpr left, IntExpr right) {
+        switch (operator) {
+            case LESS: return frame -> Environment.create(left.evaluate(frame) < right.evaluate(frame));
+            case GREATER: return frame -> Environment.create(left.evaluate(frame) > right.evaluate(frame));
+            case LESS_EQUAL: return frame -> Environment.create(left.evaluate(frame) <= right.evaluate(frame));
+            case GREATER_EQUAL: return frame -> Environment.create(left.evaluate(frame) >= right.evaluate(frame));
+            case EQUAL: return frame -> Environment.create(left.evaluate(frame) == right.evaluate(frame));
+            default: return frame -> Environment.create(left.evaluate(frame) != right.evaluate(frame));
+        }
+    }
+
+    private static Expr compileDoubleComparison(Ast.Expr.Binary.Operator operator, DoubleExpr left, DoubleExpr right) {
+        switch (operator) {
+            case LESS: return frame -> Environment.create(left.evaluate(frame) < right.evaluate(frame));
+            case GREATER: return frame -> Environment.create(left.evaluate(frame) > right.evaluate(frame));
+            case LESS_EQUAL: return frame -> Environment.create(left.evaluate(frame) <= right.evaluate(frame));
+            case GREATER_EQUAL: return frame -> Environment.create(left.evaluate(frame) >= right.evaluate(frame));
+            case EQUAL: return frame -> Environment.create(left.evaluate(frame) == right.evaluate(frame));
+            default: return frame -> Environment.create(left.evaluate(frame) != right.evaluate(frame));
+        }
+    }
+
+    /**
+     * Compiles an expression analyzed as an Integer to an {@code int},
+     * wrapping around on overflow. Operands which are not computed
+     * primitively are unboxed.
+     */
+    private IntExpr compileInt(Ast.Expr ast) {
+        if (ast instanceof Ast.Expr.Literal && ((Ast.Expr.Literal) ast).getLiteral() instanceof BigInteger) {
+            int value = ((BigInteger) ((Ast.Expr.Literal) ast).getLiteral()).intValue();
+            return frame -> value;
+        } else if (ast instanceof Ast.Expr.Group) {
+            return compileInt(((Ast.Expr.Group) ast).getExpression());
+        } else if (ast instanceof Ast.Expr.Access && !((Ast.Expr.Access) ast).getReceiver().isPresent()) {
+            int slot = locals.lookup(((Ast.Expr.Access) ast).getSymbol(symbols));
+            if (slot != -1 && primitives.get(slot) == Environment.Type.INTEGER) {
+                return frame -> (int) frame.primitives[slot];
+            } else if (slot != -1 && counters.contains(slot)) {
+                IntExpr boxed = unboxInt(frame -> frame.locals[slot]);
+                return frame -> frame.locals[slot] != null ? boxed.evaluate(frame) : (int) frame.primitives[slot];
+            }
+        } else if (ast instanceof Ast.Expr.Binary && typeOf(ast) == Environment.Type.INTEGER) {
+            Ast.Expr.Binary binary = (Ast.Expr.Binary) ast;
+            switch (binary.getKind()) {
+                case ADD: {
+                    IntExpr left = compileInt(binary.getLeft());
+                    IntExpr right = compileInt(binary.getRight());
+                    return frame -> left.evaluate(frame) + right.evaluate(frame);
+                }
+                case SUBTRACT: {
+                    IntExpr left = compileInt(binary.getLeft());
+                    IntExpr right = compileInt(binary.getRight());
+                    return frame -> left.evaluate(frame) - right.evaluate(frame);
+                }
+                case MULTIPLY: {
+                    IntExpr left = compileInt(binary.getLeft());
+                    IntExpr right = compileInt(binary.getRight());
+                    return frame -> left.evaluate(frame) * right.evaluate(frame);
+                }
+                case DIVIDE: {
+                    IntExpr left = compileInt(binary.getLeft());
+                    IntExpr right = compileInt(binary.getRight());
+                    return frame -> {
+                        int x = left.evaluate(frame);
+                        int y = right.evaluate(frame);
+                        if (y == 0) {
+                            throw new RuntimeException("Division by zero.");
+                        }
+                        return x / y;
+                    };
+                }
+            }
+        }
+        return unboxInt(compileObject(ast));
+    }
+
+    /**
+     * The Decimal counterpart of {@link #compileInt(Ast.Expr)}. Division by
+     * zero is an error, as in the interpreter, since the infinite result
+     * could not be boxed.
+     */
+    private DoubleExpr compileDouble(Ast.Expr ast) {
+        if (ast instanceof Ast.Expr.Literal && ((Ast.Expr.Literal) ast).getLiteral() instanceof BigDecimal) {
+            double value = ((BigDecimal) ((Ast.Expr.Literal) ast).getLiteral()).doubleValue();
+            return frame -> value;
+        } else if (ast instanceof Ast.Expr.Group) {
+            return compileDouble(((Ast.Expr.Group) ast).getExpression());
+        } else if (ast instanceof Ast.Expr.Access && !((Ast.Expr.Access) ast).getReceiver().isPresent()) {
+            int slot = locals.lookup(((Ast.Expr.Access) ast).getSymbol(symbols));
+            if (slot != -1 && primitives.get(slot) == Environment.Type.DECIMAL) {
+                return frame -> Double.longBitsToDouble(frame.primitives[slot]);
+            }
+        } else if (ast instanceof Ast.Expr.Binary && typeOf(ast) == Environment.Type.DECIMAL) {
+            Ast.Expr.Binary binary = (Ast.Expr.Binary) ast;
+            switch (binary.getKind()) {
+                case ADD: {
+                    DoubleExpr left = compileDouble(binary.getLeft());
+                    DoubleExpr right = compileDouble(binary.getRight());
+                    return frame -> left.evaluate(frame) + right.evaluate(frame);
+                }
+                case SUBTRACT: {
+                    DoubleExpr left = compileDouble(binary.getLeft());
+                    DoubleExpr right = compileDouble(binary.getRight());
+                    return frame -> left.evaluate(frame) - right.evaluate(frame);
+                }
+                case MULTIPLY: {
+                    DoubleExpr left = compileDouble(binary.getLeft());
+                    DoubleExpr right = compileDouble(binary.getRight());
+                    return frame -> left.evaluate(frame) * right.evaluate(frame);
+                }
+                case DIVIDE: {
+                    DoubleExpr left = compileDouble(binary.getLeft());
+                    DoubleExpr right = compileDouble(binary.getRight());
+                    return frame -> {
+                        double x = left.evaluate(frame);
+                        double y = right.evaluate(frame);
+                        if (y == 0) {
+                            throw new RuntimeException("Division by zero.");
+                        }
+                        return x / y;
+                    };
+                }
+            }
+        }
+        return unboxDouble(compileObject(ast));
+    }
+
+    private static IntExpr unboxInt(Expr value) {
+        return frame -> Operators.requireType(BigInteger.class, value.evaluate(frame)).intValue();
+    }
+
+    private static DoubleExpr unboxDouble(Expr value) {
+        return frame -> Operators.requireType(BigDecimal.class, value.evaluate(frame)).doubleValue();
+    }
+
+    private static Stmt storeInt(int slot, IntExpr value) {
+        return frame -> {
+            frame.primitives[slot] = value.evaluate(frame);
+            return false;
+        };
+    }
+
+    private static Stmt storeDouble(int slot, DoubleExpr value) {
+        return frame -> {
+            frame.primitives[slot] = Double.doubleToRawLongBits(value.evaluate(frame));
+            return false;
+        };
+    }
+
+    /**
+     * Returns the analyzed type of an expression, or null if the expression
+     * has not been analyzed.
+     */
+    private static Environment.Type typeOf(Ast.Expr ast) {
+        try {
+            return ast.getType();
+        } catch (IllegalStateException e) {
+            return null;
+        }
+    }
+
+    private static Environment.Type variableType(Ast.Stmt.Declaration ast) {
+        try {
+            return ast.getVariable().getType();
+        } catch (IllegalStateException e) {
+            return null;
+        }
+    }
+
+    private static Environment.Type parameterType(Ast.Method ast, int index) {
+        try {
+            return ast.getFunction().getParameterTypes().get(index);
+        } catch (IllegalStateException e) {
+            return null;
+        }
+    }
+
+    private Expr compileFunction(Ast.Expr.Function ast) {
+        Expr[] arguments = new Expr[ast.getArguments().size()];
+        for (int i = 0; i < arguments.length; i++) {
+            arguments[i] = compileExpression(ast.getArguments().get(i));
+        }
+        int symbol = ast.getSymbol(symbols);
+
+        if (ast.getReceiver().isPresent()) {
+            Expr receiver = compileExpression(ast.getReceiver().get());
+            InlineCache cache = ast.getCache();
+            switch (arguments.length) {
+                case 0:
+                    return frame -> {
+                        Environment.PlcObject object = receiver.evaluate(frame);
+                        return cache.lookup(object.getType(), symbols, symbol, 0).invoke(object);
+                    };
+                case 1:
+                    return frame -> {
+                        Environment.PlcObject first = arguments[0].evaluate(frame);
+                        Environment.PlcObject object = receiver.evaluate(frame);
+                        return cache.lookup(object.getType(), symbols, symbol, 1).invoke(object, first);
+                    };
+                default:
+                    return frame -> {
+                        List<Environment.PlcObject> args = new ArrayList<>(arguments.length + 1);
+                        args.add(null);
+                        for (Expr argument : arguments)
+                            args.add(argument.evaluate(frame));
+                        Environment.PlcObject object = receiver.evaluate(frame);
+                        args.set(0, object);
+                        return cache.lookup(object.getType(), symbols, symbol, arguments.length).invoke(args);
+                    };
+            }
+        }
+
+        CompiledMethod method = methods.get(ast.getName() + "/" + arguments.length);
+        if (method != null) {
+            return frame -> {
+                Frame callee = method.frame(frame.context);
+                for (int i = 0; i < arguments.length; i++) {
+                    callee.locals[i] = arguments[i].evaluate(frame);
+                }
+                return method.invoke(callee);
+            };
+        }
+
+        GlobalFunction function = new GlobalFunction(symbol, arguments.length);
+        switch (arguments.length) {
+            case 0:
+                return frame -> function.get().invoke();
+            case 1:
+                return frame -> function.get().invoke(arguments[0].evaluate(frame));
+            case 2:
+                return frame -> {
+                    Environment.PlcObject first = arguments[0].evaluate(frame);
+                    Environment.PlcObject second = arguments[1].evaluate(frame);
+                    return function.get().invoke(first, second);
+                };
+            default:
+                return frame -> {
+                    List<Environment.PlcObject> args = new ArrayList<>(arguments.length);
+                    for (Expr argument : arguments)
+                        args.add(argument.evaluate(frame));
+                    return function.get().invoke(args);
+                };
+        }
+    }
+
+    /**
+     * A compiled program, executable any number of times.
+     */
+    @FunctionalInterface
+    public interface Program {
+        Environment.PlcObject execute();
+    }
+
+    @FunctionalInterface
+    private interface Expr {
+        Environment.PlcObject evaluate(Frame frame);
+    }
+
+    @FunctionalInterface
+    private interface IntExpr {
+        int evaluate(Frame frame);
+    }
+
+    @FunctionalInterface
+    private interface DoubleExpr {
+        double evaluate(Frame frame);
+    }
+
+    /**
+     * A compiled statement, which returns true if a return statement was
+     * executed, with the returned value stored in the frame.
+     */
+    @FunctionalInterface
+    private interface Stmt {
+        boolean execute(Frame frame);
+    }
+
+    /**
+     * A binary operator node which specializes itself to the operand types
+     * observed at its site. It starts uninitialized, specializes on the first
+     * operands it evaluates, and deoptimizes to the generic operator for good
+     * once a guard fails, so a polymorphic site never flips back and forth.
+     * Programs are shared between threads, so the state is read once per
+     * evaluation and only moves from uninitialized to a specialization and
+     * from there to generic, with the first step applied by compare-and-set.
+     */
+    private abstract static class SpecializingNode implements Expr {
+
+        private static final int UNINITIALIZED = 0;
+        private static final int INTEGER = 1;
+        private static final int DECIMAL = 2;
+        private static final int STRING = 3;
+        private static final int GENERIC = 4;
+
+        private static final AtomicIntegerFieldUpdater<SpecializingNode> STATE =
+                AtomicIntegerFieldUpdater.newUpdater(SpecializingNode.class, "state");
+
+        private final Expr left;
+        private final Expr right;
+        private volatile int state = UNINITIALIZED;
+
+        private SpecializingNode(Expr left, Expr right) {
+            this.left = left;
+            this.right = right;
+        }
+
+        /**
+         * Evaluates the operands and applies the operator for the state. The
+         * INTEGER state computes Integers which fit in a long as longs, so
+         * their BigInteger values are never created, and only larger ones as
+         * BigIntegers.
+         */
+        @Override
+        public final Environment.PlcObject evaluate(Frame frame) {
+            Environment.PlcObject first = left.evaluate(frame);
+            Environment.PlcObject second = right.evaluate(frame);
+            int state = this.state;
+            if (state == INTEGER && first.isLong() && second.isLong())
+                return integer(first.getLong(), second.getLong());
+            Object x = first.getValue();
+            Object y = second.getValue();
+            switch (state) {
+                case INTEGER:
+                    if (x instanceof BigInteger && y instanceof BigInteger)
+                        return integer((BigInteger) x, (BigInteger) y);
+                    break;
+                case DECIMAL:
+                    if (x instanceof BigDecimal && y instanceof BigDecimal)
+                        return decimal((BigDecimal) x, (BigDecimal) y);
+                    break;
+                case STRING:
+                    if (x instanceof String && y instanceof String)
+                        return string((String) x, (String) y);
+                    break;
+                case GENERIC:
+                    return generic(first, second);
+                default:
+                    int specialized = specialize(x, y);
+                    if (!STATE.compareAndSet(this, UNINITIALIZED, specialized) && this.state != specialized) {
+                        this.state = GENERIC;
+                    }
+                    return evaluate(specialized, first, second);
+            }
+            this.state = GENERIC;
+            return generic(first, second);
+        }
+
+        /**
+         * Applies the operator for the given state, which was specialized on
+         * these operands.
+         */
+        private Environment.PlcObject evaluate(int state, Environment.PlcObject first, Environment.PlcObject second) {
+            switch (state) {
+                case INTEGER:
+                    if (first.isLong() && second.isLong())
+                        return integer(first.getLong(), second.getLong());
+                    return integer((BigInteger) first.getValue(), (BigInteger) second.getValue());
+                case DECIMAL: return decimal((BigDecimal) first.getValue(), (BigDecimal) second.getValue());
+                case STRING: return string((String) first.getValue(), (String) second.getValue());
+                default: return generic(first, second);
+            }
+        }
+
+        private int specialize(Object x, Object y) {
+            if (x instanceof BigInteger && y instanceof BigInteger)
+                return INTEGER;
+            else if (x instanceof BigDecimal && y instanceof BigDecimal)
+                return DECIMAL;
+            else if (x instanceof String && y instanceof String && hasStringSpecialization())
+                return STRING;
+            else
+                return GENERIC;
+        }
+
+        boolean hasStringSpecialization() {
+            return false;
+        }
+
+        abstract Environment.PlcObject integer(long x, long y);
+
+        abstract Environment.PlcObject integer(BigInteger x, BigInteger y);
+
+        abstract Environment.PlcObject decimal(BigDecimal x, BigDecimal y);
+
+        Environment.PlcObject string(String x, String y) {
+            throw new AssertionError();
+        }
+
+        abstract Environment.PlcObject generic(Environment.PlcObject first, Environment.PlcObject second);
+
+    }
+
+    private static final class AddNode extends SpecializingNode {
+
+        private AddNode(Expr left, Expr right) {
+            super(left, right);
+        }
+
+        @Override
+        boolean hasStringSpecialization() {
+            return true;
+        }
+
+        @Override
+        Environment.PlcObject integer(long x, long y) {
+            return Operators.add(x, y);
+        }
+
+        @Override
+        Environment.PlcObject integer(BigInteger x, BigInteger y) {
+            return Environment.create(x.add(y));
+        }
+
+        @Override
+        Environment.PlcObject decimal(BigDecimal x, BigDecimal y) {
+            return Environment.create(x.add(y));
+        }
+
+        @Override
+        Environment.PlcObject string(String x, String y) {
+            return Environment.create(x.concat(y));
+        }
+
+        @Override
+        Environment.PlcObject generic(Environment.PlcObject first, Environment.PlcObject second) {
+            return Operators.add(first, second);
+        }
+
+    }
+
+    private static final class SubtractNode extends SpecializingNode {
+
+        private SubtractNode(Expr left, Expr right) {
+            super(left, right);
+        }
+
+        @Override
+        Environment.PlcObject integer(long x, long y) {
+            return Operators.subtract(x, y);
+        }
+
+        @Override
+        Environment.PlcObject integer(BigInteger x, BigInteger y) {
+            return Environment.create(x.subtract(y));
+        }
+
+        @Override
+        Environment.PlcObject decimal(BigDecimal x, BigDecimal y) {
+            return Environment.create(x.subtract(y));
+        }
+
+        @Override
+        Environment.PlcObject generic(Environment.PlcObject first, Environment.PlcObject second) {
+            return Operators.subtract(first, second);
+        }
+
+    }
+
+    private static final class MultiplyNode extends SpecializingNode {
+
+        private MultiplyNode(Expr left, Expr right) {
+            super(left, right);
+        }
+
+        @Override
+        Environment.PlcObject integer(long x, long y) {
+            return Operators.multiply(x, y);
+        }
+
+        @Override
+        Environment.PlcObject integer(BigInteger x, BigInteger y) {
+            return Environment.create(x.multiply(y));
+        }
+
+        @Override
+        Environment.PlcObject decimal(BigDecimal x, BigDecimal y) {
+            return Environment.create(x.multiply(y));
+        }
+
+        @Override
+        Environment.PlcObject generic(Environment.PlcObject first, Environment.PlcObject second) {
+            return Operators.multiply(first, second);
+        }
+
+    }
+
+    private static final class DivideNode extends SpecializingNode {
+
+        private DivideNode(Expr left, Expr right) {
+            super(left, right);
+        }
+
+        @Override
+        Environment.PlcObject integer(long x, long y) {
+            return Operators.divide(x, y);
+        }
+
+        @Override
+        Environment.PlcObject integer(BigInteger x, BigInteger y) {
+            return Operators.divide(x, y);
+        }
+
+        @Override
+        Environment.PlcObject decimal(BigDecimal x, BigDecimal y) {
+            return Operators.divide(x, y);
+        }
+
+        @Override
+        Environment.PlcObject generic(Environment.PlcObject first, Environment.PlcObject second) {
+            return Operators.divide(first, second);
+        }
+
+    }
+
+    private static final class ComparisonNode extends SpecializingNode {
+
+        private final Ast.Expr.Binary.Operator operator;
+
+        private ComparisonNode(Ast.Expr.Binary.Operator operator, Expr left, Expr right) {
+            super(left, right);
+            this.operator = operator;
+        }
+
+        @Override
+        boolean hasStringSpecialization() {
+            return true;
+        }
+
+        @Override
+        Environment.PlcObject integer(long x, long y) {
+            return test(Long.compare(x, y));
+        }
+
+        @Override
+        Environment.PlcObject integer(BigInteger x, BigInteger y) {
+            return test(x.compareTo(y));
+        }
+
+        @Override
+        Environment.PlcObject decimal(BigDecimal x, BigDecimal y) {
+            return test(x.compareTo(y));
+        }
+
+        @Override
+        Environment.PlcObject string(String x, String y) {
+            return test(x.compareTo(y));
+        }
+
+        @Override
+        Environment.PlcObject generic(Environment.PlcObject first, Environment.PlcObject second) {
+            return test(Operators.compare(first, second));
+        }
+
+        private Environment.PlcObject test(int comparison) {
+            switch (operator) {
+                case LESS: return Environment.create(comparison < 0);
+                case GREATER: return Environment.create(comparison > 0);
+                case LESS_EQUAL: return Environment.create(comparison <= 0);
+                case GREATER_EQUAL: return Environment.create(comparison >= 0);
+                case EQUAL: return Environment.create(comparison == 0);
+                default: return Environment.create(comparison != 0);
+            }
+        }
+
+    }
+
+    /**
+     * The local variables of a single method invocation. In primitive mode,
+     * Integer and Decimal locals are kept unboxed in their own array, with
+     * Decimal values stored as their raw bits. The variable of a FOR over a
+     * range keeps its index there as a long, and in the object array only
+     * once it is assigned another value or the loop iterates anything else.
+     * Frames of a compiled program refer to the context holding its fields.
+     */
+    private static final class Frame {
+
+        private final Environment.PlcObject[] locals;
+        private final long[] primitives;
+        private final ExecutionContext context;
+        private Environment.PlcObject result = Environment.NIL;
+
+        private Frame(int size, boolean unboxed) {
+            this(size, unboxed, null);
+        }
+
+        private Frame(int size, boolean unboxed, ExecutionContext context) {
+            this.locals = new Environment.PlcObject[size];
+            this.primitives = unboxed ? new long[size] : null;
+            this.context = context;
+        }
+
+        /**
+         * Consumes a unit of the context's budget, if it has one, at a loop
+         * iteration or call.
+         */
+        private void consume() {
+            if (context != null && context.budget != null) {
+                context.budget.consume();
+            }
+        }
+
+    }
+
+    private static final class CompiledMethod {
+
+        private final String name;
+        private final int arity;
+        private Stmt body;
+        private int size;
+        private boolean unboxed;
+
+        private CompiledMethod(String name, int arity) {
+            this.name = name;
+            this.arity = arity;
+        }
+
+        private Frame frame() {
+            return new Frame(size, unboxed);
+        }
+
+        private Frame frame(ExecutionContext context) {
+            return new Frame(size, unboxed, context);
+        }
+
+        private Environment.PlcObject invoke(Frame frame) {
+            frame.consume();
+            return body.execute(frame) ? frame.result : Environment.NIL;
+        }
+
+    }
+
+    /**
+     * A variable of the compiler's scope, looked up when first used and
+     * again whenever a variable of the scope chain has been defined. The
+     * variable and the version it was resolved at are published together, so
+     * a compiled program can be executed concurrently.
+     */
+    private final class GlobalVariable {
+
+        private final int symbol;
+        private volatile Resolved<Environment.Variable> resolved;
+
+        private GlobalVariable(int symbol) {
+            this.symbol = symbol;
+        }
+
+        private Environment.Variable get() {
+            int version = scope.getVariableVersion();
+            Resolved<Environment.Variable> current = resolved;
+            if (current == null || current.version != version) {
+                current = new Resolved<>(scope.lookupVariable(symbol), version);
+                resolved = current;
+            }
+            return current.value;
+        }
+
+    }
+
+    /**
+     * The function counterpart of {@link GlobalVariable}, validated by the
+     * function version of the scope chain instead.
+     */
+    private final class GlobalFunction {
+
+        private final int symbol;
+        private final int arity;
+        private volatile Resolved<Environment.Function> resolved;
+
+        private GlobalFunction(int symbol, int arity) {
+            this.symbol = symbol;
+            this.arity = arity;
+        }
+
+        private Environment.Function get() {
+            int version = scope.getFunctionVersion();
+            Resolved<Environment.Function> current = resolved;
+            if (current == null || current.version != version) {
+                current = new Resolved<>(scope.lookupFunction(symbol, arity), version);
+                resolved = current;
+            }
+            return current.value;
+        }
+
+    }
+
+    private static final class Resolved<T> {
+
+        private final T value;
+        private final int version;
+
+        private Resolved(T value, int version) {
+            this.value = value;
+            this.version = version;
+        }
+
+    }
+
+}
@@ -0,0 +1,183 @@
+package plc.project;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Function;
+
+/**
+ * Caches the results of compiling source text, keyed by the SHA-256 hash of
+ * the text. The least recently used results are evicted once there are more
+ * than the maximum number, or their total weight, the length of their
+ * sources, exceeds the maximum. Concurrent requests for a source which is
+ * not cached yet wait for a single compilation. Failed compilations are not
+ * cached, and the error is thrown to each waiting request.
+ */
+public final class CompileCache<T> {
+
+    private final int maxEntries;
+    private final long maxWeight;
+    private final Function<String, T> compiler;
+    private final LinkedHashMap<String, Entry<T>> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long weight = 0;
+    private long hits = 0;
+    private long misses = 0;
+    private long evictions = 0;
+
+    public CompileCache(int maxEntries, long maxWeight, Function<String, T> compiler) {
+        if (maxEntries < 1 || maxWeight < 1) {
+            throw new IllegalArgumentException("The cache must be able to hold an entry.");
+        }
+        this.maxEntries = maxEntries;
+        this.maxWeight = maxWeight;
+        this.compiler = compiler;
+    }
+
+    /**
+     * Returns a cache of sources which are lexed, parsed and analyzed, with
+     * the analyzer's scope a child of the given one.
+     */
+    public static CompileCache<Ast.Source> analyzing(Scope parent, int maxEntries, long maxWeight) {
+        return new CompileCache<>(maxEntries, maxWeight, source -> {
+            Analyzer analyzer = new Analyzer(parent);
+            Ast.Source ast = new Parser(new Lexer(source, analyzer.getScope().getSymbols()).lex()).parseSource();
+            analyzer.visit(ast);
+            return ast;
+        });
+    }
+
+    /**
+     * Returns the compiled source, compiling it if it is not cached.
+     */
+    public T get(String source) {
+        String key = hash(source);
+        Entry<T> entry;
+        boolean compile = false;
+        synchronized (this) {
+            entry = entries.get(key);
+            if (entry != null) {
+                hits++;
+            } else {
+                misses++;
+                entry = new Entry<>(source.length());
+                entries.put(key, entry);
+                weight += entry.weight;
+                compile = true;
+            }
+        }
+        if (compile) {
+            try {
+                entry.future.complete(compiler.apply(source));
+                synchronized (this) {
+                    evict();
+                }
+            } catch (RuntimeException | Error e) {
+                synchronized (this) {
+                    if (entries.remove(key, entry)) {
+                        weight -= entry.weight;
+                    }
+                }
+                entry.future.completeExceptionally(e);
+            }
+        }
+        try {
+            return entry.future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            } else if (e.getCause() instanceof Error) {
+                throw (Error) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Evicts the least recently used compiled entries until the limits are
+     * met. Compilations in progress are never evicted.
+     */
+    private void evict() {
+        Iterator<Entry<T>> iterator = entries.values().iterator();
+        while ((entries.size() > maxEntries || weight > maxWeight) && iterator.hasNext()) {
+            Entry<T> entry = iterator.next();
+            if (entry.future.isDone()) {
+                iterator.remove();
+                weight -= entry.weight;
+                evictions++;
+            }
+        }
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public synchronized long getWeight() {
+        return weight;
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+
+    public synchronized void clear() {
+        entries.values().removeIf(entry -> {
+            if (entry.future.isDone()) {
+                weight -= entry.weight;
+                return true;
+            }
+            return false;
+        });
+    }
+
+    /**
+     * Returns the SHA-256 hash of the source's UTF-8 encoding, in hex.
+     */
+    static String hash(String source) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(source.getBytes(StandardCharsets.UTF_8));
+            StringBuilder builder = new StringBuilder(digest.length * 2);
+            for (byte b : digest) {
+                builder.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+            }
+            return builder.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "CompileCache{" +
+                "size=" + entries.size() +
+                ", weight=" + weight +
+                ", hits=" + hits +
+                ", misses=" + misses +
+                ", evictions=" + evictions +
+                '}';
+    }
+
+    private static final class Entry<T> {
+
+        private final CompletableFuture<T> future = new CompletableFuture<>();
+        private final long weight;
+
+        private Entry(long weight) {
+            this.weight = weight;
+        }
+
+    }
+
+}
@@ -0,0 +1,113 @@
+package plc.project;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A source compiled by the {@link ClosureCompiler} once, and executed any
+ * number of times through {@link ExecutionContext}s. The program itself is
+ * immutable apart from the caches of its compiled code, which tolerate
+ * concurrent use, so many threads may execute it at once, each with its own
+ * context.
+ */
+public final class CompiledProgram {
+
+    private final Scope scope;
+    private final List<String> fields;
+    private final Initializer initializer;
+    private final Map<String, Entry> methods;
+
+    CompiledProgram(Scope scope, List<String> fields, Initializer initializer, Map<String, Entry> methods) {
+        this.scope = scope;
+        this.fields = fields;
+        this.initializer = initializer;
+        this.methods = methods;
+    }
+
+    /**
+     * Returns the scope in which names other than the program's own fields
+     * and methods are resolved.
+     */
+    public Scope getScope() {
+        return scope;
+    }
+
+    public List<String> getFields() {
+        return fields;
+    }
+
+    /**
+     * Returns a new context, with the fields of the program initialized.
+     */
+    public ExecutionContext createContext() {
+        return createContext(null);
+    }
+
+    /**
+     * Returns a new context whose execution, including the initialization of
+     * the fields, is limited by the budget unless it is null.
+     */
+    public ExecutionContext createContext(ResourceBudget budget) {
+        ExecutionContext context = new ExecutionContext(this, budget);
+        if (budget == null) {
+            initializer.initialize(context);
+            return context;
+        }
+        budget.start();
+        try {
+            initializer.initialize(context);
+        } finally {
+            budget.stop();
+        }
+        return context;
+    }
+
+    /**
+     * Executes the main method in a new context.
+     */
+    public Environment.PlcObject execute() {
+        return createContext().execute();
+    }
+
+    public Environment.PlcObject execute(ResourceBudget budget) {
+        return createContext(budget).execute();
+    }
+
+    Environment.PlcObject invoke(ExecutionContext context, String name, List<Environment.PlcObject> args) {
+        Entry method = methods.get(name + "/" + args.size());
+        if (method == null) {
+            return scope.lookupFunction(name, args.size()).invoke(args);
+        }
+        return method.invoke(context, args);
+    }
+
+    int indexOf(String field) {
+        int index = fields.lastIndexOf(field);
+        if (index == -1) {
+            throw new RuntimeException("The variable " + field + " is not defined in this scope.");
+        }
+        return index;
+    }
+
+    @Override
+    public String toString() {
+        Object[] signatures = methods.keySet().toArray();
+        Arrays.sort(signatures);
+        return "CompiledProgram{" +
+                "fields=" + fields +
+                ", methods=" + Arrays.toString(signatures) +
+                '}';
+    }
+
+    @FunctionalInterface
+    interface Initializer {
+        void initialize(ExecutionContext context);
+    }
+
+    @FunctionalInterface
+    interface Entry {
+        Environment.PlcObject invoke(ExecutionContext context, List<Environment.PlcObject> args);
+    }
+
+}
@@ -0,0 +1,355 @@
+package plc.project;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+
+/**
+ * A cache of compilation artifacts in a directory, which several processes
+ * may share. Entries are addressed by the SHA-256 hash of the source and the
+ * compiler version, so a new version never reads the artifacts of an old
+ * one. Each entry holds the tokens of the source and, if it was generated,
+ * the {@link Generator}'s Java output.
+ *
+ * Entries are read into memory whole, holding no mapping or open file that
+ * would keep another process from evicting them, and written to a temporary
+ * file first and moved into place, so a reader never sees a partial entry.
+ * Once the entries exceed the maximum size, the least recently used ones are
+ * deleted. Entries which cannot be read count as missing.
+ */
+public final class DiskCache {
+
+    /**
+     * The version of the artifacts, to be changed along with the output of
+     * the lexer or the generator.
+     */
+    public static final String VERSION = "1";
+
+    private static final int MAGIC = 0x504C4343;
+    private static final String EXTENSION = ".plcc";
+    private static final Token.Type[] TYPES = Token.Type.values();
+
+    private final Path directory;
+    private final long maxSize;
+    private final String version;
+
+    public DiskCache(Path directory, long maxSize) {
+        this(directory, maxSize, VERSION);
+    }
+
+    DiskCache(Path directory, long maxSize, String version) {
+        if (maxSize < 1) {
+            throw new IllegalArgumentException("The maximum size must be positive.");
+        }
+        this.directory = directory;
+        this.maxSize = maxSize;
+        this.version = version;
+        try {
+            Files.createDirectories(directory);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    public Path getDirectory() {
+        return directory;
+    }
+
+    /**
+     * Returns the artifacts of the source, lexing it and generating Java for
+     * it after analysis in the given scope when they are not cached. A
+     * source which does not compile is not cached.
+     */
+    public Artifacts compile(String source, Scope parent) {
+        RuntimeContext context = RuntimeContext.shared();
+        SymbolTable symbols = context.createScope(parent).getSymbols();
+        Optional<Artifacts> cached = load(source, symbols);
+        if (cached.isPresent()) {
+            return cached.get();
+        }
+        List<Token> tokens = new Lexer(source, symbols).lex();
+        Ast.Source ast = new Parser(tokens).parseSource();
+        new Analyzer(parent, context).visit(ast);
+        StringWriter generated = new StringWriter();
+        PrintWriter writer = new PrintWriter(generated);
+        new Generator(writer).visit(ast);
+        writer.flush();
+        Artifacts artifacts = new Artifacts(tokens, generated.toString());
+        store(source, artifacts);
+        return artifacts;
+    }
+
+    /**
+     * Returns the cached artifacts of the source, if there are any, with
+     * identifiers interned in a new table.
+     */
+    public Optional<Artifacts> load(String source) {
+        return load(source, SymbolTable.shared());
+    }
+
+    /**
+     * Returns the cached artifacts of the source, if there are any, with
+     * identifiers interned in the given table.
+     */
+    public Optional<Artifacts> load(String source, SymbolTable symbols) {
+        Path path = pathOf(source);
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                return Optional.empty();
+            }
+            ByteBuffer buffer = ByteBuffer.allocate((int) size);
+            while (buffer.hasRemaining() && channel.read(buffer) != -1) {
+                // reads until the buffer is full
+            }
+            buffer.flip();
+            Artifacts artifacts = read(buffer, symbols);
+            touch(path);
+            return Optional.ofNullable(artifacts);
+        } catch (IOException | BufferUnderflowException | IllegalArgumentException e) {
+            return Optional.empty();
+        }
+    }
+
+    public void store(String source, Artifacts artifacts) {
+        Path path = pathOf(source);
+        Path temporary = null;
+        try {
+            temporary = Files.createTempFile(directory, path.getFileName().toString(), ".tmp");
+            Files.write(temporary, write(artifacts));
+            try {
+                Files.move(temporary, path, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING);
+            }
+            temporary = null;
+            evict();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        } finally {
+            if (temporary != null) {
+                try {
+                    Files.deleteIfExists(temporary);
+                } catch (IOException e) {
+                    // the temporary file is left behind
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the total size of the entries.
+     */
+    public long size() {
+        long size = 0;
+        for (Path entry : entries()) {
+            try {
+                size += Files.size(entry);
+            } catch (IOException e) {
+                // deleted by another process
+            }
+        }
+        return size;
+    }
+
+    private Path pathOf(String source) {
+        return directory.resolve(CompileCache.hash(version + "\n" + source) + EXTENSION);
+    }
+
+    private List<Path> entries() {
+        List<Path> entries = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "*" + EXTENSION)) {
+            stream.forEach(entries::add);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        return entries;
+    }
+
+    /**
+     * Deletes the least recently used entries until the rest fit.
+     */
+    private void evict() {
+        List<Path> entries = entries();
+        List<FileTime> times = new ArrayList<>();
+        List<Long> sizes = new ArrayList<>();
+        long size = 0;
+        for (Path entry : entries) {
+            try {
+                times.add(Files.getLastModifiedTime(entry));
+                sizes.add(Files.size(entry));
+            } catch (IOException e) {
+                times.add(FileTime.fromMillis(0));
+                sizes.add(0L);
+            }
+            size += sizes.get(sizes.size() - 1);
+        }
+        if (size <= maxSize) {
+            return;
+        }
+        List<Integer> order = new ArrayList<>();
+        for (int i = 0; i < entries.size(); i++) {
+            order.add(i);
+        }
+        order.sort(Comparator.comparing(times::get));
+        for (int i = 0; i < order.size() && size > maxSize; i++) {
+            try {
+                Files.deleteIfExists(entries.get(order.get(i)));
+            } catch (IOException e) {
+                // deleted by another process, or in use
+            }
+            size -= sizes.get(order.get(i));
+        }
+    }
+
+    /**
+     * Marks an entry as recently used.
+     */
+    private static void touch(Path path) {
+        try {
+            Files.setLastModifiedTime(path, FileTime.fromMillis(System.currentTimeMillis()));
+        } catch (IOException e) {
+            // deleted by another process
+        }
+    }
+
+    private static byte[] write(Artifacts artifacts) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream output = new DataOutputStream(bytes);
+        output.writeInt(MAGIC);
+        output.writeInt(artifacts.tokens.size());
+        for (Token token : artifacts.tokens) {
+            output.writeByte(token.getType().ordinal());
+            output.writeInt(token.getIndex());
+            writeString(output, token.getLiteral());
+        }
+        if (artifacts.generated.isPresent()) {
+            output.writeBoolean(true);
+            writeString(output, artifacts.generated.get());
+        } else {
+            output.writeBoolean(false);
+        }
+        output.flush();
+        return bytes.toByteArray();
+    }
+
+    private static void writeString(DataOutputStream output, String string) throws IOException {
+        byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+        output.writeInt(bytes.length);
+        output.write(bytes);
+    }
+
+    /**
+     * Reads the artifacts of an entry, or returns null if it is not one.
+     */
+    private static Artifacts read(ByteBuffer buffer, SymbolTable symbols) {
+        if (buffer.remaining() < 8 || buffer.getInt() != MAGIC) {
+            return null;
+        }
+        int count = buffer.getInt();
+        if (count < 0 || count > buffer.remaining()) {
+            return null;
+        }
+        List<Token> tokens = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            int type = buffer.get();
+            int index = buffer.getInt();
+            String literal = readString(buffer);
+            if (type < 0 || type >= TYPES.length) {
+                return null;
+            } else if (TYPES[type] == Token.Type.IDENTIFIER) {
+                SymbolTable.Symbol symbol = symbols.symbol(literal);
+                tokens.add(new Token(TYPES[type], symbol.getName(), index, symbol));
+            } else {
+                tokens.add(new Token(TYPES[type], literal, index));
+            }
+        }
+        String generated = buffer.get() != 0 ? readString(buffer) : null;
+        return new Artifacts(tokens, generated);
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        if (length < 0 || length > buffer.remaining()) {
+            throw new IllegalArgumentException("The entry is truncated.");
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public String toString() {
+        return "DiskCache{" +
+                "directory=" + directory +
+                ", maxSize=" + maxSize +
+                ", version='" + version + '\'' +
+                '}';
+    }
+
+    /**
+     * The cached artifacts of a source.
+     */
+    public static final class Artifacts {
+
+        private final List<Token> tokens;
+        private final Optional<String> generated;
+
+        public Artifacts(List<Token> tokens, String generated) {
+            this.tokens = Collections.unmodifiableList(new ArrayList<>(tokens));
+            this.generated = Optional.ofNullable(generated);
+        }
+
+        public List<Token> getTokens() {
+            return tokens;
+        }
+
+        /**
+         * Returns the Java source generated for the source, if any.
+         */
+        public Optional<String> getGenerated() {
+            return generated;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            return obj instanceof Artifacts &&
+                    tokens.equals(((Artifacts) obj).tokens) &&
+                    generated.equals(((Artifacts) obj).generated);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(tokens, generated);
+        }
+
+        @Override
+        public String toString() {
+            return "Artifacts{" +
+                    "tokens=" + tokens +
+                    ", generated=" + generated +
+                    '}';
+        }
+
+    }
+
+}
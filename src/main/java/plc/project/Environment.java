@@ -1,14 +1,17 @@
 package plc.project;
 
+import java.math.BigDecimal;
+import java.math.BigInteger;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.HashMap;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.TreeMap;
 
 public final class Environment {
 
-    public static final PlcObject NIL = new PlcObject(Type.NIL, new Scope(null), new Object() {
+    public static final PlcObject NIL = PlcObject.scalar(Type.NIL, new Object() {
 
         @Override
         public String toString() {
@@ -17,41 +20,104 @@ public final class Environment {
 
     });
 
-    private static final Map<String, Type> TYPES = new HashMap<>();
+    public static final PlcObject TRUE = PlcObject.scalar(Type.BOOLEAN, Boolean.TRUE);
+    public static final PlcObject FALSE = PlcObject.scalar(Type.BOOLEAN, Boolean.FALSE);
 
+    /**
+     * Type of values created through {@link #create(Object)} that are not one
+     * of the built-in types, such as host collections.
+     */
+    private static final Type UNKNOWN = new Type("Unknown", "Unknown", new Scope(null, SymbolTable.builtins()));
+
+    private static final int INTEGER_CACHE_LOW = -128;
+    private static final int INTEGER_CACHE_HIGH = 1024;
+    private static final PlcObject[] INTEGER_CACHE = new PlcObject[INTEGER_CACHE_HIGH - INTEGER_CACHE_LOW + 1];
+
+    /**
+     * The frozen registry of built-in types, see {@link TypeRegistry#builtins()}.
+     * Other types are registered in the registry of a {@link RuntimeContext},
+     * so there is no process-wide mutable set of types.
+     */
+    private static final TypeRegistry BUILTINS;
+
+    static TypeRegistry getBuiltinTypes() {
+        return BUILTINS;
+    }
+
+    /**
+     * Returns the built-in type of the given name.
+     */
     public static Type getType(String name) {
-        if (!TYPES.containsKey(name)) {
-            throw new RuntimeException("Unknown type " + name + ".");
-        }
-        return TYPES.get(name);
+        return BUILTINS.getType(name);
     }
 
-    public static void registerType(Type type) {
-        if (TYPES.containsKey(type.getName())) {
-            throw new IllegalArgumentException("Duplicate registration of type " + type.getName() + ".");
+    /**
+     * Wraps a host value as a {@link PlcObject}. Nil and booleans map to their
+     * canonical instances and small integers are served from a cache, so only
+     * other values allocate. The returned object is tagged with the built-in
+     * type of the value and has no scope of its own.
+     */
+    public static PlcObject create(Object value) {
+        if (value == null) {
+            return NIL;
+        } else if (value instanceof Boolean) {
+            return create(((Boolean) value).booleanValue());
+        } else if (value instanceof BigInteger) {
+            BigInteger integer = (BigInteger) value;
+            if (integer.bitLength() < 32) {
+                int i = integer.intValue();
+                if (i >= INTEGER_CACHE_LOW && i <= INTEGER_CACHE_HIGH) {
+                    return INTEGER_CACHE[i - INTEGER_CACHE_LOW];
+                }
+            }
+            if (integer.bitLength() < 64) {
+                return new PlcObject(integer.longValue(), integer);
+            }
+            return PlcObject.scalar(Type.INTEGER, integer);
+        } else if (value instanceof BigDecimal) {
+            return PlcObject.scalar(Type.DECIMAL, value);
+        } else if (value instanceof String) {
+            return PlcObject.scalar(Type.STRING, value);
+        } else if (value instanceof Character) {
+            return PlcObject.scalar(Type.CHARACTER, value);
+        } else if (value instanceof Range) {
+            return PlcObject.scalar(Type.INTEGER_ITERABLE, value);
+        } else {
+            return PlcObject.scalar(UNKNOWN, value);
         }
-        TYPES.put(type.getName(), type);
     }
 
-    public static PlcObject create(Object value) {
-        return new PlcObject(new Scope(null), value);
+    public static PlcObject create(boolean value) {
+        return value ? TRUE : FALSE;
+    }
+
+    /**
+     * Wraps an Integer value which fits in a long, without creating its
+     * {@link BigInteger} until the value is requested.
+     */
+    static PlcObject createInteger(long value) {
+        if (value >= INTEGER_CACHE_LOW && value <= INTEGER_CACHE_HIGH) {
+            return INTEGER_CACHE[(int) value - INTEGER_CACHE_LOW];
+        }
+        return new PlcObject(value, null);
     }
 
     public static final class Type {
 
-        public static final Type ANY = new Type("Any", "Object", new Scope(null));
-        public static final Type NIL = new Type("Nil", "Void", new Scope(ANY.scope));
-        public static final Type INTEGER_ITERABLE = new Type("IntegerIterable", "Iterable<Integer>", new Scope(ANY.scope));
-        public static final Type COMPARABLE = new Type("Comparable", "Comparable", new Scope(ANY.scope));
-        public static final Type BOOLEAN = new Type("Boolean", "boolean", new Scope(ANY.scope));
-        public static final Type INTEGER = new Type("Integer", "int", new Scope(COMPARABLE.scope));
-        public static final Type DECIMAL = new Type("Decimal", "double", new Scope(COMPARABLE.scope));
-        public static final Type CHARACTER = new Type("Character", "char", new Scope(COMPARABLE.scope));
-        public static final Type STRING = new Type("String", "String", new Scope(COMPARABLE.scope));
+        public static final Type ANY = new Type("Any", "Object", new Scope(null, SymbolTable.builtins()));
+        public static final Type NIL = new Type("Nil", "Void", new Scope(ANY.scope, SymbolTable.builtins()));
+        public static final Type INTEGER_ITERABLE = new Type("IntegerIterable", "Iterable<Integer>", new Scope(ANY.scope, SymbolTable.builtins()));
+        public static final Type COMPARABLE = new Type("Comparable", "Comparable", new Scope(ANY.scope, SymbolTable.builtins()));
+        public static final Type BOOLEAN = new Type("Boolean", "boolean", new Scope(ANY.scope, SymbolTable.builtins()));
+        public static final Type INTEGER = new Type("Integer", "int", new Scope(COMPARABLE.scope, SymbolTable.builtins()));
+        public static final Type DECIMAL = new Type("Decimal", "double", new Scope(COMPARABLE.scope, SymbolTable.builtins()));
+        public static final Type CHARACTER = new Type("Character", "char", new Scope(COMPARABLE.scope, SymbolTable.builtins()));
+        public static final Type STRING = new Type("String", "String", new Scope(COMPARABLE.scope, SymbolTable.builtins()));
 
         private final String name;
         private final String jvmName;
         private final Scope scope;
+        private volatile MethodTable methods;
 
         public Type(String name, String jvmName, Scope scope) {
             this.name = name;
@@ -76,7 +142,26 @@ public final class Environment {
         }
 
         public Function getMethod(String name, int arity) {
-            return scope.lookupFunction(name, arity + 1);
+            SymbolTable symbols = scope.getSymbols();
+            int symbol = symbols.lookup(name);
+            if (symbol == -1) {
+                throw new RuntimeException("The function " + name + "/" + (arity + 1) + " is not defined in this scope.");
+            }
+            return getMethodTable().lookup(symbols, symbol, arity + 1);
+        }
+
+        /**
+         * Returns the flattened table of methods of this type, rebuilding it
+         * if a function was defined in the type's scope chain since.
+         */
+        MethodTable getMethodTable() {
+            MethodTable table = methods;
+            int version = scope.getFunctionVersion();
+            if (table == null || table.version != version) {
+                table = new MethodTable(scope, version);
+                methods = table;
+            }
+            return table;
         }
 
         @Override
@@ -90,57 +175,231 @@ public final class Environment {
 
     }
 
+    /**
+     * The methods visible from a type's scope chain, flattened into a single
+     * table indexed by symbol and arity so that lookups do not walk the chain.
+     */
+    static final class MethodTable {
+
+        private final int version;
+        private final SymbolTable symbols;
+        private final SymbolMap<Function[]> functions = new SymbolMap<>();
+
+        private MethodTable(Scope scope, int version) {
+            this.version = version;
+            this.symbols = scope.getSymbols();
+            scope.collectFunctions(functions);
+        }
+
+        /**
+         * Returns the method of the given arity named by a symbol of the
+         * given table, which is translated if it is not the type's own.
+         */
+        Function lookup(SymbolTable symbols, int symbol, int arity) {
+            int own = this.symbols.lookup(symbols, symbol);
+            Function function = own == -1 ? null : find(own, arity);
+            if (function == null) {
+                throw new RuntimeException("The function " + symbols.name(symbol) + "/" + arity + " is not defined in this scope.");
+            }
+            return function;
+        }
+
+        private Function find(int symbol, int arity) {
+            Function[] byArity = functions.get(symbol);
+            return byArity == null || arity >= byArity.length ? null : byArity[arity];
+        }
+
+    }
+
+    /**
+     * A runtime value. Objects lay out their fields in slots described by a
+     * shared {@link Shape}; objects constructed with a scope start out with
+     * its variables as fields, and all others without fields.
+     */
     public static final class PlcObject {
 
+        private static final Variable[] NO_SLOTS = new Variable[0];
+
         private final Type type;
-        private final Scope scope;
-        private final Object value;
+        private Object value;
+        private final boolean small;
+        private final long integer;
+        private Shape shape;
+        private Variable[] slots;
 
         public PlcObject(Scope scope, Object value) {
             this(new Type("Unknown", "Unknown", scope), scope, value);
         }
 
+        public PlcObject(Type type, Object value) {
+            this(type, null, value);
+        }
+
+        /**
+         * Creates an object whose fields are the variables visible from the
+         * scope, if there is one, when the object is created. The object
+         * shares the variables with the scope, so writes through either are
+         * seen by both. Field names are interned in the table of the scope,
+         * or else of the type's scope; objects of the built-in types have no
+         * table to extend and so cannot have fields.
+         */
         public PlcObject(Type type, Scope scope, Object value) {
+            this(type, value, shapeOf(scope != null ? scope : type.getScope()));
+            if (scope != null) {
+                Map<Integer, Variable> variables = new TreeMap<>();
+                scope.collectVariables(variables);
+                variables.forEach(this::addSlot);
+            }
+        }
+
+        /**
+         * Creates an object with the given layout. Scalar values such as the
+         * ones returned by {@link Environment#create(Object)} have no shape
+         * and can never have fields, which also keeps the shared canonical
+         * values immutable.
+         */
+        private PlcObject(Type type, Object value, Shape shape) {
             this.type = type;
-            this.scope = scope;
             this.value = value;
+            this.small = false;
+            this.integer = 0;
+            this.shape = shape;
+            this.slots = NO_SLOTS;
+        }
+
+        /**
+         * Creates an Integer which fits in a long, with its BigInteger value
+         * if it is already known.
+         */
+        private PlcObject(long integer, BigInteger value) {
+            this.type = Type.INTEGER;
+            this.value = value;
+            this.small = true;
+            this.integer = integer;
+            this.shape = null;
+            this.slots = NO_SLOTS;
+        }
+
+        private static PlcObject scalar(Type type, Object value) {
+            return new PlcObject(type, value, null);
+        }
+
+        private static Shape shapeOf(Scope scope) {
+            return scope == null ? null : scope.getSymbols().getShape();
         }
 
         public Type getType() {
             return type;
         }
 
+        /**
+         * Returns the variable of the given field, which is the slot itself.
+         */
         public Variable getField(String name) {
-            return scope.lookupVariable(name);
+            return slots[requireIndex(name)];
+        }
+
+        /**
+         * Returns the variable of a field by the symbol id of its name in
+         * the given table.
+         */
+        Variable getField(SymbolTable symbols, int symbol) {
+            int index = shape == null ? -1 : shape.indexOf(shape.getSymbols().lookup(symbols, symbol));
+            if (index == -1) {
+                throw new RuntimeException("The variable " + symbols.name(symbol) + " is not defined in this scope.");
+            }
+            return slots[index];
         }
 
         public void setField(String name, PlcObject value) {
-            scope.lookupVariable(name).setValue(value);
+            slots[requireIndex(name)].setValue(value);
+        }
+
+        /**
+         * Adds a field to this object, moving it to the next shape.
+         */
+        public void defineField(String name, PlcObject value) {
+            if (shape == null) {
+                throw new RuntimeException("Values of type " + type.getName() + " cannot have fields.");
+            }
+            addSlot(shape.getSymbols().intern(name), new Variable(name, value));
+        }
+
+        private void addSlot(int symbol, Variable variable) {
+            shape = shape.withField(symbol);
+            slots = Arrays.copyOf(slots, shape.size());
+            slots[shape.size() - 1] = variable;
+        }
+
+        /**
+         * Returns the shape of this object, or null if it is a scalar value.
+         */
+        Shape getShape() {
+            return shape;
+        }
+
+        PlcObject getSlot(int index) {
+            return slots[index].getValue();
+        }
+
+        void setSlot(int index, PlcObject value) {
+            slots[index].setValue(value);
+        }
+
+        private int requireIndex(String name) {
+            int index = shape == null ? -1 : shape.indexOf(name);
+            if (index == -1) {
+                throw new RuntimeException("The variable " + name + " is not defined in this scope.");
+            }
+            return index;
         }
 
         public PlcObject callMethod(String name, List<PlcObject> arguments) {
             Function function = type.getMethod(name, arguments.size());
-            arguments = new ArrayList<>(arguments);
-            arguments.add(0, this);
-            return function.invoke(arguments);
+            List<PlcObject> receiverArguments = new ArrayList<>(arguments.size() + 1);
+            receiverArguments.add(this);
+            receiverArguments.addAll(arguments);
+            return function.invoke(receiverArguments);
         }
 
+        /**
+         * Returns the value of this object. The BigInteger of an Integer
+         * created from a long is created on first use; racing threads may
+         * each create one, which is harmless since they are equal.
+         */
         public Object getValue() {
+            Object value = this.value;
+            if (value == null && small) {
+                value = BigInteger.valueOf(integer);
+                this.value = value;
+            }
             return value;
         }
 
+        /**
+         * Returns whether this object is an Integer which fits in a long,
+         * available through {@link #getLong()}.
+         */
+        boolean isLong() {
+            return small;
+        }
+
+        long getLong() {
+            return integer;
+        }
+
         @Override
         public String toString() {
             return "Object{" +
                     "type=" + type +
-                    ", value=" + value +
-                    ", scope=" + scope +
+                    ", value=" + getValue() +
+                    ", shape=" + shape +
                     '}';
         }
 
     }
 
-    public static final class Variable {
+    public static class Variable {
 
         private final String name;
         private final String jvmName;
@@ -198,6 +457,43 @@ public final class Environment {
 
     }
 
+    /**
+     * Common supertype of the arity-specialized native function interfaces
+     * {@link Function0} through {@link Function4}, which are called without
+     * collecting their arguments into a list.
+     */
+    public interface NativeFunction {}
+
+    @FunctionalInterface
+    public interface Function0 extends NativeFunction {
+        PlcObject apply();
+    }
+
+    @FunctionalInterface
+    public interface Function1 extends NativeFunction {
+        PlcObject apply(PlcObject first);
+    }
+
+    @FunctionalInterface
+    public interface Function2 extends NativeFunction {
+        PlcObject apply(PlcObject first, PlcObject second);
+    }
+
+    @FunctionalInterface
+    public interface Function3 extends NativeFunction {
+        PlcObject apply(PlcObject first, PlcObject second, PlcObject third);
+    }
+
+    @FunctionalInterface
+    public interface Function4 extends NativeFunction {
+        PlcObject apply(PlcObject first, PlcObject second, PlcObject third, PlcObject fourth);
+    }
+
+    /**
+     * A callable function. Its implementation is either a list-based
+     * function, which accepts any number of arguments, or a native function
+     * specialized to its arity; the invoke overloads adapt between the two.
+     */
     public static final class Function {
 
         private final String name;
@@ -205,6 +501,7 @@ public final class Environment {
         private final List<Type> parameterTypes;
         private final Type returnType;
         private final java.util.function.Function<List<PlcObject>, PlcObject> function;
+        private final NativeFunction nativeFunction;
 
         public Function(String name, int arity, java.util.function.Function<List<PlcObject>, PlcObject> function) {
             this(name, name, new ArrayList<>(), Type.ANY, function);
@@ -219,6 +516,30 @@ public final class Environment {
             this.parameterTypes = parameterTypes;
             this.returnType = returnType;
             this.function = function;
+            this.nativeFunction = null;
+        }
+
+        public Function(String name, String jvmName, List<Type> parameterTypes, Type returnType, NativeFunction function) {
+            if (!isArity(function, parameterTypes.size())) {
+                throw new IllegalArgumentException("The native function " + name + " does not take " + parameterTypes.size() + " arguments.");
+            }
+            this.name = name;
+            this.jvmName = jvmName;
+            this.parameterTypes = parameterTypes;
+            this.returnType = returnType;
+            this.function = null;
+            this.nativeFunction = function;
+        }
+
+        private static boolean isArity(NativeFunction function, int arity) {
+            switch (arity) {
+                case 0: return function instanceof Function0;
+                case 1: return function instanceof Function1;
+                case 2: return function instanceof Function2;
+                case 3: return function instanceof Function3;
+                case 4: return function instanceof Function4;
+                default: return false;
+            }
         }
 
         public String getName() {
@@ -238,7 +559,52 @@ public final class Environment {
         }
 
         public PlcObject invoke(List<PlcObject> arguments) {
-            return function.apply(arguments);
+            if (function != null) {
+                return function.apply(arguments);
+            }
+            switch (arguments.size()) {
+                case 0: return ((Function0) nativeFunction).apply();
+                case 1: return ((Function1) nativeFunction).apply(arguments.get(0));
+                case 2: return ((Function2) nativeFunction).apply(arguments.get(0), arguments.get(1));
+                case 3: return ((Function3) nativeFunction).apply(arguments.get(0), arguments.get(1), arguments.get(2));
+                case 4: return ((Function4) nativeFunction).apply(arguments.get(0), arguments.get(1), arguments.get(2), arguments.get(3));
+                default: throw new RuntimeException("The function " + name + " does not take " + arguments.size() + " arguments.");
+            }
+        }
+
+        public PlcObject invoke() {
+            if (nativeFunction != null) {
+                return ((Function0) nativeFunction).apply();
+            }
+            return function.apply(Collections.emptyList());
+        }
+
+        public PlcObject invoke(PlcObject first) {
+            if (nativeFunction != null) {
+                return ((Function1) nativeFunction).apply(first);
+            }
+            return function.apply(Collections.singletonList(first));
+        }
+
+        public PlcObject invoke(PlcObject first, PlcObject second) {
+            if (nativeFunction != null) {
+                return ((Function2) nativeFunction).apply(first, second);
+            }
+            return function.apply(Arrays.asList(first, second));
+        }
+
+        public PlcObject invoke(PlcObject first, PlcObject second, PlcObject third) {
+            if (nativeFunction != null) {
+                return ((Function3) nativeFunction).apply(first, second, third);
+            }
+            return function.apply(Arrays.asList(first, second, third));
+        }
+
+        public PlcObject invoke(PlcObject first, PlcObject second, PlcObject third, PlcObject fourth) {
+            if (nativeFunction != null) {
+                return ((Function4) nativeFunction).apply(first, second, third, fourth);
+            }
+            return function.apply(Arrays.asList(first, second, third, fourth));
         }
 
         @Override
@@ -258,22 +624,17 @@ public final class Environment {
                     ", arity=" + parameterTypes.size() +
                     ", parameterTypes=" + parameterTypes +
                     ", returnType=" + returnType +
-                    ", function=" + function +
+                    ", function=" + (function != null ? function : nativeFunction) +
                     '}';
         }
 
     }
 
     static {
-        registerType(Type.ANY);
-        registerType(Type.NIL);
-        registerType(Type.INTEGER_ITERABLE);
-        registerType(Type.COMPARABLE);
-        registerType(Type.BOOLEAN);
-        registerType(Type.INTEGER);
-        registerType(Type.DECIMAL);
-        registerType(Type.CHARACTER);
-        registerType(Type.STRING);
+        for (int i = 0; i < INTEGER_CACHE.length; i++) {
+            INTEGER_CACHE[i] = new PlcObject(i + INTEGER_CACHE_LOW, BigInteger.valueOf(i + INTEGER_CACHE_LOW));
+        }
+        UNKNOWN.getScope().freeze();
         Type.ANY.scope.defineFunction("stringify", "toString", Arrays.asList(), Type.STRING, args -> Environment.NIL);
         Type.COMPARABLE.scope.defineFunction("compare", "compareTo", Arrays.asList(Type.ANY, Type.COMPARABLE), Type.COMPARABLE, args -> Environment.NIL);
         Type.INTEGER.scope.defineFunction("compare", "compareTo", Arrays.asList(Type.ANY, Type.INTEGER), Type.INTEGER, args -> Environment.NIL);
@@ -282,6 +643,18 @@ public final class Environment {
         Type.STRING.scope.defineVariable("length", "length()", Type.INTEGER, Environment.NIL);
         Type.STRING.scope.defineFunction("slice", "substring", Arrays.asList(Type.ANY, Type.INTEGER, Type.INTEGER), Type.STRING, args -> Environment.NIL);
         Type.STRING.scope.defineFunction("compare", "compareTo", Arrays.asList(Type.ANY, Type.STRING), Type.STRING, args -> Environment.NIL);
+        BUILTINS = new TypeRegistry();
+        BUILTINS.register(Type.ANY);
+        BUILTINS.register(Type.NIL);
+        BUILTINS.register(Type.INTEGER_ITERABLE);
+        BUILTINS.register(Type.COMPARABLE);
+        BUILTINS.register(Type.BOOLEAN);
+        BUILTINS.register(Type.INTEGER);
+        BUILTINS.register(Type.DECIMAL);
+        BUILTINS.register(Type.CHARACTER);
+        BUILTINS.register(Type.STRING);
+        BUILTINS.freeze();
+        SymbolTable.builtins().freeze();
     }
 
 }
@@ -0,0 +1,73 @@
+package plc.project;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The state of one execution of a {@link CompiledProgram}, which is the
+ * values of its fields; everything else lives in the frames of the running
+ * methods. Creating a context only initializes the fields. A context is
+ * used by one thread at a time, and may be reused for several calls which
+ * then share the field values. The execution in a context is limited by its
+ * budget, if it has one.
+ */
+public final class ExecutionContext {
+
+    private final CompiledProgram program;
+    final ResourceBudget budget;
+    final Environment.PlcObject[] fields;
+
+    ExecutionContext(CompiledProgram program, ResourceBudget budget) {
+        this.program = program;
+        this.budget = budget;
+        this.fields = new Environment.PlcObject[program.getFields().size()];
+    }
+
+    public CompiledProgram getProgram() {
+        return program;
+    }
+
+    public Environment.PlcObject getField(String name) {
+        return fields[program.indexOf(name)];
+    }
+
+    public void setField(String name, Environment.PlcObject value) {
+        fields[program.indexOf(name)] = value;
+    }
+
+    /**
+     * Invokes the main method of the program.
+     */
+    public Environment.PlcObject execute() {
+        return invoke("main", Collections.emptyList());
+    }
+
+    /**
+     * Invokes a method of the program, or else a function of its scope.
+     */
+    public Environment.PlcObject invoke(String name, Environment.PlcObject... args) {
+        return invoke(name, Arrays.asList(args));
+    }
+
+    public Environment.PlcObject invoke(String name, List<Environment.PlcObject> args) {
+        if (budget == null) {
+            return program.invoke(this, name, args);
+        }
+        budget.start();
+        try {
+            return program.invoke(this, name, args);
+        } finally {
+            budget.stop();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "ExecutionContext{" +
+                "program=" + program +
+                ", fields=" + Arrays.toString(fields) +
+                '}';
+    }
+
+}
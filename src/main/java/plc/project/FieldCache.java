@@ -0,0 +1,97 @@
+package plc.project;
+
+/**
+ * A per access site cache of the slot index of a field for the object shapes
+ * seen at that site, the field counterpart of {@link InlineCache}. The field
+ * is named by a symbol of the accessing code's table, which is translated on
+ * a miss if the shape's table is another one. Scalar values, which have no
+ * shape, bypass the cache.
+ */
+final class FieldCache {
+
+    private static final int MAX_ENTRIES = 4;
+
+    private volatile Entry[] entries = new Entry[0];
+    private volatile boolean megamorphic = false;
+    private int misses = 0;
+
+    Environment.PlcObject get(Environment.PlcObject object, SymbolTable symbols, int symbol) {
+        Shape shape = object.getShape();
+        if (shape == null) {
+            return object.getField(symbols, symbol).getValue();
+        }
+        return object.getSlot(indexOf(shape, symbols, symbol));
+    }
+
+    void set(Environment.PlcObject object, SymbolTable symbols, int symbol, Environment.PlcObject value) {
+        Shape shape = object.getShape();
+        if (shape == null) {
+            object.getField(symbols, symbol).setValue(value);
+        } else {
+            object.setSlot(indexOf(shape, symbols, symbol), value);
+        }
+    }
+
+    private int indexOf(Shape shape, SymbolTable symbols, int symbol) {
+        if (!megamorphic) {
+            for (Entry entry : entries) {
+                if (entry.shape == shape) {
+                    return entry.index;
+                }
+            }
+        }
+        misses++;
+        int own = shape.getSymbols().lookup(symbols, symbol);
+        int index = own == -1 ? -1 : shape.indexOf(own);
+        if (index == -1) {
+            throw new RuntimeException("The variable " + symbols.name(symbol) + " is not defined in this scope.");
+        }
+        if (!megamorphic) {
+            update(new Entry(shape, index));
+        }
+        return index;
+    }
+
+    /**
+     * Returns the number of lookups which were not cached. The count is not
+     * synchronized, since a few lost updates do not matter.
+     */
+    int getMisses() {
+        return misses;
+    }
+
+    boolean isMegamorphic() {
+        return megamorphic;
+    }
+
+    private synchronized void update(Entry entry) {
+        Entry[] current = entries;
+        for (Entry existing : current) {
+            if (existing.shape == entry.shape) {
+                return;
+            }
+        }
+        if (current.length == MAX_ENTRIES) {
+            megamorphic = true;
+            entries = new Entry[0];
+        } else {
+            Entry[] extended = new Entry[current.length + 1];
+            System.arraycopy(current, 0, extended, 0, current.length);
+            extended[current.length] = entry;
+            entries = extended;
+        }
+    }
+
+    private static final class Entry {
+
+        private final Shape shape;
+        private final int index;
+
+        private Entry(Shape shape, int index) {
+            this.shape = shape;
+            this.index = index;
+        }
+
+    }
+
+}
@@ -4,16 +4,27 @@ import java.io.PrintWriter;
 import java.math.BigDecimal;
 import java.math.BigInteger;
 import java.util.Collection;
+import java.util.List;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
 
 public final class Generator implements Ast.Visitor<Void> {
 
     private final PrintWriter writer;
+    private final boolean exact;
     private int indent = 0;
 
     public Generator(PrintWriter writer) {
+        this(writer, false);
+    }
+
+    /**
+     * Creates a generator which, if exact, emits Integer arithmetic that
+     * throws an ArithmeticException on overflow rather than wrapping.
+     */
+    public Generator(PrintWriter writer, boolean exact) {
         this.writer = writer;
+        this.exact = exact;
     }
 
     private void print(Object... objects) {
@@ -101,7 +112,7 @@ public final class Generator implements Ast.Visitor<Void> {
         print("(");
 
         for (int i = 0; i < ast.getParameters().size(); i++) {
-            print(ast.getParameterTypeNames().get(i));
+            print(ast.getFunction().getParameterTypes().get(i).getJvmName());
             print(" ");
             print(ast.getParameters().get(i));
             if (i != ast.getParameters().size() - 1)
@@ -174,11 +185,10 @@ public final class Generator implements Ast.Visitor<Void> {
 
     @Override
     public Void visit(Ast.Stmt.For ast) {
-        print("for (int ");
-        print(ast.getName());
-        print(" : ");
-        print(ast.getValue());
-        print(") {");
+        if (isRange(ast.getValue()))
+            printRange(ast.getName(), ((Ast.Expr.Function) ast.getValue()).getArguments());
+        else
+            print("for (int ", ast.getName(), " : ", ast.getValue(), ") {");
         newline(++indent);
         for (int i = 0; i <ast.getStatements().size(); i++){
             print(ast.getStatements().get(i));
@@ -190,6 +200,41 @@ public final class Generator implements Ast.Visitor<Void> {
         return null;
     }
 
+    /**
+     * Returns whether a FOR iterates over a call to the built-in range, which
+     * is generated as a counted loop rather than over an iterable. A method
+     * of the source named range resolves to another function.
+     */
+    private static boolean isRange(Ast.Expr value) {
+        if (!(value instanceof Ast.Expr.Function))
+            return false;
+        Ast.Expr.Function function = (Ast.Expr.Function) value;
+        return !function.getReceiver().isPresent()
+                && (function.getFunction() == Analyzer.RANGE || function.getFunction() == Analyzer.RANGE_STEP);
+    }
+
+    /**
+     * Prints the header of a counted loop. The end and step are evaluated
+     * once into locals, named with a {@code $} so they cannot clash with
+     * source names, and a literal step selects the comparison statically. A
+     * literal step of zero is rejected, as the interpreter would.
+     */
+    private void printRange(String name, List<Ast.Expr> arguments) {
+        print("for (int ", name, " = ", arguments.get(0), ", ", name, "$end = ", arguments.get(1));
+        if (arguments.size() == 2) {
+            print("; ", name, " < ", name, "$end; ", name, "++) {");
+        } else if (arguments.get(2) instanceof Ast.Expr.Literal) {
+            BigInteger step = (BigInteger) ((Ast.Expr.Literal) arguments.get(2)).getLiteral();
+            if (step.signum() == 0)
+                throw new RuntimeException("The step of a range cannot be zero.");
+            print("; ", name, step.signum() > 0 ? " < " : " > ", name, "$end; ", name, " += ", step, ") {");
+        } else {
+            print(", ", name, "$step = ", arguments.get(2), "; ");
+            print(name, "$step > 0 ? ", name, " < ", name, "$end : ", name, " > ", name, "$end; ");
+            print(name, " += ", name, "$step) {");
+        }
+    }
+
     @Override
     public Void visit(Ast.Stmt.While ast) {
         print("while (", ast.getCondition(), ") {");
@@ -242,11 +287,13 @@ public final class Generator implements Ast.Visitor<Void> {
 
     @Override
     public Void visit(Ast.Expr.Binary ast) {
+        if (exact && ast.getLeft().getType() == Environment.Type.INTEGER && printExact(ast))
+            return null;
         visit(ast.getLeft());
         print(" ");
-        if (ast.getOperator().equals("OR"))
+        if (ast.getKind() == Ast.Expr.Binary.Operator.OR)
             print("||");
-        else if (ast.getOperator().equals("AND"))
+        else if (ast.getKind() == Ast.Expr.Binary.Operator.AND)
             print("&&");
         else
             print(ast.getOperator());
@@ -257,6 +304,29 @@ public final class Generator implements Ast.Visitor<Void> {
         return null;
     }
 
+    /**
+     * Prints overflow-checked Integer arithmetic, returning false for the
+     * other operators.
+     */
+    private boolean printExact(Ast.Expr.Binary ast) {
+        switch (ast.getKind()) {
+            case ADD:
+                print("Math.addExact(", ast.getLeft(), ", ", ast.getRight(), ")");
+                return true;
+            case SUBTRACT:
+                print("Math.subtractExact(", ast.getLeft(), ", ", ast.getRight(), ")");
+                return true;
+            case MULTIPLY:
+                print("Math.multiplyExact(", ast.getLeft(), ", ", ast.getRight(), ")");
+                return true;
+            case DIVIDE:
+                print("Math.toIntExact((long) ", ast.getLeft(), " / ", ast.getRight(), ")");
+                return true;
+            default:
+                return false;
+        }
+    }
+
     @Override
     public Void visit(Ast.Expr.Access ast) {
         if(ast.getReceiver().isPresent()){
@@ -0,0 +1,85 @@
+package plc.project;
+
+/**
+ * A per call site cache of the methods resolved for the receiver types seen
+ * at that site. Up to {@link #MAX_ENTRIES} types are cached (monomorphic and
+ * polymorphic states); beyond that the site is megamorphic and resolves
+ * through the type's method table only. Entries are immutable and replaced
+ * as a whole, so the cache can be shared by concurrent executions, and are
+ * valid until a function is defined in the scope chain of their type (see
+ * {@link Scope#getFunctionVersion()}). The method is named by a symbol of the
+ * calling code's table, which the method table translates on a miss.
+ */
+final class InlineCache {
+
+    private static final int MAX_ENTRIES = 4;
+
+    private volatile Entry[] entries = new Entry[0];
+    private volatile boolean megamorphic = false;
+    private int misses = 0;
+
+    Environment.Function lookup(Environment.Type type, SymbolTable symbols, int symbol, int arity) {
+        int version = type.getScope().getFunctionVersion();
+        if (!megamorphic) {
+            for (Entry entry : entries) {
+                if (entry.type == type && entry.version == version) {
+                    return entry.function;
+                }
+            }
+        }
+        misses++;
+        Environment.Function function = type.getMethodTable().lookup(symbols, symbol, arity + 1);
+        if (!megamorphic) {
+            update(new Entry(type, version, function));
+        }
+        return function;
+    }
+
+    /**
+     * Returns the number of lookups which were not cached. The count is not
+     * synchronized, since a few lost updates do not matter.
+     */
+    int getMisses() {
+        return misses;
+    }
+
+    boolean isMegamorphic() {
+        return megamorphic;
+    }
+
+    private synchronized void update(Entry entry) {
+        Entry[] current = entries;
+        for (int i = 0; i < current.length; i++) {
+            if (current[i].type == entry.type) {
+                Entry[] replaced = current.clone();
+                replaced[i] = entry;
+                entries = replaced;
+                return;
+            }
+        }
+        if (current.length == MAX_ENTRIES) {
+            megamorphic = true;
+            entries = new Entry[0];
+        } else {
+            Entry[] extended = new Entry[current.length + 1];
+            System.arraycopy(current, 0, extended, 0, current.length);
+            extended[current.length] = entry;
+            entries = extended;
+        }
+    }
+
+    private static final class Entry {
+
+        private final Environment.Type type;
+        private final int version;
+        private final Environment.Function function;
+
+        private Entry(Environment.Type type, int version, Environment.Function function) {
+            this.type = type;
+            this.version = version;
+            this.function = function;
+        }
+
+    }
+
+}
@@ -0,0 +1,279 @@
+package plc.project;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Exposes public Java methods to PLC programs. Each method is linked through
+ * a {@link MethodHandle} which is adapted once to take and return {@link
+ * Environment.PlcObject}s, converting arguments to BigInteger, BigDecimal,
+ * String, Character and Boolean (and their primitive counterparts) and
+ * wrapping the result. Adapted handles are cached per method and called
+ * through the arity-specialized native functions, so host calls do not
+ * allocate argument lists and can be inlined by the JIT.
+ *
+ * Static methods are defined as functions taking the method's parameters,
+ * while instance methods are defined as methods (for a type's scope) taking
+ * the receiver as their first argument.
+ */
+public final class Interop {
+
+    private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+    private static final Map<Method, MethodHandle> HANDLES = new ConcurrentHashMap<>();
+
+    private Interop() {}
+
+    public static Environment.Function defineStatic(Scope scope, String name, Class<?> owner, String methodName, Class<?>... parameterTypes) {
+        Method method = findMethod(owner, methodName, parameterTypes);
+        if (!Modifier.isStatic(method.getModifiers())) {
+            throw new IllegalArgumentException("The method " + method + " is not static.");
+        }
+        return define(scope, name, owner.getName() + "." + methodName, method);
+    }
+
+    public static Environment.Function defineMethod(Scope scope, String name, Class<?> owner, String methodName, Class<?>... parameterTypes) {
+        Method method = findMethod(owner, methodName, parameterTypes);
+        if (Modifier.isStatic(method.getModifiers())) {
+            throw new IllegalArgumentException("The method " + method + " is static.");
+        }
+        return define(scope, name, methodName, method);
+    }
+
+    private static Method findMethod(Class<?> owner, String methodName, Class<?>... parameterTypes) {
+        try {
+            return owner.getMethod(methodName, parameterTypes);
+        } catch (NoSuchMethodException e) {
+            throw new IllegalArgumentException("No public method " + owner.getName() + "." + methodName + ".", e);
+        }
+    }
+
+    private static Environment.Function define(Scope scope, String name, String jvmName, Method method) {
+        MethodHandle handle = HANDLES.computeIfAbsent(method, Interop::adapt);
+        List<Environment.Type> parameterTypes = new ArrayList<>();
+        if (!Modifier.isStatic(method.getModifiers())) {
+            parameterTypes.add(Environment.Type.ANY);
+        }
+        for (Class<?> type : method.getParameterTypes()) {
+            parameterTypes.add(typeOf(type));
+        }
+        Environment.Type returnType = method.getReturnType() == void.class ? Environment.Type.NIL : typeOf(method.getReturnType());
+        return scope.defineFunction(name, jvmName, parameterTypes, returnType, bind(handle, parameterTypes.size()));
+    }
+
+    /**
+     * Adapts the handle of the method to the type (PlcObject...)PlcObject,
+     * with the receiver of an instance method as the first parameter.
+     */
+    private static MethodHandle adapt(Method method) {
+        try {
+            return adapt(MethodHandles.publicLookup().unreflect(method));
+        } catch (IllegalAccessException e) {
+            throw new IllegalArgumentException("The method " + method + " is not accessible.", e);
+        }
+    }
+
+    private static MethodHandle adapt(MethodHandle handle) {
+        MethodType type = handle.type();
+        MethodHandle[] filters = new MethodHandle[type.parameterCount()];
+        for (int i = 0; i < filters.length; i++) {
+            filters[i] = toJava(type.parameterType(i));
+        }
+        handle = MethodHandles.filterArguments(handle, 0, filters);
+        return MethodHandles.filterReturnValue(handle, toPlc(type.returnType()));
+    }
+
+    /**
+     * Returns a function calling an instance method of code generated at
+     * runtime on the given receiver. Unlike the methods defined for programs,
+     * the method need not be public, and the function is not defined in any
+     * scope.
+     */
+    static Environment.Function bind(String name, Object receiver, Method method) {
+        MethodHandle handle;
+        try {
+            method.setAccessible(true);
+            handle = MethodHandles.lookup().unreflect(method).bindTo(receiver);
+        } catch (IllegalAccessException | RuntimeException e) {
+            throw new IllegalArgumentException("The method " + method + " is not accessible.", e);
+        }
+        List<Environment.Type> parameterTypes = new ArrayList<>();
+        for (Class<?> type : method.getParameterTypes()) {
+            parameterTypes.add(typeOf(type));
+        }
+        Environment.Type returnType = method.getReturnType() == void.class ? Environment.Type.NIL : typeOf(method.getReturnType());
+        return new Environment.Function(name, method.getName(), parameterTypes, returnType, bind(adapt(handle), parameterTypes.size()));
+    }
+
+    private static Environment.NativeFunction bind(MethodHandle handle, int arity) {
+        switch (arity) {
+            case 0: return (Environment.Function0) () -> {
+                try {
+                    return (Environment.PlcObject) handle.invokeExact();
+                } catch (Throwable t) {
+                    throw rethrow(t);
+                }
+            };
+            case 1: return (Environment.Function1) first -> {
+                try {
+                    return (Environment.PlcObject) handle.invokeExact(first);
+                } catch (Throwable t) {
+                    throw rethrow(t);
+                }
+            };
+            case 2: return (Environment.Function2) (first, second) -> {
+                try {
+                    return (Environment.PlcObject) handle.invokeExact(first, second);
+                } catch (Throwable t) {
+                    throw rethrow(t);
+                }
+            };
+            case 3: return (Environment.Function3) (first, second, third) -> {
+                try {
+                    return (Environment.PlcObject) handle.invokeExact(first, second, third);
+                } catch (Throwable t) {
+                    throw rethrow(t);
+                }
+            };
+            case 4: return (Environment.Function4) (first, second, third, fourth) -> {
+                try {
+                    return (Environment.PlcObject) handle.invokeExact(first, second, third, fourth);
+                } catch (Throwable t) {
+                    throw rethrow(t);
+                }
+            };
+            default: throw new IllegalArgumentException("Host functions may take at most 4 arguments, including the receiver.");
+        }
+    }
+
+    private static RuntimeException rethrow(Throwable t) {
+        if (t instanceof RuntimeException) {
+            return (RuntimeException) t;
+        } else if (t instanceof Error) {
+            throw (Error) t;
+        }
+        return new RuntimeException(t);
+    }
+
+    private static Environment.Type typeOf(Class<?> type) {
+        if (type == BigInteger.class || type == int.class || type == Integer.class || type == long.class || type == Long.class) {
+            return Environment.Type.INTEGER;
+        } else if (type == BigDecimal.class || type == double.class || type == Double.class) {
+            return Environment.Type.DECIMAL;
+        } else if (type == String.class) {
+            return Environment.Type.STRING;
+        } else if (type == char.class || type == Character.class) {
+            return Environment.Type.CHARACTER;
+        } else if (type == boolean.class || type == Boolean.class) {
+            return Environment.Type.BOOLEAN;
+        } else {
+            return Environment.Type.ANY;
+        }
+    }
+
+    /**
+     * Returns a handle converting a PlcObject to the given Java type.
+     */
+    private static MethodHandle toJava(Class<?> type) {
+        try {
+            if (type == Environment.PlcObject.class) {
+                return MethodHandles.identity(Environment.PlcObject.class);
+            } else if (type == int.class || type == Integer.class) {
+                return convert("toInt", int.class).asType(MethodType.methodType(type, Environment.PlcObject.class));
+            } else if (type == long.class || type == Long.class) {
+                return convert("toLong", long.class).asType(MethodType.methodType(type, Environment.PlcObject.class));
+            } else if (type == double.class || type == Double.class) {
+                return convert("toDouble", double.class).asType(MethodType.methodType(type, Environment.PlcObject.class));
+            } else if (type == char.class) {
+                return convert("toChar", char.class);
+            } else if (type == boolean.class) {
+                return convert("toBoolean", boolean.class);
+            }
+            MethodHandle require = LOOKUP.findStatic(Interop.class, "requireType", MethodType.methodType(Object.class, Class.class, Environment.PlcObject.class));
+            return require.bindTo(type.isPrimitive() ? Object.class : type).asType(MethodType.methodType(type, Environment.PlcObject.class));
+        } catch (ReflectiveOperationException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    /**
+     * Returns a handle converting a value of the given Java type to a
+     * PlcObject.
+     */
+    private static MethodHandle toPlc(Class<?> type) {
+        try {
+            if (type == void.class) {
+                return MethodHandles.constant(Environment.PlcObject.class, Environment.NIL);
+            } else if (type == Environment.PlcObject.class) {
+                return MethodHandles.identity(Environment.PlcObject.class);
+            } else if (type == int.class || type == long.class) {
+                return LOOKUP.findStatic(Interop.class, "fromLong", MethodType.methodType(Environment.PlcObject.class, long.class))
+                        .asType(MethodType.methodType(Environment.PlcObject.class, type));
+            } else if (type == double.class) {
+                return LOOKUP.findStatic(Interop.class, "fromDouble", MethodType.methodType(Environment.PlcObject.class, double.class));
+            }
+            return LOOKUP.findStatic(Interop.class, "fromObject", MethodType.methodType(Environment.PlcObject.class, Object.class))
+                    .asType(MethodType.methodType(Environment.PlcObject.class, type));
+        } catch (ReflectiveOperationException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    private static MethodHandle convert(String name, Class<?> type) throws ReflectiveOperationException {
+        return LOOKUP.findStatic(Interop.class, name, MethodType.methodType(type, Environment.PlcObject.class));
+    }
+
+    private static Object requireType(Class<?> type, Environment.PlcObject object) {
+        if (type.isInstance(object.getValue())) {
+            return object.getValue();
+        } else {
+            throw new RuntimeException("Expected type " + type.getName() + ", received " + object.getValue().getClass().getName() + ".");
+        }
+    }
+
+    private static int toInt(Environment.PlcObject object) {
+        return ((BigInteger) requireType(BigInteger.class, object)).intValueExact();
+    }
+
+    private static long toLong(Environment.PlcObject object) {
+        return ((BigInteger) requireType(BigInteger.class, object)).longValueExact();
+    }
+
+    private static double toDouble(Environment.PlcObject object) {
+        return ((BigDecimal) requireType(BigDecimal.class, object)).doubleValue();
+    }
+
+    private static char toChar(Environment.PlcObject object) {
+        return (Character) requireType(Character.class, object);
+    }
+
+    private static boolean toBoolean(Environment.PlcObject object) {
+        return (Boolean) requireType(Boolean.class, object);
+    }
+
+    private static Environment.PlcObject fromLong(long value) {
+        return Environment.create(BigInteger.valueOf(value));
+    }
+
+    private static Environment.PlcObject fromDouble(double value) {
+        return Environment.create(BigDecimal.valueOf(value));
+    }
+
+    private static Environment.PlcObject fromObject(Object value) {
+        if (value instanceof Integer || value instanceof Long) {
+            return fromLong(((Number) value).longValue());
+        } else if (value instanceof Double) {
+            return fromDouble((Double) value);
+        }
+        return Environment.create(value);
+    }
+
+}
@@ -1,85 +1,186 @@
 package plc.project;
 
-import jdk.nashorn.internal.runtime.Undefined;
 
 import java.math.BigDecimal;
 import java.math.BigInteger;
 import java.math.MathContext;
 import java.math.RoundingMode;
 import java.util.ArrayList;
-import java.util.Iterator;
+import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.stream.Collectors;
 
 public class Interpreter implements Ast.Visitor<Environment.PlcObject> {
 
-    private Scope scope = new Scope(null);
+    private Scope scope;
+    private final RuntimeContext context;
+    private final SymbolTable symbols;
+    private final Profiler profiler;
+    private final MemoCache memo;
+    private final ResourceBudget budget;
+    private Ast.Method method;
+    private Environment.PlcObject returned;
+    private final Map<Environment.Function, Callee> methods = new IdentityHashMap<>();
+    private Callee tailCallee;
+    private List<Environment.PlcObject> tailArguments;
 
     public Interpreter(Scope parent) {
-        scope = new Scope(parent);
-        scope.defineFunction("print", 1, args -> {
-            System.out.println(args.get(0).getValue());
-            return Environment.NIL;
-        });
+        this(parent, RuntimeContext.shared());
+    }
 
-        scope.defineFunction("logarithm",1,arg_list -> {
-            if ( !(arg_list.get(0).getValue() instanceof  BigDecimal)){
-                throw new RuntimeException("Expected type BigDecimal"+
-                        arg_list.get(0).getValue().getClass().getName() + ".");
-            }
-            BigDecimal bd1 = (BigDecimal) arg_list.get(0).getValue();
-            BigDecimal bd2 = requireType(
-                    BigDecimal.class,
-                    Environment.create(arg_list.get(0).getValue())
-            );
-            BigDecimal result = BigDecimal.valueOf(Math.log(bd2.doubleValue()));
-            return Environment.create(result);
-        });
+    public Interpreter(Scope parent, RuntimeContext context) {
+        this(parent, context, null, null, null);
+    }
+
+    /**
+     * Creates an interpreter which caches the results of calls to pure
+     * methods, as classified by the analyzer, in the given cache.
+     */
+    public Interpreter(Scope parent, RuntimeContext context, MemoCache memo) {
+        this(parent, context, null, memo, null);
+    }
+
+    /**
+     * Creates an interpreter whose execution is limited by the given budget,
+     * and which uses the memo cache if it is not null.
+     */
+    public Interpreter(Scope parent, RuntimeContext context, MemoCache memo, ResourceBudget budget) {
+        this(parent, context, null, memo, budget);
+    }
+
+    Interpreter(Scope parent, RuntimeContext context, Profiler profiler) {
+        this(parent, context, profiler, null, null);
+    }
+
+    Interpreter(Scope parent, RuntimeContext context, Profiler profiler, MemoCache memo, ResourceBudget budget) {
+        this.context = context;
+        this.profiler = profiler;
+        this.memo = memo;
+        this.budget = budget;
+        scope = context.createScope(parent);
+        symbols = scope.getSymbols();
+        Builtins.define(scope);
     }
 
     public Scope getScope() {
         return scope;
     }
 
+    public RuntimeContext getContext() {
+        return context;
+    }
+
     @Override
     public Environment.PlcObject visit(Ast.Source ast) {
         ast.getFields().forEach(this::visit);
         ast.getMethods().forEach(this::visit);
         List <Environment.PlcObject> args = new ArrayList<>();
-        return scope.lookupFunction("main",0).invoke(new ArrayList<>());
+        if (budget == null)
+            return scope.lookupFunction("main",0).invoke(new ArrayList<>());
+        budget.start();
+        try {
+            return scope.lookupFunction("main",0).invoke(new ArrayList<>());
+        }
+        finally {
+            budget.stop();
+        }
     }
 
+    /**
+     * Defines a field, with its declared type resolved in the context.
+     */
     @Override
     public Environment.PlcObject visit(Ast.Field ast) {
+        Environment.Type type = context.getTypes().getType(ast.getTypeName());
         if (ast.getValue().isPresent())
-            scope.defineVariable( ast.getName(), visit( ast.getValue().get() ));
+            scope.defineVariable( ast.getName(), ast.getName(), type, visit( ast.getValue().get() ));
         else
-            scope.defineVariable( ast.getName(), Environment.NIL);
+            scope.defineVariable( ast.getName(), ast.getName(), type, Environment.NIL);
 
         return Environment.NIL;
     }
 
     @Override
     public Environment.PlcObject visit(Ast.Method ast) {
-        Scope parent = scope;
-        scope.defineFunction(ast.getName(), ast.getParameters().size(),args -> {
-            Scope child = scope;
+        Callee callee = new Callee(ast, scope, ast.getParameterSymbols(symbols));
+        Environment.Function function = scope.defineFunction(ast.getName(), ast.getName(),
+                Collections.nCopies(ast.getParameters().size(), Environment.Type.ANY), Environment.Type.ANY,
+                memo != null && ast.isPure() ? args -> memoize(callee, args) : args -> invoke(callee, args));
+        methods.put(function, callee);
+        return Environment.NIL;
+    }
+
+    /**
+     * Invokes a pure method through the memo cache. Only the result of the
+     * call itself is cached, not those of the tail calls it makes.
+     */
+    private Environment.PlcObject memoize(Callee callee, List<Environment.PlcObject> args) {
+        Object key = MemoCache.key(callee.ast, args);
+        if (key == null) {
+            return invoke(callee, args);
+        }
+        Environment.PlcObject result = memo.get(key);
+        if (result == null) {
+            result = invoke(callee, args);
+            memo.put(key, result);
+        }
+        return result;
+    }
 
-                scope = new Scope(parent);
+    /**
+     * Invokes an interpreted method. A tail call made by the method, see
+     * {@link #visit(Ast.Stmt.Return)}, is run by the same invocation in a
+     * loop, so tail recursion uses constant Java stack. The caller's state is
+     * restored even when the method fails, so an interpreter whose error was
+     * caught can be used again.
+     */
+    private Environment.PlcObject invoke(Callee callee, List<Environment.PlcObject> args) {
+        Scope child = scope;
+        Ast.Method caller = method;
+        Environment.PlcObject callerReturned = returned;
+        Callee callerTailCallee = tailCallee;
+        List<Environment.PlcObject> callerTailArguments = tailArguments;
+        try {
+            while (true) {
+                if (profiler != null) {
+                    Environment.Function compiled = profiler.enter(callee.ast);
+                    if (compiled != null) {
+                        try {
+                            return compiled.invoke(args);
+                        } catch (RuntimeException e) {
+                            // a pure method has no effects to undo, so the call
+                            // is repeated below for the interpreter's result
+                            if (!callee.ast.isPure())
+                                throw e;
+                        }
+                    }
+                }
+                method = callee.ast;
+                scope = new Scope(callee.parent);
                 for (int i = 0; i < args.size(); i++) {
-                    scope.defineVariable(ast.getParameters().get(i), args.get(i));
-                }try {
-                    ast.getStatements().forEach(this :: visit);
-                    return  Environment.NIL;
-                }catch (Return exception) {
-                    System.out.println(exception);
-                    return exception.value;
+                    scope.defineVariable(callee.parameters[i], args.get(i));
+                }
+                execute(callee.ast.getStatements());
+                Environment.PlcObject result = returned != null ? returned : Environment.NIL;
+                returned = null;
+                if (tailCallee == null) {
+                    return result;
                 }
-                finally {
-                scope = child;
+                callee = tailCallee;
+                args = tailArguments;
+                tailCallee = null;
+                tailArguments = null;
             }
-        });
-        return Environment.NIL;
+        }
+        finally {
+            scope = child;
+            method = caller;
+            returned = callerReturned;
+            tailCallee = callerTailCallee;
+            tailArguments = callerTailArguments;
+        }
     }
 
     @Override
@@ -91,9 +192,9 @@ public class Interpreter implements Ast.Visitor<Environment.PlcObject> {
     @Override
     public Environment.PlcObject visit(Ast.Stmt.Declaration ast) {
         if (ast.getValue().isPresent())
-            scope.defineVariable( ast.getName(), visit( ast.getValue().get() ));
+            scope.defineVariable( ast.getSymbol(symbols), visit( ast.getValue().get() ));
         else
-            scope.defineVariable( ast.getName(), Environment.NIL);
+            scope.defineVariable( ast.getSymbol(symbols), Environment.NIL);
 
         return Environment.NIL;
     }
@@ -106,75 +207,128 @@ public class Interpreter implements Ast.Visitor<Environment.PlcObject> {
             throw new RuntimeException("Assignment Target Error!");
 
         Ast.Expr.Access target = (Ast.Expr.Access)ast.getReceiver();
-        String name = target.getName();
         Environment.PlcObject value = visit(ast.getValue());
         if(target.getReceiver().isPresent()) {
             Environment.PlcObject receiver = visit(target.getReceiver().get());
-            receiver.setField(name, value);
+            target.getCache().set(receiver, symbols, target.getSymbol(symbols), value);
         }
         else
-            scope.lookupVariable(name).setValue(value);
+            scope.lookupVariable(target.getSymbol(symbols)).setValue(value);
 
         return Environment.NIL;
     }
 
     @Override
     public Environment.PlcObject visit(Ast.Stmt.If ast) {
-        if(requireType(Boolean.class, visit(ast.getCondition()))) {
+        List<Ast.Stmt> statements = requireType(Boolean.class, visit(ast.getCondition()))
+                ? ast.getThenStatements()
+                : ast.getElseStatements();
+        try {
             scope = new Scope(scope);
-            for(Ast.Stmt statement: ast.getThenStatements())
-                visit(statement);
+            execute(statements);
         }
-        else {
-            for(Ast.Stmt else_statement: ast.getElseStatements())
-                visit(else_statement);
+        finally {
+            scope = scope.getParent();
         }
         return Environment.NIL;
     }
 
     @Override
     public Environment.PlcObject visit(Ast.Stmt.For ast) {
-        Iterator iter = requireType(Iterable.class, visit(ast.getValue())).iterator();
-        for (Object ob : requireType(Iterable.class, visit(ast.getValue()))){
-            try {
-                scope = new Scope(scope);
-                scope.defineVariable(ast.getName(), (Environment.PlcObject) ob);
-                for(Ast.Stmt statement: ast.getStatements())
-                    visit(statement);
+        Environment.PlcObject value = visit(ast.getValue());
+        Scope body = new Scope(scope);
+        if (value.getValue() instanceof Range) {
+            Range range = (Range) value.getValue();
+            Index index = new Index(ast.getName());
+            body.defineVariable(ast.getSymbol(symbols), index);
+            for (long i = range.getStart(); range.includes(i); i = range.next(i)) {
+                index.set(i);
+                if (!iterate(ast, body, index))
+                    break;
             }
-            finally {
-                scope = scope.getParent();
+        } else {
+            Environment.Variable variable = body.defineVariable(ast.getSymbol(symbols), Environment.NIL);
+            for (Object ob : requireType(Iterable.class, value)) {
+                variable.setValue((Environment.PlcObject) ob);
+                if (!iterate(ast, body, variable))
+                    break;
             }
         }
         return Environment.NIL;
     }
 
+    /**
+     * Runs one iteration of a FOR loop in the reused body scope, clearing the
+     * declarations of the previous iteration and binding the loop variable
+     * again. Returns false once the body has returned.
+     */
+    private boolean iterate(Ast.Stmt.For ast, Scope body, Environment.Variable variable) {
+        if (profiler != null)
+            profiler.backEdge(method);
+        if (budget != null)
+            budget.consume();
+        if (body.getVariableCount() > 1) {
+            body.clear();
+            body.defineVariable(ast.getSymbol(symbols), variable);
+        }
+        try {
+            scope = body;
+            execute(ast.getStatements());
+        }
+        finally {
+            scope = body.getParent();
+        }
+        return returned == null;
+    }
+
     @Override
     public Environment.PlcObject visit(Ast.Stmt.While ast) {
+        Scope body = new Scope(scope);
         while (requireType(Boolean.class, visit( ast.getCondition()))){
+            if (profiler != null)
+                profiler.backEdge(method);
+            if (budget != null)
+                budget.consume();
+            body.clear();
             try {
-                scope = new Scope(scope);
-                for ( Ast.Stmt stmt : ast.getStatements() )
-                    visit(stmt);
+                scope = body;
+                execute(ast.getStatements());
             }finally {
-                scope = scope.getParent();
+                scope = body.getParent();
             }
+            if (returned != null)
+                break;
         }
         return Environment.NIL;
     }
 
     @Override
     public Environment.PlcObject visit(Ast.Stmt.Return ast) {
-
-        throw  new Return(visit(ast.getValue()));
+        if (method == null)
+            throw new RuntimeException("Return statement outside of a method.");
+        if (ast.isTailCall()) {
+            Ast.Expr.Function call = (Ast.Expr.Function) ast.getValue();
+            List<Environment.PlcObject> args = new ArrayList<>(call.getArguments().size());
+            for (Ast.Expr argument : call.getArguments())
+                args.add(visit(argument));
+            Environment.Function function = scope.lookupFunction(call.getSymbol(symbols), args.size());
+            Callee callee = methods.get(function);
+            if (callee != null) {
+                tailCallee = callee;
+                tailArguments = args;
+                returned = Environment.NIL;
+            } else {
+                returned = function.invoke(args);
+            }
+            return Environment.NIL;
+        }
+        returned = visit(ast.getValue());
+        return Environment.NIL;
     }
 
     @Override
     public Environment.PlcObject visit(Ast.Expr.Literal ast) {
-        if( Environment.create(ast.getLiteral()).getValue() == null)
-            return Environment.NIL;
-        else
-            return Environment.create(ast.getLiteral());
+        return ast.getObject();
     }
 
     @Override
@@ -184,160 +338,215 @@ public class Interpreter implements Ast.Visitor<Environment.PlcObject> {
 
     @Override
     public Environment.PlcObject visit(Ast.Expr.Binary ast) {
-
-        if(ast.getOperator().equals("AND"))
-            return Environment.create(requireType(Boolean.class,visit(ast.getLeft())) && requireType(Boolean.class,visit(ast.getRight())));
-        else if(ast.getOperator().equals("OR"))
-            return Environment.create(requireType(Boolean.class,visit(ast.getLeft())) || requireType(Boolean.class,visit(ast.getRight())));
-        else if(ast.getOperator().equals("<")){
-            if(requireType(Comparable.class,visit(ast.getLeft())).compareTo(requireType(Comparable.class,visit(ast.getRight()))) < 0)
-                return Environment.create(true);
-            else
-                return Environment.create(false);
+        Ast.Expr.Binary.Operator operator = ast.getKind();
+
+        if (operator == Ast.Expr.Binary.Operator.AND)
+            return Environment.create(requireType(Boolean.class, visit(ast.getLeft())) && requireType(Boolean.class, visit(ast.getRight())));
+        else if (operator == Ast.Expr.Binary.Operator.OR)
+            return Environment.create(requireType(Boolean.class, visit(ast.getLeft())) || requireType(Boolean.class, visit(ast.getRight())));
+
+        Environment.PlcObject left = visit(ast.getLeft());
+        Environment.PlcObject right = visit(ast.getRight());
+
+        switch (operator) {
+            case LESS: return Environment.create(compare(left, right) < 0);
+            case GREATER: return Environment.create(compare(left, right) > 0);
+            case GREATER_EQUAL: return Environment.create(compare(left, right) >= 0);
+            case LESS_EQUAL: return Environment.create(compare(left, right) <= 0);
+            case EQUAL: return Environment.create(compare(left, right) == 0);
+            case NOT_EQUAL: return Environment.create(compare(left, right) != 0);
+            case ADD: return Operators.add(left, right);
+            case SUBTRACT: return Operators.subtract(left, right);
+            case MULTIPLY: return Operators.multiply(left, right);
+            case DIVIDE: return Operators.divide(left, right);
+            default: throw new AssertionError(operator);
         }
-        else if(ast.getOperator().equals(">")){
-            if(requireType(Comparable.class,visit(ast.getLeft())).compareTo(requireType(Comparable.class,visit(ast.getRight()))) > 0)
-                return Environment.create(true);
-            else
-                return Environment.create(false);
-        } else if(ast.getOperator().equals(">=")){
-            if(requireType(Comparable.class,visit(ast.getLeft())).compareTo(requireType(Comparable.class,visit(ast.getRight()))) >= 0)
-                return Environment.create(true);
-            else
-                return Environment.create(false);
-        } else if (ast.getOperator().equals("<=")){
-            if(requireType(Comparable.class,visit(ast.getLeft())).compareTo(requireType(Comparable.class,visit(ast.getRight()))) <= 0)
-                return Environment.create(true);
-            else
-                return Environment.create(false);
-        }
-        else if(ast.getOperator().equals("==")){
-            if(requireType(Comparable.class,visit(ast.getLeft())).compareTo(requireType(Comparable.class,visit(ast.getRight()))) == 0)
-                return Environment.create(true);
-            else
-                return Environment.create(false);
-        }
-        else if(ast.getOperator().equals("!=")){
-            if(requireType(Comparable.class,visit(ast.getLeft())).compareTo(requireType(Comparable.class,visit(ast.getRight()))) != 0)
-                return Environment.create(true);
-            else
-                return Environment.create(false);
-        }
-        else if (ast.getOperator().equals("+")){
-            Environment.PlcObject left = visit(ast.getLeft());
-            Environment.PlcObject right = visit(ast.getRight());
-            if(left.getValue() instanceof String)
-                return Environment.create(requireType(String.class,visit(ast.getLeft())).concat(requireType(String.class,visit(ast.getRight()))));
-            else if(left.getValue() instanceof BigInteger){
-                if (right.getValue() instanceof BigInteger)
-                    return Environment.create(requireType(BigInteger.class,visit(ast.getLeft())).add(requireType(BigInteger.class,visit(ast.getRight()))));
-                else
-                    throw new RuntimeException();
-            } else{
-                if(right.getValue() instanceof BigDecimal)
-                    return Environment.create(requireType(BigDecimal.class,visit(ast.getLeft())).add(requireType(BigDecimal.class,visit(ast.getRight()))));
-                else
-                    throw new RuntimeException();
-            }
-
-        }
-        else if(ast.getOperator().equals("-")){
-            Environment.PlcObject left = visit(ast.getLeft());
-            Environment.PlcObject right = visit(ast.getRight());
-
-            if(left.getValue() instanceof BigInteger){
-                if (right.getValue() instanceof BigInteger)
-                    return Environment.create(requireType(BigInteger.class,visit(ast.getLeft())).add(requireType(BigInteger.class,visit(ast.getRight()))));
-                else
-                    throw new RuntimeException();
-            } else{
-                if(right.getValue() instanceof BigDecimal)
-                    return Environment.create(requireType(BigDecimal.class,visit(ast.getLeft())).add(requireType(BigDecimal.class,visit(ast.getRight()))));
-                else
-                    throw new RuntimeException();
-            }
-        }
-        else if(ast.getOperator().equals("*")){
-            Environment.PlcObject left = visit(ast.getLeft());
-            Environment.PlcObject right = visit(ast.getRight());
-
-            if(left.getValue() instanceof BigInteger){
-                return Environment.create(((BigInteger) left.getValue()).multiply(requireType(BigInteger.class, visit(ast.getRight()))));
-            } else if(left.getValue() instanceof BigDecimal){
-                return Environment.create(((BigDecimal) left.getValue()).multiply(requireType(BigDecimal.class, visit(ast.getRight()))));
-            } else
-                throw new RuntimeException();
-        }
-        else if(ast.getOperator().equals("/")){
-            Environment.PlcObject left = visit(ast.getLeft());
-            Environment.PlcObject right = visit(ast.getRight());
-
-            if(left.getValue() instanceof BigInteger){
-                if (right.getValue() instanceof BigInteger)
-                    return Environment.create(requireType(BigInteger.class,visit(ast.getLeft())).add(requireType(BigInteger.class,visit(ast.getRight()))));
-                else
-                    throw new RuntimeException();
-            } else{
-                if(right.getValue() instanceof BigDecimal){
-                    if(left.getValue().equals(0))
-                        throw new RuntimeException();
-                    else
-                        return Environment.create(requireType(BigDecimal.class,visit(ast.getLeft())).divide(requireType(BigDecimal.class,visit(ast.getRight())),1,RoundingMode.HALF_EVEN));
-                } else
-                    throw new RuntimeException();
-            }
-        } else
-            return Environment.NIL;
     }
 
     @Override
     public Environment.PlcObject visit(Ast.Expr.Access ast) {
         if(ast.getReceiver().isPresent())
-            return visit(ast.getReceiver().get()).getField(ast.getName()).getValue();
+            return ast.getCache().get(visit(ast.getReceiver().get()), symbols, ast.getSymbol(symbols));
         else
-            return scope.lookupVariable(ast.getName()).getValue();
+            return scope.lookupVariable(ast.getSymbol(symbols)).getValue();
     }
 
     @Override
     public Environment.PlcObject visit(Ast.Expr.Function ast) {
+        List<Ast.Expr> arguments = ast.getArguments();
+
+        if (ast.getReceiver().isPresent()) {
+            Ast.Expr receiver = ast.getReceiver().get();
+            InlineCache cache = ast.getCache();
+            switch (arguments.size()) {
+                case 0: {
+                    Environment.PlcObject object = visit(receiver);
+                    return cache.lookup(object.getType(), symbols, ast.getSymbol(symbols), 0).invoke(object);
+                }
+                case 1: {
+                    Environment.PlcObject first = visit(arguments.get(0));
+                    Environment.PlcObject object = visit(receiver);
+                    return cache.lookup(object.getType(), symbols, ast.getSymbol(symbols), 1).invoke(object, first);
+                }
+                case 2: {
+                    Environment.PlcObject first = visit(arguments.get(0));
+                    Environment.PlcObject second = visit(arguments.get(1));
+                    Environment.PlcObject object = visit(receiver);
+                    return cache.lookup(object.getType(), symbols, ast.getSymbol(symbols), 2).invoke(object, first, second);
+                }
+                case 3: {
+                    Environment.PlcObject first = visit(arguments.get(0));
+                    Environment.PlcObject second = visit(arguments.get(1));
+                    Environment.PlcObject third = visit(arguments.get(2));
+                    Environment.PlcObject object = visit(receiver);
+                    return cache.lookup(object.getType(), symbols, ast.getSymbol(symbols), 3).invoke(object, first, second, third);
+                }
+                default: {
+                    List<Environment.PlcObject> args = new ArrayList<>(arguments.size() + 1);
+                    args.add(null);
+                    for (Ast.Expr argument : arguments)
+                        args.add(visit(argument));
+                    Environment.PlcObject object = visit(receiver);
+                    args.set(0, object);
+                    return cache.lookup(object.getType(), symbols, ast.getSymbol(symbols), arguments.size()).invoke(args);
+                }
+            }
+        }
 
-        List<Environment.PlcObject> args = new ArrayList<>();
-
-        for(Ast.Expr argument : ast.getArguments())
-            args.add(visit(argument));
-
-        Environment.PlcObject product;
+        switch (arguments.size()) {
+            case 0:
+                return scope.lookupFunction(ast.getSymbol(symbols), 0).invoke();
+            case 1: {
+                Environment.PlcObject first = visit(arguments.get(0));
+                return scope.lookupFunction(ast.getSymbol(symbols), 1).invoke(first);
+            }
+            case 2: {
+                Environment.PlcObject first = visit(arguments.get(0));
+                Environment.PlcObject second = visit(arguments.get(1));
+                return scope.lookupFunction(ast.getSymbol(symbols), 2).invoke(first, second);
+            }
+            case 3: {
+                Environment.PlcObject first = visit(arguments.get(0));
+                Environment.PlcObject second = visit(arguments.get(1));
+                Environment.PlcObject third = visit(arguments.get(2));
+                return scope.lookupFunction(ast.getSymbol(symbols), 3).invoke(first, second, third);
+            }
+            case 4: {
+                Environment.PlcObject first = visit(arguments.get(0));
+                Environment.PlcObject second = visit(arguments.get(1));
+                Environment.PlcObject third = visit(arguments.get(2));
+                Environment.PlcObject fourth = visit(arguments.get(3));
+                return scope.lookupFunction(ast.getSymbol(symbols), 4).invoke(first, second, third, fourth);
+            }
+            default: {
+                List<Environment.PlcObject> args = new ArrayList<>(arguments.size());
+                for (Ast.Expr argument : arguments)
+                    args.add(visit(argument));
+                return scope.lookupFunction(ast.getSymbol(symbols), arguments.size()).invoke(args);
+            }
+        }
+    }
 
-        if(ast.getReceiver().isPresent())
-            product = visit(ast.getReceiver().get()).callMethod(ast.getName(), args);
-        else
-            product = scope.lookupFunction(ast.getName(), ast.getArguments().size()).invoke(args);
+    /**
+     * Helper function to execute statements in order until one of them
+     * returns, which is signalled through the returned value rather than an
+     * exception.
+     */
+    private void execute(List<Ast.Stmt> statements) {
+        for (Ast.Stmt statement : statements) {
+            if (budget != null)
+                budget.consume();
+            visit(statement);
+            if (returned != null)
+                return;
+        }
+    }
 
-        return product;
+    /**
+     * Helper function to compare two objects of the same comparable type.
+     */
+    private static int compare(Environment.PlcObject left, Environment.PlcObject right) {
+        return Operators.compare(left, right);
     }
 
     /**
      * Helper function to ensure an object is of the appropriate type.
      */
     private static <T> T requireType(Class<T> type, Environment.PlcObject object) {
-        if (type.isInstance(object.getValue())) {
-            return type.cast(object.getValue());
-        } else {
-            throw new RuntimeException("Expected type " + type.getName() + ", received " + object.getValue().getClass().getName() + ".");
+        return Operators.requireType(type, object);
+    }
+
+    /**
+     * A method defined by this interpreter, with the scope it was defined in
+     * and the symbols of its parameters in the interpreter's table.
+     */
+    private static final class Callee {
+
+        private final Ast.Method ast;
+        private final Scope parent;
+        private final int[] parameters;
+
+        private Callee(Ast.Method ast, Scope parent, int[] parameters) {
+            this.ast = ast;
+            this.parent = parent;
+            this.parameters = parameters;
         }
+
     }
 
     /**
-     * Exception class for returning values.
+     * The variable of a FOR loop over a range, which holds the index as a
+     * long and creates its Integer only when it is read, so that an
+     * iteration whose body does not read the index allocates nothing.
      */
-    public class Return extends RuntimeException {
+    private static final class Index extends Environment.Variable {
 
-        private final Environment.PlcObject value;
+        private long index;
+        private Environment.PlcObject value;
+
+        private Index(String name) {
+            super(name, Environment.NIL);
+        }
 
-        private Return(Environment.PlcObject value) {
+        private void set(long index) {
+            this.index = index;
+            value = null;
+        }
+
+        @Override
+        public Environment.PlcObject getValue() {
+            if (value == null)
+                value = Environment.createInteger(index);
+            return value;
+        }
+
+        @Override
+        public void setValue(Environment.PlcObject value) {
             this.value = value;
         }
 
     }
 
+    /**
+     * Receives the invocation and loop iteration counts of methods, and may
+     * supply compiled replacements for them. A compiled method must be free
+     * of side effects, so that a call it fails can be repeated by the
+     * interpreter.
+     */
+    interface Profiler {
+
+        /**
+         * Records an invocation of the method, returning its compiled
+         * replacement or null to interpret it.
+         */
+        Environment.Function enter(Ast.Method method);
+
+        /**
+         * Records a loop iteration in the given method, which is null outside
+         * of methods.
+         */
+        void backEdge(Ast.Method method);
+
+    }
+
 }
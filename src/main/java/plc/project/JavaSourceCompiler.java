@@ -0,0 +1,92 @@
+package plc.project;
+
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.FileObject;
+import javax.tools.ForwardingJavaFileManager;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileManager;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URI;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Compiles Java source to classes entirely in memory, through the system
+ * {@link JavaCompiler}. Each compilation defines its classes in a class
+ * loader of its own, so they can be unloaded once unused. The compiler is
+ * only available when running on a JDK.
+ */
+final class JavaSourceCompiler {
+
+    private final JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+
+    boolean isAvailable() {
+        return compiler != null;
+    }
+
+    Class<?> compile(String className, String source) {
+        if (compiler == null) {
+            throw new IllegalStateException("No Java compiler is available.");
+        }
+        DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+        Map<String, ByteArrayOutputStream> classes = new HashMap<>();
+        StandardJavaFileManager standard = compiler.getStandardFileManager(diagnostics, null, null);
+        try (JavaFileManager manager = new ForwardingJavaFileManager<JavaFileManager>(standard) {
+            @Override
+            public JavaFileObject getJavaFileForOutput(Location location, String name, JavaFileObject.Kind kind, FileObject sibling) {
+                return new SimpleJavaFileObject(URI.create("memory:///" + name.replace('.', '/') + kind.extension), kind) {
+                    @Override
+                    public OutputStream openOutputStream() {
+                        ByteArrayOutputStream output = new ByteArrayOutputStream();
+                        classes.put(name, output);
+                        return output;
+                    }
+                };
+            }
+        }) {
+            JavaFileObject file = new SimpleJavaFileObject(URI.create("memory:///" + className + ".java"), JavaFileObject.Kind.SOURCE) {
+                @Override
+                public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+                    return source;
+                }
+            };
+            boolean success = compiler.getTask(null, manager, diagnostics, Arrays.asList("-nowarn", "-proc:none"),
+                    null, Collections.singletonList(file)).call();
+            if (!success) {
+                StringBuilder message = new StringBuilder("Compilation of " + className + " failed:");
+                for (Diagnostic<? extends JavaFileObject> diagnostic : diagnostics.getDiagnostics()) {
+                    message.append(System.lineSeparator()).append(diagnostic.getMessage(null));
+                }
+                throw new RuntimeException(message.toString());
+            }
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        ClassLoader loader = new ClassLoader(JavaSourceCompiler.class.getClassLoader()) {
+            @Override
+            protected Class<?> findClass(String name) throws ClassNotFoundException {
+                ByteArrayOutputStream output = classes.get(name);
+                if (output == null) {
+                    throw new ClassNotFoundException(name);
+                }
+                byte[] bytes = output.toByteArray();
+                return defineClass(name, bytes, 0, bytes.length);
+            }
+        };
+        try {
+            return loader.loadClass(className);
+        } catch (ClassNotFoundException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+}
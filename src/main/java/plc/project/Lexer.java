@@ -22,7 +22,15 @@ public final class Lexer {
     private final CharStream chars;
 
     public Lexer(String input) {
-        chars = new CharStream(input);
+        this(input, SymbolTable.shared());
+    }
+
+    /**
+     * Creates a lexer interning identifiers in the given table, which should
+     * be the one of the scope the source is run in.
+     */
+    public Lexer(String input, SymbolTable symbols) {
+        chars = new CharStream(input, symbols);
     }
 
     /**
@@ -179,11 +187,17 @@ public final class Lexer {
     public static final class CharStream {
 
         private final String input;
+        private final SymbolTable symbols;
         private int index = 0;
         private int length = 0;
 
         public CharStream(String input) {
+            this(input, SymbolTable.shared());
+        }
+
+        public CharStream(String input, SymbolTable symbols) {
             this.input = input;
+            this.symbols = symbols;
         }
 
         public boolean has(int offset) {
@@ -206,7 +220,12 @@ public final class Lexer {
         public Token emit(Token.Type type) {
             int start = index - length;
             skip();
-            return new Token(type, input.substring(start, index), start);
+            String literal = input.substring(start, index);
+            if (type == Token.Type.IDENTIFIER) {
+                SymbolTable.Symbol symbol = symbols.symbol(literal);
+                return new Token(type, symbol.getName(), start, symbol);
+            }
+            return new Token(type, literal, start);
         }
 
     }
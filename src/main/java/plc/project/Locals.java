@@ -0,0 +1,75 @@
+package plc.project;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The compile time mapping of local variables to frame slots, shared by the
+ * compiling execution engines. Each block maps its own declarations; slots
+ * are reused once a block ends. In a top level compilation, declarations
+ * outside of any block are globals.
+ */
+final class Locals {
+
+    private final boolean topLevel;
+    private final SymbolTable symbols;
+    private final Deque<Map<Integer, Integer>> blocks = new ArrayDeque<>();
+    private final Deque<Integer> starts = new ArrayDeque<>();
+    private int next = 0;
+    private int size = 0;
+
+    Locals(boolean topLevel, SymbolTable symbols) {
+        this.topLevel = topLevel;
+        this.symbols = symbols;
+        blocks.push(new HashMap<>());
+    }
+
+    /**
+     * Returns the number of slots a frame needs.
+     */
+    int getSize() {
+        return size;
+    }
+
+    boolean isGlobal() {
+        return topLevel && blocks.size() == 1;
+    }
+
+    void push() {
+        blocks.push(new HashMap<>());
+        starts.push(next);
+    }
+
+    void pop() {
+        blocks.pop();
+        next = starts.pop();
+    }
+
+    int declare(int symbol) {
+        if (blocks.peek().containsKey(symbol)) {
+            throw new RuntimeException("The variable " + symbols.name(symbol) + " is already defined in this scope.");
+        }
+        blocks.peek().put(symbol, next);
+        size = Math.max(size, next + 1);
+        return next++;
+    }
+
+    /**
+     * Returns the slot of the given variable, or -1 if it is not a local.
+     */
+    int lookup(int symbol) {
+        if (isGlobal()) {
+            return -1;
+        }
+        for (Map<Integer, Integer> block : blocks) {
+            Integer slot = block.get(symbol);
+            if (slot != null) {
+                return slot;
+            }
+        }
+        return -1;
+    }
+
+}
@@ -0,0 +1,134 @@
+package plc.project;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A bounded cache of the results of pure method calls, keyed on the method
+ * and the values of its arguments, which an {@link Interpreter} consults when
+ * given one. The least recently used result is evicted once the capacity is
+ * reached. Only calls whose arguments are all immutable values (Integers,
+ * Decimals, Booleans, Characters, Strings and Nil) are cached.
+ */
+public final class MemoCache {
+
+    public static final int DEFAULT_CAPACITY = 10_000;
+
+    private final int capacity;
+    private final Map<Key, Environment.PlcObject> results;
+    private long hits = 0;
+    private long misses = 0;
+
+    public MemoCache() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public MemoCache(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("The capacity must be positive.");
+        }
+        this.capacity = capacity;
+        this.results = new LinkedHashMap<Key, Environment.PlcObject>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, Environment.PlcObject> eldest) {
+                return size() > MemoCache.this.capacity;
+            }
+        };
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public synchronized int size() {
+        return results.size();
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    public synchronized void clear() {
+        results.clear();
+        hits = 0;
+        misses = 0;
+    }
+
+    /**
+     * Returns the key of a call, or null if its arguments cannot be cached.
+     */
+    static Object key(Ast.Method method, List<Environment.PlcObject> args) {
+        Object[] values = new Object[args.size()];
+        for (int i = 0; i < values.length; i++) {
+            Object value = args.get(i).getValue();
+            if (!(value instanceof BigInteger || value instanceof BigDecimal || value instanceof Boolean
+                    || value instanceof Character || value instanceof String || args.get(i) == Environment.NIL)) {
+                return null;
+            }
+            values[i] = value;
+        }
+        return new Key(method, values);
+    }
+
+    /**
+     * Returns the cached result of the call, or null if there is none.
+     */
+    synchronized Environment.PlcObject get(Object key) {
+        Environment.PlcObject result = results.get(key);
+        if (result != null) {
+            hits++;
+        } else {
+            misses++;
+        }
+        return result;
+    }
+
+    synchronized void put(Object key, Environment.PlcObject result) {
+        results.put((Key) key, result);
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "MemoCache{" +
+                "capacity=" + capacity +
+                ", size=" + results.size() +
+                ", hits=" + hits +
+                ", misses=" + misses +
+                '}';
+    }
+
+    private static final class Key {
+
+        private final Ast.Method method;
+        private final Object[] values;
+        private final int hash;
+
+        private Key(Ast.Method method, Object[] values) {
+            this.method = method;
+            this.values = values;
+            this.hash = 31 * System.identityHashCode(method) + Arrays.hashCode(values);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            return obj instanceof Key &&
+                    method == ((Key) obj).method &&
+                    Arrays.equals(values, ((Key) obj).values);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+    }
+
+}
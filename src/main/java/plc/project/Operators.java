@@ -0,0 +1,119 @@
+package plc.project;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.RoundingMode;
+
+/**
+ * The semantics of the binary operators on runtime values, shared by the
+ * execution engines so that they agree on every result and error. Integers
+ * which fit in a long are computed as longs, falling back to BigInteger
+ * only when the result overflows.
+ */
+final class Operators {
+
+    private Operators() {}
+
+    static Environment.PlcObject add(Environment.PlcObject left, Environment.PlcObject right) {
+        if (left.isLong() && right.isLong())
+            return add(left.getLong(), right.getLong());
+        if (left.getValue() instanceof String)
+            return Environment.create(((String) left.getValue()).concat(requireType(String.class, right)));
+        else if (left.getValue() instanceof BigInteger)
+            return Environment.create(((BigInteger) left.getValue()).add(requireType(BigInteger.class, right)));
+        else
+            return Environment.create(requireType(BigDecimal.class, left).add(requireType(BigDecimal.class, right)));
+    }
+
+    static Environment.PlcObject subtract(Environment.PlcObject left, Environment.PlcObject right) {
+        if (left.isLong() && right.isLong())
+            return subtract(left.getLong(), right.getLong());
+        if (left.getValue() instanceof BigInteger)
+            return Environment.create(((BigInteger) left.getValue()).subtract(requireType(BigInteger.class, right)));
+        else
+            return Environment.create(requireType(BigDecimal.class, left).subtract(requireType(BigDecimal.class, right)));
+    }
+
+    static Environment.PlcObject multiply(Environment.PlcObject left, Environment.PlcObject right) {
+        if (left.isLong() && right.isLong())
+            return multiply(left.getLong(), right.getLong());
+        if (left.getValue() instanceof BigInteger)
+            return Environment.create(((BigInteger) left.getValue()).multiply(requireType(BigInteger.class, right)));
+        else
+            return Environment.create(requireType(BigDecimal.class, left).multiply(requireType(BigDecimal.class, right)));
+    }
+
+    static Environment.PlcObject divide(Environment.PlcObject left, Environment.PlcObject right) {
+        if (left.isLong() && right.isLong())
+            return divide(left.getLong(), right.getLong());
+        if (left.getValue() instanceof BigInteger)
+            return divide((BigInteger) left.getValue(), requireType(BigInteger.class, right));
+        else
+            return divide(requireType(BigDecimal.class, left), requireType(BigDecimal.class, right));
+    }
+
+    static Environment.PlcObject add(long x, long y) {
+        long result = x + y;
+        if (((x ^ result) & (y ^ result)) < 0)
+            return Environment.create(BigInteger.valueOf(x).add(BigInteger.valueOf(y)));
+        return Environment.createInteger(result);
+    }
+
+    static Environment.PlcObject subtract(long x, long y) {
+        long result = x - y;
+        if (((x ^ y) & (x ^ result)) < 0)
+            return Environment.create(BigInteger.valueOf(x).subtract(BigInteger.valueOf(y)));
+        return Environment.createInteger(result);
+    }
+
+    static Environment.PlcObject multiply(long x, long y) {
+        long high = Math.multiplyHigh(x, y);
+        long low = x * y;
+        if ((high != 0 || low < 0) && (high != -1 || low >= 0))
+            return Environment.create(BigInteger.valueOf(x).multiply(BigInteger.valueOf(y)));
+        return Environment.createInteger(low);
+    }
+
+    static Environment.PlcObject divide(long x, long y) {
+        if (y == 0)
+            throw new RuntimeException("Division by zero.");
+        else if (x == Long.MIN_VALUE && y == -1)
+            return Environment.create(BigInteger.valueOf(x).negate());
+        return Environment.createInteger(x / y);
+    }
+
+    static Environment.PlcObject divide(BigInteger left, BigInteger right) {
+        if (right.signum() == 0)
+            throw new RuntimeException("Division by zero.");
+        return Environment.create(left.divide(right));
+    }
+
+    static Environment.PlcObject divide(BigDecimal left, BigDecimal right) {
+        if (right.signum() == 0)
+            throw new RuntimeException("Division by zero.");
+        return Environment.create(left.divide(right, 1, RoundingMode.HALF_EVEN));
+    }
+
+    /**
+     * Compares two objects of the same comparable type.
+     */
+    @SuppressWarnings("unchecked")
+    static int compare(Environment.PlcObject left, Environment.PlcObject right) {
+        if (left.isLong() && right.isLong())
+            return Long.compare(left.getLong(), right.getLong());
+        Comparable<Object> comparable = requireType(Comparable.class, left);
+        return comparable.compareTo(requireType(left.getValue().getClass(), right));
+    }
+
+    /**
+     * Ensures an object is of the appropriate type.
+     */
+    static <T> T requireType(Class<T> type, Environment.PlcObject object) {
+        if (type.isInstance(object.getValue())) {
+            return type.cast(object.getValue());
+        } else {
+            throw new RuntimeException("Expected type " + type.getName() + ", received " + object.getValue().getClass().getName() + ".");
+        }
+    }
+
+}
@@ -69,12 +69,14 @@ public final class Parser {
         List<String> indents = new ArrayList<>();
         List<Ast.Stmt> stmts = new ArrayList<>();
         List<String> typeNames = new ArrayList<>();
+        List<SymbolTable.Symbol> symbols = new ArrayList<>();
            String indent1 = tokens.get(0).getLiteral();
            tokens.advance();
            if(!match("("))
                throw new ParseException("Error", tokens.index);
            while (!match(")")){
                indents.add(tokens.get(-1).getLiteral());
+               symbols.add(tokens.get(-1).getSymbol());
                tokens.advance();
                typeNames.add(tokens.get(0).getLiteral());
            }
@@ -87,7 +89,7 @@ public final class Parser {
                stmts.add(parseStatement());
            }
 
-           return new Ast.Method(indent1,indents,typeNames,Optional.of(ReturnType),stmts);
+           return new Ast.Method(indent1,indents,typeNames,Optional.of(ReturnType),stmts,symbols);
     }
 
     /**
@@ -127,15 +129,16 @@ public final class Parser {
     public Ast.Stmt.Declaration parseDeclarationStatement() throws ParseException {
         Ast.Expr expr = null;
             String ident = tokens.get(0).getLiteral();
+            SymbolTable.Symbol symbol = tokens.get(0).getSymbol();
             tokens.advance();
             if (match(":")){
                 String type = tokens.get(0).getLiteral();
-                return new Ast.Stmt.Declaration(ident,Optional.of(type),Optional.empty());
+                return new Ast.Stmt.Declaration(ident,Optional.of(type),Optional.empty(),symbol);
             }else if(!match("="))
-               return new Ast.Stmt.Declaration(ident,Optional.empty());
+               return new Ast.Stmt.Declaration(ident,Optional.empty(),Optional.empty(),symbol);
             else {
                 expr = parseExpression();
-                return new Ast.Stmt.Declaration(ident,Optional.of(expr));
+                return new Ast.Stmt.Declaration(ident,Optional.empty(),Optional.of(expr),symbol);
             }
     }
 
@@ -171,6 +174,7 @@ public final class Parser {
         List<Ast.Stmt> stmts = new ArrayList<>();
 
             String ident = tokens.get(0).getLiteral();
+            SymbolTable.Symbol symbol = tokens.get(0).getSymbol();
             tokens.advance();
             tokens.advance();
             //if(!match("IN"))
@@ -182,7 +186,7 @@ public final class Parser {
             while (!match(";")){
                 stmts.add(parseStatement());
             }
-            return new Ast.Stmt.For(ident,expr,stmts);
+            return new Ast.Stmt.For(ident,expr,stmts,symbol);
     }
 
     /**
@@ -298,9 +302,10 @@ public final class Parser {
 
         while (match(".")){
             String name = tokens.get(0).getLiteral();
+            SymbolTable.Symbol symbol = tokens.get(0).getSymbol();
             tokens.advance();
             if(!match("("))
-                return new Ast.Expr.Access(Optional.of(primExpr),name);
+                return new Ast.Expr.Access(Optional.of(primExpr),name,symbol);
             else {
                 while (!match(")")){
                     exprs.add(parseExpression());
@@ -311,7 +316,7 @@ public final class Parser {
                             throw new ParseException("Trailing comma error", tokens.index);
                     }
                 }
-                return new Ast.Expr.Function(Optional.of(primExpr),name,exprs);
+                return new Ast.Expr.Function(Optional.of(primExpr),name,exprs,symbol);
             }
         }
         return primExpr;
@@ -362,6 +367,7 @@ public final class Parser {
             //If it does we create a Expr.Function because for example getNum() is a function getNum is Identifier
         } else if(match(Token.Type.IDENTIFIER)){
             String name = tokens.get(-1).getLiteral();
+            SymbolTable.Symbol symbol = tokens.get(-1).getSymbol();
             if (match("(")){
                 List<Ast.Expr> args = new ArrayList<>();
                 while (!match(")")){
@@ -373,9 +379,9 @@ public final class Parser {
                             throw new ParseException("Trailing comma error", tokens.index);
                     }
                 }
-                return new Ast.Expr.Function(Optional.empty(),name,args);
+                return new Ast.Expr.Function(Optional.empty(),name,args,symbol);
             }else
-                return new Ast.Expr.Access(Optional.empty(),name);
+                return new Ast.Expr.Access(Optional.empty(),name,symbol);
         }else if(match("(")) {
             Ast.Expr expr = parseExpression();
 
@@ -0,0 +1,149 @@
+package plc.project;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Classifies the methods of a source as pure or not. A pure method reads and
+ * assigns only its parameters and locals, and calls only pure methods of the
+ * source and pure builtins, so it neither observes nor causes side effects.
+ * Fields are excluded even when only read, since their values may change
+ * between calls. Mutually recursive methods are pure unless one of them is
+ * found not to be.
+ */
+final class Purity {
+
+    private static final Set<String> BUILTINS = new HashSet<>(Arrays.asList("range/2", "range/3"));
+
+    private final Map<String, Ast.Method> methods;
+    private final Deque<Set<String>> locals = new ArrayDeque<>();
+
+    private Purity(Map<String, Ast.Method> methods) {
+        this.methods = methods;
+    }
+
+    /**
+     * Sets whether each of the methods is pure, starting from all of them
+     * being pure and marking methods impure until none changes.
+     */
+    static void classify(List<Ast.Method> methods) {
+        Map<String, Ast.Method> signatures = new HashMap<>();
+        for (Ast.Method method : methods) {
+            signatures.put(method.getName() + "/" + method.getParameters().size(), method);
+            method.setPure(true);
+        }
+        Purity purity = new Purity(signatures);
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (Ast.Method method : methods) {
+                if (method.isPure() && !purity.check(method)) {
+                    method.setPure(false);
+                    changed = true;
+                }
+            }
+        }
+    }
+
+    private boolean check(Ast.Method method) {
+        locals.clear();
+        locals.push(new HashSet<>(method.getParameters()));
+        return checkBlock(method.getStatements());
+    }
+
+    private boolean checkBlock(List<Ast.Stmt> statements) {
+        locals.push(new HashSet<>());
+        try {
+            for (Ast.Stmt statement : statements) {
+                if (!check(statement)) {
+                    return false;
+                }
+            }
+            return true;
+        } finally {
+            locals.pop();
+        }
+    }
+
+    private boolean check(Ast.Stmt ast) {
+        if (ast instanceof Ast.Stmt.Expression) {
+            return check(((Ast.Stmt.Expression) ast).getExpression());
+        } else if (ast instanceof Ast.Stmt.Declaration) {
+            Ast.Stmt.Declaration declaration = (Ast.Stmt.Declaration) ast;
+            boolean pure = !declaration.getValue().isPresent() || check(declaration.getValue().get());
+            locals.peek().add(declaration.getName());
+            return pure;
+        } else if (ast instanceof Ast.Stmt.Assignment) {
+            Ast.Stmt.Assignment assignment = (Ast.Stmt.Assignment) ast;
+            return check(assignment.getReceiver()) && check(assignment.getValue());
+        } else if (ast instanceof Ast.Stmt.If) {
+            Ast.Stmt.If statement = (Ast.Stmt.If) ast;
+            return check(statement.getCondition())
+                    && checkBlock(statement.getThenStatements())
+                    && checkBlock(statement.getElseStatements());
+        } else if (ast instanceof Ast.Stmt.For) {
+            Ast.Stmt.For statement = (Ast.Stmt.For) ast;
+            if (!check(statement.getValue())) {
+                return false;
+            }
+            locals.push(new HashSet<>(Arrays.asList(statement.getName())));
+            try {
+                return checkBlock(statement.getStatements());
+            } finally {
+                locals.pop();
+            }
+        } else if (ast instanceof Ast.Stmt.While) {
+            Ast.Stmt.While statement = (Ast.Stmt.While) ast;
+            return check(statement.getCondition()) && checkBlock(statement.getStatements());
+        } else if (ast instanceof Ast.Stmt.Return) {
+            return check(((Ast.Stmt.Return) ast).getValue());
+        } else {
+            return false;
+        }
+    }
+
+    private boolean check(Ast.Expr ast) {
+        if (ast instanceof Ast.Expr.Literal) {
+            return true;
+        } else if (ast instanceof Ast.Expr.Group) {
+            return check(((Ast.Expr.Group) ast).getExpression());
+        } else if (ast instanceof Ast.Expr.Binary) {
+            Ast.Expr.Binary binary = (Ast.Expr.Binary) ast;
+            return check(binary.getLeft()) && check(binary.getRight());
+        } else if (ast instanceof Ast.Expr.Access) {
+            Ast.Expr.Access access = (Ast.Expr.Access) ast;
+            return !access.getReceiver().isPresent() && isLocal(access.getName());
+        } else if (ast instanceof Ast.Expr.Function) {
+            Ast.Expr.Function function = (Ast.Expr.Function) ast;
+            if (function.getReceiver().isPresent()) {
+                return false;
+            }
+            for (Ast.Expr argument : function.getArguments()) {
+                if (!check(argument)) {
+                    return false;
+                }
+            }
+            String signature = function.getName() + "/" + function.getArguments().size();
+            Ast.Method callee = methods.get(signature);
+            return callee != null ? callee.isPure() : BUILTINS.contains(signature);
+        } else {
+            return false;
+        }
+    }
+
+    private boolean isLocal(String name) {
+        for (Set<String> block : locals) {
+            if (block.contains(name)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+}
@@ -0,0 +1,89 @@
+package plc.project;
+
+import java.math.BigInteger;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * The Integers from a start up to, but excluding, an end, by a step, as
+ * returned by the built-in {@code range} function. Elements are created only
+ * while iterating, and the interpreter and the closure compiler run a FOR
+ * over a range as a counted loop without iterating at all.
+ */
+final class Range implements Iterable<Environment.PlcObject> {
+
+    private final long start;
+    private final long end;
+    private final long step;
+
+    Range(long start, long end, long step) {
+        if (step == 0) {
+            throw new RuntimeException("The step of a range cannot be zero.");
+        }
+        this.start = start;
+        this.end = end;
+        this.step = step;
+    }
+
+    static Range of(Environment.PlcObject start, Environment.PlcObject end, Environment.PlcObject step) {
+        return new Range(toLong(start), toLong(end), toLong(step));
+    }
+
+    private static long toLong(Environment.PlcObject object) {
+        BigInteger value = Operators.requireType(BigInteger.class, object);
+        if (value.bitLength() >= 64) {
+            throw new RuntimeException("The bounds of a range must fit in 64 bits.");
+        }
+        return value.longValue();
+    }
+
+    long getStart() {
+        return start;
+    }
+
+    /**
+     * Returns whether a value reached from the start is still in the range.
+     */
+    boolean includes(long value) {
+        return step > 0 ? value < end : value > end;
+    }
+
+    /**
+     * Returns the value after the given one, or the end if stepping would
+     * overflow, since that is past the end anyway.
+     */
+    long next(long value) {
+        long next = value + step;
+        return ((value ^ next) & (step ^ next)) < 0 ? end : next;
+    }
+
+    @Override
+    public Iterator<Environment.PlcObject> iterator() {
+        return new Iterator<Environment.PlcObject>() {
+
+            private long current = start;
+
+            @Override
+            public boolean hasNext() {
+                return includes(current);
+            }
+
+            @Override
+            public Environment.PlcObject next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                long value = current;
+                current = Range.this.next(current);
+                return Environment.createInteger(value);
+            }
+
+        };
+    }
+
+    @Override
+    public String toString() {
+        return "range(" + start + ", " + end + ", " + step + ")";
+    }
+
+}
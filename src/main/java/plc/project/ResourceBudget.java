@@ -0,0 +1,176 @@
+package plc.project;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.time.Duration;
+
+/**
+ * Limits the resources one execution of an {@link Interpreter} or a
+ * {@link CompiledProgram} may use. Each statement the interpreter executes,
+ * and each loop iteration and call, consumes a unit of fuel, and every
+ * {@value #CHECK_INTERVAL} units the CPU time of the executing thread and the
+ * elapsed wall-clock time are checked against their limits, as is whether
+ * the execution was interrupted. Exceeding a limit fails the execution with
+ * a runtime error. The usage is readable once the execution has finished.
+ *
+ * A budget covers a single execution, and is not reused. The execution may be
+ * started on one thread and run on another, but not on several at once; CPU
+ * time is measured on the thread charging the budget, from the first time it
+ * does so. On a thread whose CPU time the JVM cannot read, such as a virtual
+ * thread, the elapsed time while the execution runs on it is charged as its
+ * CPU time instead, which never undercounts, so the limit is still enforced.
+ */
+public final class ResourceBudget {
+
+    public static final long UNLIMITED = Long.MAX_VALUE;
+
+    static final int CHECK_INTERVAL = 1024;
+
+    private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+
+    private final long fuel;
+    private final long cpuTime;
+    private final long wallTime;
+    private volatile boolean interrupted = false;
+    private boolean started = false;
+    private Thread cpuThread = null;
+    private boolean cpuClock = true;
+    private long cpuStart;
+    private long wallStart;
+    private long fuelUsed = 0;
+    private long cpuUsed = 0;
+    private long wallUsed = 0;
+
+    public ResourceBudget(long fuel) {
+        this(fuel, null, null);
+    }
+
+    /**
+     * Creates a budget with the given fuel and time limits, where a null
+     * time is unlimited.
+     */
+    public ResourceBudget(long fuel, Duration cpuTime, Duration wallTime) {
+        if (fuel < 1) {
+            throw new IllegalArgumentException("The fuel must be positive.");
+        }
+        this.fuel = fuel;
+        this.cpuTime = cpuTime == null ? UNLIMITED : cpuTime.toNanos();
+        this.wallTime = wallTime == null ? UNLIMITED : wallTime.toNanos();
+    }
+
+    /**
+     * Requests that the execution stop at its next check, from any thread.
+     */
+    public void interrupt() {
+        interrupted = true;
+    }
+
+    public long getFuelUsed() {
+        return fuelUsed;
+    }
+
+    public Duration getCpuTime() {
+        return Duration.ofNanos(cpuUsed);
+    }
+
+    public Duration getWallTime() {
+        return Duration.ofNanos(wallUsed);
+    }
+
+    /**
+     * Starts measuring time, unless already started, and the CPU time of the
+     * calling thread.
+     */
+    void start() {
+        if (!started) {
+            started = true;
+            wallStart = System.nanoTime();
+        }
+        chargeCpu();
+    }
+
+    /**
+     * Records the time used so far, and ends the calling thread's measure of
+     * CPU time, so that time spent outside the execution is not charged when
+     * it falls back to elapsed time.
+     */
+    void stop() {
+        if (started) {
+            chargeCpu();
+            cpuThread = null;
+            wallUsed = System.nanoTime() - wallStart;
+        }
+    }
+
+    /**
+     * Returns whether the CPU time was last measured by the CPU clock of the
+     * thread running the execution, rather than by its elapsed time.
+     */
+    public boolean isCpuTimeMeasured() {
+        return cpuClock;
+    }
+
+    /**
+     * Records the CPU time used so far by the calling thread. The first time
+     * a thread does so, its clock, which is its CPU time unless that reads
+     * as unsupported, becomes the baseline, with the time recorded on earlier
+     * threads carried over, so a budget started on one thread and run on
+     * another measures the thread running it.
+     */
+    private void chargeCpu() {
+        Thread current = Thread.currentThread();
+        if (current != cpuThread) {
+            cpuThread = current;
+            cpuClock = cpuTime() >= 0;
+            cpuStart = clock() - cpuUsed;
+        }
+        cpuUsed = clock() - cpuStart;
+    }
+
+    private long clock() {
+        return cpuClock ? cpuTime() : System.nanoTime();
+    }
+
+    /**
+     * Consumes a unit of fuel, checking the other limits periodically.
+     */
+    void consume() {
+        if (fuelUsed == fuel) {
+            throw new RuntimeException("The fuel limit of " + fuel + " was exceeded.");
+        }
+        if (++fuelUsed % CHECK_INTERVAL == 0) {
+            check();
+        }
+    }
+
+    private void check() {
+        if (interrupted || Thread.currentThread().isInterrupted()) {
+            throw new RuntimeException("The execution was interrupted.");
+        }
+        start();
+        wallUsed = System.nanoTime() - wallStart;
+        if (cpuUsed > cpuTime) {
+            throw new RuntimeException("The CPU time limit of " + Duration.ofNanos(cpuTime).toMillis() + "ms was exceeded.");
+        } else if (wallUsed > wallTime) {
+            throw new RuntimeException("The wall-clock time limit of " + Duration.ofNanos(wallTime).toMillis() + "ms was exceeded.");
+        }
+    }
+
+    /**
+     * Returns the CPU time of the calling thread, or -1 where it cannot be
+     * read, as on virtual threads, for which the JVM reports -1.
+     */
+    private static long cpuTime() {
+        return THREADS.isCurrentThreadCpuTimeSupported() ? THREADS.getCurrentThreadCpuTime() : -1;
+    }
+
+    @Override
+    public String toString() {
+        return "ResourceBudget{" +
+                "fuel=" + fuelUsed + "/" + fuel +
+                ", cpuTime=" + getCpuTime() +
+                ", wallTime=" + getWallTime() +
+                '}';
+    }
+
+}
@@ -0,0 +1,77 @@
+package plc.project;
+
+/**
+ * The state shared by the phases of one runtime: the registry of types that
+ * programs may refer to and the table their identifiers are interned in.
+ * Each runtime owns its own context, so runtimes with different type sets
+ * can compile and execute side by side in the same JVM, and the names one
+ * runtime interns are dropped along with it.
+ */
+public final class RuntimeContext {
+
+    private final TypeRegistry types;
+    private final SymbolTable symbols;
+
+    public RuntimeContext(TypeRegistry types) {
+        this(types, new SymbolTable());
+    }
+
+    public RuntimeContext(TypeRegistry types, SymbolTable symbols) {
+        this.types = types;
+        this.symbols = symbols;
+    }
+
+    /**
+     * Returns a new context whose registry holds the built-in types, and may
+     * be extended without affecting any other context.
+     */
+    public static RuntimeContext builtins() {
+        return new RuntimeContext(TypeRegistry.builtins());
+    }
+
+    /**
+     * Returns a new context whose registry holds the built-in types, like
+     * {@link #builtins()}, but which interns names in the shared table, as
+     * the lexers and root scopes created without a table do.
+     */
+    public static RuntimeContext shared() {
+        return new RuntimeContext(TypeRegistry.builtins(), SymbolTable.shared());
+    }
+
+    public TypeRegistry getTypes() {
+        return types;
+    }
+
+    public SymbolTable getSymbols() {
+        return symbols;
+    }
+
+    /**
+     * Returns a new scope below the given one. A root scope, or one below a
+     * built-in type's scope, interns its names in this context's table; any
+     * other shares the table of its parent.
+     */
+    public Scope createScope(Scope parent) {
+        if (parent == null || parent.getSymbols() == SymbolTable.builtins()) {
+            return new Scope(parent, symbols);
+        }
+        return new Scope(parent);
+    }
+
+    /**
+     * Returns a lexer for the source which interns identifiers in this
+     * context's table.
+     */
+    public Lexer lexer(String source) {
+        return new Lexer(source, symbols);
+    }
+
+    @Override
+    public String toString() {
+        return "RuntimeContext{" +
+                "types=" + types +
+                ", symbols=" + symbols +
+                '}';
+    }
+
+}
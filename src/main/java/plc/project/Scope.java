@@ -1,47 +1,144 @@
 package plc.project;
 
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Function;
 
+/**
+ * Variables and functions are keyed by the symbol ids of their names in the
+ * scope's {@link SymbolTable}; the name-based methods intern the name first,
+ * while the interpreter passes the ids the lexer interned. A scope shares the
+ * table of its parent, and a root scope, or one below a built-in type's
+ * scope, uses the shared table unless it is created in a
+ * {@link RuntimeContext}, which gives it the context's table.
+ * <p>
+ * Variable and function definitions are each counted per scope chain rather
+ * than per process: a scope shares the counters of its parent, and a root
+ * scope, or one below a scope which is frozen along with all of its parents,
+ * starts counters of its own, since nothing above it can change. Caches of
+ * lookups are stamped with the counter of the chain they resolved from, so a
+ * definition in one runtime does not invalidate the caches of another.
+ */
 public final class Scope {
 
     private final Scope parent;
-    private final Map<String, Environment.Variable> variables = new HashMap<>();
-    private final Map<String, Environment.Function> functions = new HashMap<>();
+    private final SymbolTable symbols;
+    private final AtomicInteger variableVersion;
+    private final AtomicInteger functionVersion;
+    private final SymbolMap<Environment.Variable> variables = new SymbolMap<>();
+    private final SymbolMap<Environment.Function[]> functions = new SymbolMap<>();
+    private volatile boolean frozen = false;
 
     public Scope(Scope parent) {
+        this(parent, symbolsBelow(parent));
+    }
+
+    /**
+     * Creates a scope interning its names in the given table, which must be
+     * the parent's unless the parent is a built-in scope.
+     */
+    Scope(Scope parent, SymbolTable symbols) {
         this.parent = parent;
+        this.symbols = symbols;
+        boolean sealed = parent == null || parent.isSealed();
+        this.variableVersion = sealed ? new AtomicInteger() : parent.variableVersion;
+        this.functionVersion = sealed ? new AtomicInteger() : parent.functionVersion;
+    }
+
+    /**
+     * Returns the table of a child of the given scope: the parent's, or the
+     * shared one below a built-in scope or none.
+     */
+    static SymbolTable symbolsBelow(Scope parent) {
+        return parent == null || parent.symbols == SymbolTable.builtins() ? SymbolTable.shared() : parent.symbols;
     }
 
     public Scope getParent() {
         return parent;
     }
 
+    public SymbolTable getSymbols() {
+        return symbols;
+    }
+
+    /**
+     * Makes this scope read-only. Any later definition fails, which allows a
+     * frozen scope to be read concurrently without synchronization.
+     */
+    public void freeze() {
+        frozen = true;
+    }
+
+    public boolean isFrozen() {
+        return frozen;
+    }
+
+    /**
+     * Returns whether this scope and all of its parents are frozen, in which
+     * case no function visible from it can change.
+     */
+    private boolean isSealed() {
+        for (Scope scope = this; scope != null; scope = scope.parent) {
+            if (!scope.frozen) {
+                return false;
+            }
+        }
+        return true;
+    }
+
     public void defineVariable(String name, Environment.PlcObject value) {
         defineVariable(name, name, Environment.Type.ANY, value);
     }
 
     public Environment.Variable defineVariable(String name, String jvmName, Environment.Type type, Environment.PlcObject value) {
-        if (variables.containsKey(name)) {
+        return defineVariable(symbols.intern(name), jvmName, type, value);
+    }
+
+    public Environment.Variable defineVariable(int symbol, Environment.PlcObject value) {
+        String name = symbols.name(symbol);
+        return defineVariable(symbol, name, Environment.Type.ANY, value);
+    }
+
+    public Environment.Variable defineVariable(int symbol, String jvmName, Environment.Type type, Environment.PlcObject value) {
+        return defineVariable(symbol, new Environment.Variable(symbols.name(symbol), jvmName, type, value));
+    }
+
+    /**
+     * Defines the given variable, which lets a loop bind one variable again
+     * on every iteration instead of creating one per iteration.
+     */
+    Environment.Variable defineVariable(int symbol, Environment.Variable variable) {
+        String name = symbols.name(symbol);
+        if (frozen) {
+            throw new IllegalStateException("Cannot define the variable " + name + " in a frozen scope.");
+        } else if (variables.containsKey(symbol)) {
             throw new RuntimeException("The variable " + name + " is already defined in this scope.");
         } else {
-            Environment.Variable variable = new Environment.Variable(name, jvmName, type, value);
-            variables.put(variable.getName(), variable);
-            return variables.get(name);
+            variables.put(symbol, variable);
+            variableVersion.incrementAndGet();
+            return variable;
         }
     }
 
     public Environment.Variable lookupVariable(String name) {
-        if (variables.containsKey(name)) {
-            return variables.get(name);
-        } else if (parent != null) {
-            return parent.lookupVariable(name);
-        } else {
+        int symbol = symbols.lookup(name);
+        if (symbol == -1) {
             throw new RuntimeException("The variable " + name + " is not defined in this scope.");
         }
+        return lookupVariable(symbol);
+    }
+
+    public Environment.Variable lookupVariable(int symbol) {
+        for (Scope scope = this; scope != null; scope = scope.parent) {
+            Environment.Variable variable = scope.variables.get(symbol);
+            if (variable != null) {
+                return variable;
+            }
+        }
+        throw new RuntimeException("The variable " + symbols.name(symbol) + " is not defined in this scope.");
     }
 
     public void defineFunction(String name, int arity, Function<List<Environment.PlcObject>, Environment.PlcObject> function) {
@@ -53,31 +150,177 @@ public final class Scope {
     }
 
     public Environment.Function defineFunction(String name, String jvmName, List<Environment.Type> parameterTypes, Environment.Type returnType, java.util.function.Function<List<Environment.PlcObject>, Environment.PlcObject> function) {
-        if (functions.containsKey(name + "/" + parameterTypes.size())) {
-            throw new RuntimeException("The function " + name + "/" + parameterTypes.size() + " is already defined in this scope.");
+        return define(new Environment.Function(name, jvmName, parameterTypes, returnType, function));
+    }
+
+    public Environment.Function defineFunction(String name, String jvmName, List<Environment.Type> parameterTypes, Environment.Type returnType, Environment.NativeFunction function) {
+        return define(new Environment.Function(name, jvmName, parameterTypes, returnType, function));
+    }
+
+    public Environment.Function defineFunction(String name, Environment.Function0 function) {
+        return defineNative(name, 0, function);
+    }
+
+    public Environment.Function defineFunction(String name, Environment.Function1 function) {
+        return defineNative(name, 1, function);
+    }
+
+    public Environment.Function defineFunction(String name, Environment.Function2 function) {
+        return defineNative(name, 2, function);
+    }
+
+    public Environment.Function defineFunction(String name, Environment.Function3 function) {
+        return defineNative(name, 3, function);
+    }
+
+    public Environment.Function defineFunction(String name, Environment.Function4 function) {
+        return defineNative(name, 4, function);
+    }
+
+    public Environment.Function defineFunction(Environment.Function function) {
+        return define(function);
+    }
+
+    private Environment.Function defineNative(String name, int arity, Environment.NativeFunction function) {
+        List<Environment.Type> parameterTypes = new ArrayList<>();
+        for (int i = 0; i < arity; i++) {
+            parameterTypes.add(Environment.Type.ANY);
+        }
+        return defineFunction(name, name, parameterTypes, Environment.Type.ANY, function);
+    }
+
+    private Environment.Function define(Environment.Function func) {
+        int arity = func.getParameterTypes().size();
+        if (frozen) {
+            throw new IllegalStateException("Cannot define the function " + func.getName() + "/" + arity + " in a frozen scope.");
+        }
+        int symbol = symbols.intern(func.getName());
+        Environment.Function[] byArity = functions.get(symbol);
+        if (byArity != null && arity < byArity.length && byArity[arity] != null) {
+            throw new RuntimeException("The function " + func.getName() + "/" + arity + " is already defined in this scope.");
         } else {
-            Environment.Function func = new Environment.Function(name, jvmName, parameterTypes, returnType, function);
-            functions.put(func.getName() + "/" + func.getParameterTypes().size(), func);
+            functions.put(symbol, merge(byArity, arity, func));
+            functionVersion.incrementAndGet();
             return func;
         }
     }
 
     public Environment.Function lookupFunction(String name, int arity) {
-        if (functions.containsKey(name + "/" + arity)) {
-            return functions.get(name + "/" + arity);
-        } else if (parent != null) {
-            return parent.lookupFunction(name, arity);
-        } else {
+        int symbol = symbols.lookup(name);
+        if (symbol == -1) {
             throw new RuntimeException("The function " + name + "/" + arity + " is not defined in this scope.");
         }
+        return lookupFunction(symbol, arity);
+    }
+
+    public Environment.Function lookupFunction(int symbol, int arity) {
+        for (Scope scope = this; scope != null; scope = scope.parent) {
+            Environment.Function[] byArity = scope.functions.get(symbol);
+            if (byArity != null && arity < byArity.length && byArity[arity] != null) {
+                return byArity[arity];
+            }
+        }
+        throw new RuntimeException("The function " + symbols.name(symbol) + "/" + arity + " is not defined in this scope.");
+    }
+
+    int getVariableCount() {
+        return variables.size();
+    }
+
+    /**
+     * Removes every definition from this scope, so that a loop can reuse one
+     * scope for its body instead of allocating a scope per iteration.
+     */
+    void clear() {
+        if (frozen) {
+            throw new IllegalStateException("Cannot clear a frozen scope.");
+        } else if (variables.size() > 0 || functions.size() > 0) {
+            if (variables.size() > 0) {
+                variableVersion.incrementAndGet();
+            }
+            if (functions.size() > 0) {
+                functionVersion.incrementAndGet();
+            }
+            variables.clear();
+            functions.clear();
+        }
+    }
+
+    /**
+     * Returns a stamp which changes whenever a variable is defined in or
+     * cleared from a scope sharing this scope's counter, which includes every
+     * scope of its chain that is not frozen. Caches of variable lookups
+     * validate against it in constant time rather than walking the chain for
+     * a version, and a cache which reads the stamp before resolving sees
+     * every definition made before the stamp changed.
+     */
+    int getVariableVersion() {
+        return variableVersion.get();
+    }
+
+    /**
+     * The function counterpart of {@link #getVariableVersion()}.
+     */
+    int getFunctionVersion() {
+        return functionVersion.get();
+    }
+
+    /**
+     * Adds every variable visible from this scope to the given table, keyed
+     * by symbol, with definitions in this scope shadowing those of its
+     * parents.
+     */
+    void collectVariables(Map<Integer, Environment.Variable> table) {
+        if (parent != null) {
+            parent.collectVariables(table);
+        }
+        variables.forEach(table::put);
+    }
+
+    /**
+     * Adds every function visible from this scope to the given table, keyed
+     * by symbol and indexed by arity, with definitions in this scope
+     * shadowing those of its parents.
+     */
+    void collectFunctions(SymbolMap<Environment.Function[]> table) {
+        if (parent != null) {
+            parent.collectFunctions(table);
+        }
+        functions.forEach((symbol, byArity) -> {
+            Environment.Function[] merged = table.get(symbol);
+            for (int arity = 0; arity < byArity.length; arity++) {
+                if (byArity[arity] != null) {
+                    merged = merge(merged, arity, byArity[arity]);
+                }
+            }
+            table.put(symbol, merged);
+        });
+    }
+
+    private static Environment.Function[] merge(Environment.Function[] byArity, int arity, Environment.Function function) {
+        Environment.Function[] merged = byArity == null
+                ? new Environment.Function[arity + 1]
+                : Arrays.copyOf(byArity, Math.max(byArity.length, arity + 1));
+        merged[arity] = function;
+        return merged;
     }
 
     @Override
     public String toString() {
+        List<String> variableNames = new ArrayList<>();
+        variables.forEach((symbol, variable) -> variableNames.add(variable.getName()));
+        List<String> functionNames = new ArrayList<>();
+        functions.forEach((symbol, byArity) -> {
+            for (int arity = 0; arity < byArity.length; arity++) {
+                if (byArity[arity] != null) {
+                    functionNames.add(symbols.name(symbol) + "/" + arity);
+                }
+            }
+        });
         return "Scope{" +
                 "parent=" + parent +
-                ", variables=" + variables.keySet() +
-                ", functions=" + functions.keySet() +
+                ", variables=" + variableNames +
+                ", functions=" + functionNames +
                 '}';
     }
 
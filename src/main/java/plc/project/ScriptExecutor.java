@@ -0,0 +1,291 @@
+package plc.project;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+/**
+ * Runs scripts concurrently, each on a thread of its own, and returns their
+ * results as futures. Virtual threads are used where the JVM provides them,
+ * and otherwise platform threads. At most a fixed number of scripts run at
+ * once; further scripts wait in a bounded queue, and are rejected once it is
+ * full as the {@link Rejection} policy decides.
+ *
+ * A script which exceeds its timeout, measured from when it starts running,
+ * or whose future is cancelled, has its future completed and its thread
+ * interrupted. Interruption is cooperative: an {@link Interpreter} stops at
+ * its next check when given a {@link ResourceBudget}, as does a
+ * {@link CompiledProgram} submitted as such, which is given one.
+ */
+public final class ScriptExecutor implements AutoCloseable {
+
+    /**
+     * What to do with a script submitted while the queue is full.
+     */
+    public enum Rejection {
+        /**
+         * Fail the submitted script.
+         */
+        ABORT,
+        /**
+         * Fail the script which has waited longest, and queue the submitted
+         * one.
+         */
+        DISCARD_OLDEST
+    }
+
+    private final int maxRunning;
+    private final int queueCapacity;
+    private final Rejection rejection;
+    private final boolean virtual;
+    private final ExecutorService threads;
+    private final ScheduledExecutorService timer;
+    private final Deque<Task> queue = new ArrayDeque<>();
+    private int running = 0;
+    private boolean closed = false;
+    private long completed = 0;
+    private long rejected = 0;
+    private long timedOut = 0;
+
+    /**
+     * Creates an executor running at most the given number of scripts at
+     * once, with the given number more waiting.
+     */
+    public ScriptExecutor(int maxRunning, int queueCapacity, Rejection rejection) {
+        if (maxRunning < 1 || queueCapacity < 0) {
+            throw new IllegalArgumentException("The executor must be able to run a script.");
+        }
+        this.maxRunning = maxRunning;
+        this.queueCapacity = queueCapacity;
+        this.rejection = rejection;
+        ExecutorService threads = virtualThreads();
+        this.virtual = threads != null;
+        this.threads = threads != null ? threads : Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "plc-script");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.timer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "plc-script-timer");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Returns an executor with a thread per task on virtual threads, which
+     * exist from Java 21 on, or null on older JVMs.
+     */
+    private static ExecutorService virtualThreads() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Returns whether scripts run on virtual threads.
+     */
+    public boolean isVirtual() {
+        return virtual;
+    }
+
+    public CompletableFuture<Environment.PlcObject> submit(Supplier<Environment.PlcObject> script) {
+        return submit(script, null);
+    }
+
+    /**
+     * Submits a script, which fails with a {@link TimeoutException} if it runs
+     * longer than the timeout, unless that is null.
+     */
+    public CompletableFuture<Environment.PlcObject> submit(Supplier<Environment.PlcObject> script, Duration timeout) {
+        Task task = new Task(script, timeout);
+        Task discarded = null;
+        synchronized (this) {
+            if (closed) {
+                rejected++;
+                task.future.completeExceptionally(new RejectedExecutionException("The executor is closed."));
+                return task.future;
+            } else if (running < maxRunning) {
+                running++;
+                start(task);
+                return task.future;
+            } else if (queue.size() == queueCapacity) {
+                rejected++;
+                if (rejection == Rejection.ABORT || queueCapacity == 0) {
+                    task.future.completeExceptionally(new RejectedExecutionException("The queue of " + queueCapacity + " scripts is full."));
+                    return task.future;
+                }
+                discarded = queue.poll();
+            }
+            queue.add(task);
+        }
+        if (discarded != null) {
+            discarded.future.completeExceptionally(new RejectedExecutionException("The script was discarded from the full queue."));
+        }
+        return task.future;
+    }
+
+    /**
+     * Submits the main method of a program, executed in a new context with an
+     * unlimited budget, so that it stops once interrupted.
+     */
+    public CompletableFuture<Environment.PlcObject> submit(CompiledProgram program, Duration timeout) {
+        return submit(() -> program.execute(new ResourceBudget(ResourceBudget.UNLIMITED)), timeout);
+    }
+
+    private void start(Task task) {
+        try {
+            threads.execute(task);
+        } catch (RejectedExecutionException e) {
+            task.future.completeExceptionally(e);
+            finish();
+        }
+    }
+
+    /**
+     * Starts the next queued script in place of a finished one.
+     */
+    private void finish() {
+        Task next;
+        synchronized (this) {
+            completed++;
+            do {
+                next = queue.poll();
+            } while (next != null && next.future.isDone());
+            if (next == null) {
+                running--;
+                return;
+            }
+        }
+        start(next);
+    }
+
+    public synchronized int getRunning() {
+        return running;
+    }
+
+    public synchronized int getQueued() {
+        return queue.size();
+    }
+
+    public synchronized long getCompleted() {
+        return completed;
+    }
+
+    public synchronized long getRejected() {
+        return rejected;
+    }
+
+    public synchronized long getTimedOut() {
+        return timedOut;
+    }
+
+    /**
+     * Rejects further scripts and fails those still queued. Running scripts
+     * are left to finish.
+     */
+    @Override
+    public void close() {
+        List<Task> pending;
+        synchronized (this) {
+            closed = true;
+            pending = new ArrayList<>(queue);
+            queue.clear();
+        }
+        for (Task task : pending) {
+            task.future.completeExceptionally(new RejectedExecutionException("The executor is closed."));
+        }
+        threads.shutdown();
+        timer.shutdown();
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "ScriptExecutor{" +
+                "running=" + running +
+                ", queued=" + queue.size() +
+                ", completed=" + completed +
+                ", rejected=" + rejected +
+                ", timedOut=" + timedOut +
+                ", virtual=" + virtual +
+                '}';
+    }
+
+    private final class Task implements Runnable {
+
+        private final Supplier<Environment.PlcObject> script;
+        private final Duration timeout;
+        private final CompletableFuture<Environment.PlcObject> future = new CompletableFuture<>();
+        private Thread thread;
+
+        private Task(Supplier<Environment.PlcObject> script, Duration timeout) {
+            this.script = script;
+            this.timeout = timeout;
+            future.whenComplete((result, error) -> interrupt());
+        }
+
+        @Override
+        public void run() {
+            ScheduledFuture<?> timeout = null;
+            try {
+                synchronized (this) {
+                    if (future.isDone()) {
+                        return;
+                    }
+                    thread = Thread.currentThread();
+                }
+                if (this.timeout != null) {
+                    timeout = timer.schedule(this::expire, this.timeout.toNanos(), TimeUnit.NANOSECONDS);
+                }
+                future.complete(script.get());
+            } catch (Throwable e) {
+                future.completeExceptionally(e);
+            } finally {
+                if (timeout != null) {
+                    timeout.cancel(false);
+                }
+                synchronized (this) {
+                    thread = null;
+                }
+                // clears an interrupt which came too late, before the thread is reused
+                Thread.interrupted();
+                finish();
+            }
+        }
+
+        private void expire() {
+            synchronized (ScriptExecutor.this) {
+                if (future.isDone()) {
+                    return;
+                }
+                timedOut++;
+            }
+            future.completeExceptionally(new TimeoutException("The script exceeded its timeout of " + timeout.toMillis() + "ms."));
+        }
+
+        /**
+         * Interrupts the script if it is still running once its future has
+         * completed early.
+         */
+        private synchronized void interrupt() {
+            if (thread != null && thread != Thread.currentThread()) {
+                thread.interrupt();
+            }
+        }
+
+    }
+
+}
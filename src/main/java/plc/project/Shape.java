@@ -0,0 +1,136 @@
+package plc.project;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The layout of objects, which store their fields in slots. A shape maps the
+ * symbol ids of field names to slot indexes and is shared by every object
+ * that defined the same fields in the same order; defining a field moves an
+ * object along a transition to the next shape, which is created once and
+ * then reused. Each {@link SymbolTable} has a tree of its own, keyed by its
+ * ids, which keeps at most {@link #MAX_CACHED} shapes as transitions; past
+ * that, new shapes are created per object, which only costs the caches their
+ * hits.
+ */
+public final class Shape {
+
+    /**
+     * Shapes with more fields than this index their fields with a map
+     * instead of scanning the ids.
+     */
+    private static final int LINEAR_LIMIT = 8;
+
+    static final int MAX_CACHED = 4096;
+
+    private final SymbolTable symbols;
+    private final AtomicInteger cached;
+    private final int[] fields;
+    private final SymbolMap<Integer> indexes;
+    private final Map<Integer, Shape> transitions = new ConcurrentHashMap<>();
+
+    private Shape(SymbolTable symbols, AtomicInteger cached, int[] fields) {
+        this.symbols = symbols;
+        this.cached = cached;
+        this.fields = fields;
+        if (fields.length > LINEAR_LIMIT) {
+            indexes = new SymbolMap<>();
+            for (int i = 0; i < fields.length; i++) {
+                indexes.put(fields[i], i);
+            }
+        } else {
+            indexes = null;
+        }
+    }
+
+    /**
+     * Returns the empty root shape of the given table.
+     */
+    static Shape root(SymbolTable symbols) {
+        return new Shape(symbols, new AtomicInteger(), new int[0]);
+    }
+
+    /**
+     * Returns the table the field names are interned in.
+     */
+    public SymbolTable getSymbols() {
+        return symbols;
+    }
+
+    public int size() {
+        return fields.length;
+    }
+
+    public String getField(int index) {
+        return symbols.name(fields[index]);
+    }
+
+    /**
+     * Returns the slot index of the given field, or -1 if objects of this
+     * shape do not have it.
+     */
+    public int indexOf(int symbol) {
+        if (indexes != null) {
+            Integer index = indexes.get(symbol);
+            return index != null ? index : -1;
+        }
+        for (int i = 0; i < fields.length; i++) {
+            if (fields[i] == symbol) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    public int indexOf(String name) {
+        int symbol = symbols.lookup(name);
+        return symbol == -1 ? -1 : indexOf(symbol);
+    }
+
+    /**
+     * Returns the shape of an object of this shape after defining the given
+     * field, which is stored in the slot at index {@link #size()}.
+     */
+    public Shape withField(int symbol) {
+        if (indexOf(symbol) != -1) {
+            throw new RuntimeException("The variable " + symbols.name(symbol) + " is already defined in this scope.");
+        }
+        Shape shape = transitions.get(symbol);
+        if (shape != null) {
+            return shape;
+        } else if (cached.get() >= MAX_CACHED) {
+            return extend(symbol);
+        }
+        return transitions.computeIfAbsent(symbol, field -> {
+            cached.incrementAndGet();
+            return extend(field);
+        });
+    }
+
+    private Shape extend(int symbol) {
+        int[] extended = Arrays.copyOf(fields, fields.length + 1);
+        extended[fields.length] = symbol;
+        return new Shape(symbols, cached, extended);
+    }
+
+    /**
+     * Returns the number of shapes of this tree kept as transitions.
+     */
+    int getCached() {
+        return cached.get();
+    }
+
+    @Override
+    public String toString() {
+        String[] names = new String[fields.length];
+        for (int i = 0; i < fields.length; i++) {
+            names[i] = symbols.name(fields[i]);
+        }
+        return "Shape{" +
+                "fields=" + Arrays.toString(names) +
+                '}';
+    }
+
+}
@@ -0,0 +1,108 @@
+package plc.project;
+
+import java.util.Arrays;
+
+/**
+ * A small open-addressing hash map keyed by symbol ids (see {@link
+ * SymbolTable}), which avoids boxing and string hashing in scope lookups.
+ * The table is only allocated once the first entry is added.
+ */
+final class SymbolMap<V> {
+
+    private static final int INITIAL_CAPACITY = 4;
+
+    /**
+     * Keys are stored as {@code symbol + 1}, so that 0 marks an empty slot.
+     */
+    private int[] keys;
+    private Object[] values;
+    private int size = 0;
+
+    int size() {
+        return size;
+    }
+
+    boolean containsKey(int symbol) {
+        return get(symbol) != null;
+    }
+
+    @SuppressWarnings("unchecked")
+    V get(int symbol) {
+        if (keys == null) {
+            return null;
+        }
+        int mask = keys.length - 1;
+        for (int i = hash(symbol) & mask; keys[i] != 0; i = (i + 1) & mask) {
+            if (keys[i] == symbol + 1) {
+                return (V) values[i];
+            }
+        }
+        return null;
+    }
+
+    void put(int symbol, V value) {
+        if (keys == null) {
+            keys = new int[INITIAL_CAPACITY];
+            values = new Object[INITIAL_CAPACITY];
+        } else if ((size + 1) * 2 > keys.length) {
+            resize();
+        }
+        int mask = keys.length - 1;
+        int i = hash(symbol) & mask;
+        while (keys[i] != 0 && keys[i] != symbol + 1) {
+            i = (i + 1) & mask;
+        }
+        if (keys[i] == 0) {
+            keys[i] = symbol + 1;
+            size++;
+        }
+        values[i] = value;
+    }
+
+    void clear() {
+        if (size > 0) {
+            Arrays.fill(keys, 0);
+            Arrays.fill(values, null);
+            size = 0;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    void forEach(EntryConsumer<V> action) {
+        if (keys != null) {
+            for (int i = 0; i < keys.length; i++) {
+                if (keys[i] != 0) {
+                    action.accept(keys[i] - 1, (V) values[i]);
+                }
+            }
+        }
+    }
+
+    private void resize() {
+        int[] oldKeys = keys;
+        Object[] oldValues = values;
+        keys = new int[oldKeys.length * 2];
+        values = new Object[oldKeys.length * 2];
+        int mask = keys.length - 1;
+        for (int j = 0; j < oldKeys.length; j++) {
+            if (oldKeys[j] != 0) {
+                int i = hash(oldKeys[j] - 1) & mask;
+                while (keys[i] != 0) {
+                    i = (i + 1) & mask;
+                }
+                keys[i] = oldKeys[j];
+                values[i] = oldValues[j];
+            }
+        }
+    }
+
+    private static int hash(int symbol) {
+        int h = symbol * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    interface EntryConsumer<V> {
+        void accept(int symbol, V value);
+    }
+
+}
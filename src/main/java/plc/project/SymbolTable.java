@@ -0,0 +1,242 @@
+package plc.project;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Interns identifiers to dense integer ids. The lexer interns every
+ * identifier it emits, and the later phases key their lookups by id, so
+ * names are hashed once instead of on every access. Ids are never reused
+ * within a table, with lock-free reads.
+ *
+ * Each table belongs to one runtime, that is a {@link RuntimeContext} and the
+ * scopes created in it, and is dropped along with it. Lexers, root scopes and
+ * runtimes created without a table share the {@link #shared()} one, so that
+ * the default pipeline of lexer, parser, analyzer and interpreter resolves
+ * the ids the lexer interned as they are.
+ * Every table extends the built-in table, which holds the names of the
+ * built-in types' methods and is frozen once they are defined, so those
+ * names have the same id in every table. Ids of other names are only
+ * meaningful in their own table; {@link #lookup(SymbolTable, int)} and
+ * {@link #intern(SymbolTable, int)} translate them by name.
+ */
+public final class SymbolTable {
+
+    /**
+     * The first id of the names which are not built in, which keeps the ids
+     * of the built-in table apart from those of the tables extending it.
+     */
+    private static final int LOCAL_BASE = 1 << 20;
+
+    private static final SymbolTable BUILTINS = new SymbolTable(null);
+
+    private static final SymbolTable SHARED = new SymbolTable();
+
+    private final SymbolTable parent;
+    private final int base;
+    private final Map<String, Integer> ids = new ConcurrentHashMap<>();
+    private final Shape shape;
+    private volatile String[] names = new String[16];
+    private volatile boolean frozen = false;
+    private int size = 0;
+
+    /**
+     * Creates a table extending the built-in one.
+     */
+    public SymbolTable() {
+        this(BUILTINS);
+    }
+
+    private SymbolTable(SymbolTable parent) {
+        this.parent = parent;
+        this.base = parent == null ? 0 : LOCAL_BASE;
+        this.shape = parent == null ? null : Shape.root(this);
+    }
+
+    /**
+     * Returns the table of the built-in names, which is shared by every
+     * runtime and extended by every other table.
+     */
+    static SymbolTable builtins() {
+        return BUILTINS;
+    }
+
+    /**
+     * Returns the table shared by the lexers, root scopes and runtimes
+     * created without a table of their own, which is never dropped.
+     */
+    public static SymbolTable shared() {
+        return SHARED;
+    }
+
+    /**
+     * Returns the id of the given name, assigning the next id if the name
+     * has not been interned before.
+     */
+    public int intern(String name) {
+        if (parent != null) {
+            int inherited = parent.lookup(name);
+            if (inherited != -1) {
+                return inherited;
+            }
+        }
+        Integer id = ids.get(name);
+        return id != null ? id : add(name);
+    }
+
+    /**
+     * Returns the id of the given name, or -1 if it was never interned.
+     */
+    public int lookup(String name) {
+        if (parent != null) {
+            int inherited = parent.lookup(name);
+            if (inherited != -1) {
+                return inherited;
+            }
+        }
+        Integer id = ids.get(name);
+        return id != null ? id : -1;
+    }
+
+    /**
+     * Returns the id in this table of a symbol of the given table, or -1 if
+     * its name was never interned here.
+     */
+    public int lookup(SymbolTable table, int symbol) {
+        return table == this || symbol < LOCAL_BASE ? symbol : lookup(table.name(symbol));
+    }
+
+    /**
+     * Returns the id in this table of a symbol of the given table, interning
+     * its name if necessary.
+     */
+    public int intern(SymbolTable table, int symbol) {
+        return table == this || symbol < LOCAL_BASE ? symbol : intern(table.name(symbol));
+    }
+
+    public String name(int id) {
+        if (id < base) {
+            return parent.name(id);
+        }
+        return names[id - base];
+    }
+
+    /**
+     * Returns the symbol of the given name, interning it.
+     */
+    public Symbol symbol(String name) {
+        int id = intern(name);
+        return new Symbol(this, id, name(id));
+    }
+
+    /**
+     * Returns the number of names interned in this table itself, not
+     * counting the built-in ones.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns the root of the shapes of objects whose field names are
+     * interned in this table, or null for the built-in table, whose names
+     * cannot be extended.
+     */
+    Shape getShape() {
+        return shape;
+    }
+
+    /**
+     * Makes interning a new name fail, which keeps the ids of the built-in
+     * table fixed once the built-in types are defined.
+     */
+    void freeze() {
+        frozen = true;
+    }
+
+    boolean isFrozen() {
+        return frozen;
+    }
+
+    private synchronized int add(String name) {
+        Integer existing = ids.get(name);
+        if (existing != null) {
+            return existing;
+        } else if (frozen) {
+            throw new IllegalStateException("Cannot intern the name " + name + " in a frozen table.");
+        } else if (parent == null && size == LOCAL_BASE) {
+            throw new IllegalStateException("The built-in table is full.");
+        }
+        if (size == names.length) {
+            names = Arrays.copyOf(names, size * 2);
+        }
+        names[size] = name;
+        ids.put(name, base + size);
+        return base + size++;
+    }
+
+    @Override
+    public String toString() {
+        return "SymbolTable{" +
+                "size=" + size +
+                ", frozen=" + frozen +
+                '}';
+    }
+
+    /**
+     * An interned name together with its table, which lets it be passed on
+     * from the lexer and rebound when it is used with another table.
+     */
+    public static final class Symbol {
+
+        private final SymbolTable table;
+        private final int id;
+        private final String name;
+
+        private Symbol(SymbolTable table, int id, String name) {
+            this.table = table;
+            this.id = id;
+            this.name = name;
+        }
+
+        public SymbolTable getTable() {
+            return table;
+        }
+
+        public int getId() {
+            return id;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * Returns this symbol if it belongs to the given table, and otherwise
+         * the symbol of its name there.
+         */
+        public Symbol in(SymbolTable table) {
+            return table == this.table ? this : table.symbol(name);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            return obj instanceof Symbol &&
+                    table == ((Symbol) obj).table &&
+                    id == ((Symbol) obj).id;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * System.identityHashCode(table) + id;
+        }
+
+        @Override
+        public String toString() {
+            return name + "#" + id;
+        }
+
+    }
+
+}
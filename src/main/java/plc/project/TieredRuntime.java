@@ -0,0 +1,347 @@
+package plc.project;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.lang.reflect.Method;
+import java.math.BigInteger;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Executes an analyzed source in the {@link Interpreter}, counting the
+ * invocations and loop iterations of each method. Once a method reaches the
+ * threshold, the {@link Generator} output for it and the methods it calls is
+ * compiled in memory, and later invocations of the method run the compiled
+ * code. A running invocation is not replaced mid-loop.
+ *
+ * Only methods which are pure, and whose compiled code matches the
+ * interpreter, are compiled: they may access only their parameters and
+ * locals, call only other such methods of the source, and use Integer,
+ * Boolean, Character and String values. Integers in compiled code are
+ * 32-bit and their arithmetic is exact, so a call whose arguments or
+ * results do not fit fails, and is repeated by the interpreter. Methods
+ * which are not eligible, or whose code does not compile, remain
+ * interpreted.
+ */
+public final class TieredRuntime {
+
+    public static final int DEFAULT_THRESHOLD = 1000;
+
+    private static final AtomicInteger UNITS = new AtomicInteger();
+    private static final JavaSourceCompiler COMPILER = new JavaSourceCompiler();
+
+    private static ExecutorService background;
+
+    private final Interpreter interpreter;
+    private final int threshold;
+    private final Executor executor;
+    private volatile Map<Ast.Method, Tier> tiers = new IdentityHashMap<>();
+    private volatile Map<String, Ast.Method> methods = new HashMap<>();
+
+    public TieredRuntime(Scope parent) {
+        this(parent, DEFAULT_THRESHOLD, background());
+    }
+
+    /**
+     * Creates a runtime which compiles methods once their invocations and
+     * loop iterations reach the threshold, using the given executor.
+     */
+    public TieredRuntime(Scope parent, int threshold, Executor executor) {
+        this.interpreter = new Interpreter(parent, RuntimeContext.builtins(), new Profiler());
+        this.threshold = threshold;
+        this.executor = executor;
+    }
+
+    private static synchronized ExecutorService background() {
+        if (background == null) {
+            background = Executors.newSingleThreadExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "plc-tier-compiler");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        return background;
+    }
+
+    public Scope getScope() {
+        return interpreter.getScope();
+    }
+
+    public Environment.PlcObject execute(Ast.Source ast) {
+        synchronized (this) {
+            Map<Ast.Method, Tier> tiers = new IdentityHashMap<>(this.tiers);
+            Map<String, Ast.Method> methods = new HashMap<>(this.methods);
+            for (Ast.Method method : ast.getMethods()) {
+                tiers.put(method, new Tier(method));
+                methods.put(method.getName() + "/" + method.getParameters().size(), method);
+            }
+            this.tiers = tiers;
+            this.methods = methods;
+        }
+        return interpreter.visit(ast);
+    }
+
+    /**
+     * Returns whether the method has been compiled.
+     */
+    public boolean isCompiled(String name, int arity) {
+        Ast.Method method = methods.get(name + "/" + arity);
+        return method != null && tiers.get(method).compiled != null;
+    }
+
+    private void compile(Tier tier) {
+        List<Ast.Method> unit = new ArrayList<>();
+        if (!new Eligibility(methods).check(tier.method, unit) || !COMPILER.isAvailable()) {
+            return;
+        }
+        String className = "PlcTier" + UNITS.incrementAndGet();
+        StringWriter source = new StringWriter();
+        PrintWriter writer = new PrintWriter(source);
+        writer.println("public final class " + className + " {");
+        for (Ast.Method method : unit) {
+            writer.println();
+            new Generator(writer, true).visit(method);
+            writer.println();
+        }
+        writer.println("}");
+        writer.flush();
+        try {
+            Class<?> compiled = COMPILER.compile(className, source.toString());
+            Object instance = compiled.getDeclaredConstructor().newInstance();
+            for (Ast.Method method : unit) {
+                Method target = null;
+                for (Method candidate : compiled.getDeclaredMethods()) {
+                    if (candidate.getName().equals(method.getName()) && candidate.getParameterCount() == method.getParameters().size()) {
+                        target = candidate;
+                    }
+                }
+                Tier callee = tiers.get(method);
+                if (target != null && callee.compiled == null) {
+                    callee.compiled = Interop.bind(method.getName(), instance, target);
+                }
+            }
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            // the methods remain interpreted
+        }
+    }
+
+    private final class Profiler implements Interpreter.Profiler {
+
+        @Override
+        public Environment.Function enter(Ast.Method method) {
+            Tier tier = tiers.get(method);
+            if (tier == null) {
+                return null;
+            }
+            tier.record();
+            return tier.compiled;
+        }
+
+        @Override
+        public void backEdge(Ast.Method method) {
+            Tier tier = method == null ? null : tiers.get(method);
+            if (tier != null) {
+                tier.record();
+            }
+        }
+
+    }
+
+    /**
+     * The execution state of a method. The count is not synchronized, since
+     * a few lost updates do not matter.
+     */
+    private final class Tier {
+
+        private final Ast.Method method;
+        private int count = 0;
+        private volatile boolean queued = false;
+        private volatile Environment.Function compiled;
+
+        private Tier(Ast.Method method) {
+            this.method = method;
+        }
+
+        private void record() {
+            if (++count >= threshold && !queued) {
+                queued = true;
+                executor.execute(() -> compile(this));
+            }
+        }
+
+    }
+
+    /**
+     * Decides whether a method can be compiled, collecting it and the methods
+     * it calls into a compilation unit.
+     */
+    private static final class Eligibility {
+
+        private final Map<String, Ast.Method> methods;
+        private final Set<Ast.Method> visited = Collections.newSetFromMap(new IdentityHashMap<>());
+        private final Deque<Set<String>> locals = new ArrayDeque<>();
+
+        private Eligibility(Map<String, Ast.Method> methods) {
+            this.methods = methods;
+        }
+
+        private boolean check(Ast.Method method, List<Ast.Method> unit) {
+            if (!visited.add(method)) {
+                return true;
+            }
+            unit.add(method);
+            if (!method.isPure()) {
+                return false;
+            }
+            try {
+                Environment.Function function = method.getFunction();
+                if (!isSupported(function.getReturnType())) {
+                    return false;
+                }
+                for (Environment.Type type : function.getParameterTypes()) {
+                    if (!isSupported(type)) {
+                        return false;
+                    }
+                }
+                Deque<Set<String>> enclosing = new ArrayDeque<>(locals);
+                locals.clear();
+                locals.push(new HashSet<>(method.getParameters()));
+                boolean eligible = checkBlock(method.getStatements(), unit);
+                locals.clear();
+                enclosing.descendingIterator().forEachRemaining(locals::push);
+                return eligible;
+            } catch (IllegalStateException e) {
+                return false;
+            }
+        }
+
+        private boolean checkBlock(List<Ast.Stmt> statements, List<Ast.Method> unit) {
+            locals.push(new HashSet<>());
+            try {
+                for (Ast.Stmt statement : statements) {
+                    if (!check(statement, unit)) {
+                        return false;
+                    }
+                }
+                return true;
+            } finally {
+                locals.pop();
+            }
+        }
+
+        private boolean check(Ast.Stmt ast, List<Ast.Method> unit) {
+            if (ast instanceof Ast.Stmt.Expression) {
+                return check(((Ast.Stmt.Expression) ast).getExpression(), unit);
+            } else if (ast instanceof Ast.Stmt.Declaration) {
+                Ast.Stmt.Declaration declaration = (Ast.Stmt.Declaration) ast;
+                locals.peek().add(declaration.getName());
+                return isSupported(declaration.getVariable().getType())
+                        && (!declaration.getValue().isPresent() || check(declaration.getValue().get(), unit));
+            } else if (ast instanceof Ast.Stmt.Assignment) {
+                Ast.Stmt.Assignment assignment = (Ast.Stmt.Assignment) ast;
+                return check(assignment.getReceiver(), unit) && check(assignment.getValue(), unit);
+            } else if (ast instanceof Ast.Stmt.If) {
+                Ast.Stmt.If statement = (Ast.Stmt.If) ast;
+                return check(statement.getCondition(), unit)
+                        && checkBlock(statement.getThenStatements(), unit)
+                        && checkBlock(statement.getElseStatements(), unit);
+            } else if (ast instanceof Ast.Stmt.While) {
+                Ast.Stmt.While statement = (Ast.Stmt.While) ast;
+                return check(statement.getCondition(), unit) && checkBlock(statement.getStatements(), unit);
+            } else if (ast instanceof Ast.Stmt.Return) {
+                return check(((Ast.Stmt.Return) ast).getValue(), unit);
+            } else {
+                return false;
+            }
+        }
+
+        private boolean check(Ast.Expr ast, List<Ast.Method> unit) {
+            if (ast instanceof Ast.Expr.Literal) {
+                Object literal = ((Ast.Expr.Literal) ast).getLiteral();
+                return isSupported(ast.getType())
+                        && (!(literal instanceof BigInteger) || ((BigInteger) literal).bitLength() < 32)
+                        && !(literal instanceof String && ((String) literal).matches("(?s).*[\\\\\"\\n\\r].*"))
+                        && !(literal instanceof Character && "\\'\n\r".indexOf((Character) literal) != -1);
+            } else if (ast instanceof Ast.Expr.Group) {
+                return check(((Ast.Expr.Group) ast).getExpression(), unit);
+            } else if (ast instanceof Ast.Expr.Binary) {
+                return check((Ast.Expr.Binary) ast, unit);
+            } else if (ast instanceof Ast.Expr.Access) {
+                Ast.Expr.Access access = (Ast.Expr.Access) ast;
+                return !access.getReceiver().isPresent() && isLocal(access.getName());
+            } else if (ast instanceof Ast.Expr.Function) {
+                Ast.Expr.Function function = (Ast.Expr.Function) ast;
+                if (function.getReceiver().isPresent()) {
+                    return false;
+                }
+                Ast.Method callee = methods.get(function.getName() + "/" + function.getArguments().size());
+                if (callee == null || function.getFunction() != callee.getFunction()) {
+                    return false;
+                }
+                for (Ast.Expr argument : function.getArguments()) {
+                    if (!check(argument, unit)) {
+                        return false;
+                    }
+                }
+                return check(callee, unit);
+            } else {
+                return false;
+            }
+        }
+
+        private boolean check(Ast.Expr.Binary ast, List<Ast.Method> unit) {
+            Environment.Type left = ast.getLeft().getType();
+            Environment.Type right = ast.getRight().getType();
+            boolean operands = check(ast.getLeft(), unit) && check(ast.getRight(), unit);
+            switch (ast.getKind()) {
+                case AND:
+                case OR:
+                    return operands && left == Environment.Type.BOOLEAN && right == Environment.Type.BOOLEAN;
+                case LESS:
+                case GREATER:
+                case LESS_EQUAL:
+                case GREATER_EQUAL:
+                    return operands && left == right && (left == Environment.Type.INTEGER || left == Environment.Type.CHARACTER);
+                case EQUAL:
+                case NOT_EQUAL:
+                    return operands && left == right && left != Environment.Type.STRING;
+                case ADD:
+                    return operands && left == right && (left == Environment.Type.INTEGER || left == Environment.Type.STRING);
+                case SUBTRACT:
+                case MULTIPLY:
+                case DIVIDE:
+                    return operands && left == Environment.Type.INTEGER && right == Environment.Type.INTEGER;
+                default:
+                    return false;
+            }
+        }
+
+        private boolean isLocal(String name) {
+            for (Set<String> block : locals) {
+                if (block.contains(name)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private static boolean isSupported(Environment.Type type) {
+            return type == Environment.Type.INTEGER || type == Environment.Type.BOOLEAN
+                    || type == Environment.Type.CHARACTER || type == Environment.Type.STRING;
+        }
+
+    }
+
+}
@@ -1,5 +1,7 @@
 package plc.project;
 
+import java.util.Objects;
+
 public final class Token {
 
     public enum Type {
@@ -14,11 +16,21 @@ public final class Token {
     private final Type type;
     private final String literal;
     private final int index;
+    private final SymbolTable.Symbol symbol;
 
     public Token(Type type, String literal, int index) {
+        this(type, literal, index, null);
+    }
+
+    /**
+     * Creates a token for an identifier which was interned as the given
+     * symbol.
+     */
+    public Token(Type type, String literal, int index, SymbolTable.Symbol symbol) {
         this.type = type;
         this.literal = literal;
         this.index = index;
+        this.symbol = symbol;
     }
 
     public Type getType() {
@@ -33,6 +45,14 @@ public final class Token {
         return index;
     }
 
+    /**
+     * Returns the symbol of an identifier, or null for other tokens and
+     * identifiers which were not interned.
+     */
+    public SymbolTable.Symbol getSymbol() {
+        return symbol;
+    }
+
     @Override
     public boolean equals(Object obj) {
         return obj instanceof Token
@@ -41,6 +61,11 @@ public final class Token {
                 && index == ((Token) obj).index;
     }
 
+    @Override
+    public int hashCode() {
+        return Objects.hash(type, literal, index);
+    }
+
     @Override
     public String toString() {
         return type + "=" + literal + "@" + index;
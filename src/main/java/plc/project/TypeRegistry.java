@@ -0,0 +1,86 @@
+package plc.project;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A set of named types available to a runtime. Lookups read an immutable
+ * snapshot of the registered types and never lock, while registrations copy
+ * the snapshot under the registry's monitor. Once {@link #freeze()} has been
+ * called no further types can be registered and the scopes of all registered
+ * types become read-only, so a frozen registry can be shared freely between
+ * threads and runtimes.
+ */
+public final class TypeRegistry {
+
+    private volatile Map<String, Environment.Type> types;
+    private volatile boolean frozen = false;
+
+    public TypeRegistry() {
+        this.types = Collections.emptyMap();
+    }
+
+    /**
+     * Creates an unfrozen registry containing the types of the given registry,
+     * which can then be extended independently of it.
+     */
+    public TypeRegistry(TypeRegistry parent) {
+        this.types = parent.types;
+    }
+
+    /**
+     * Creates an unfrozen registry containing the built-in types.
+     */
+    public static TypeRegistry builtins() {
+        return new TypeRegistry(Environment.getBuiltinTypes());
+    }
+
+    public Environment.Type getType(String name) {
+        Environment.Type type = types.get(name);
+        if (type == null) {
+            throw new RuntimeException("Unknown type " + name + ".");
+        }
+        return type;
+    }
+
+    public boolean hasType(String name) {
+        return types.containsKey(name);
+    }
+
+    public synchronized void register(Environment.Type type) {
+        if (frozen) {
+            throw new IllegalStateException("Cannot register type " + type.getName() + " in a frozen registry.");
+        } else if (types.containsKey(type.getName())) {
+            throw new IllegalArgumentException("Duplicate registration of type " + type.getName() + ".");
+        }
+        Map<String, Environment.Type> copy = new HashMap<>(types);
+        copy.put(type.getName(), type);
+        types = Collections.unmodifiableMap(copy);
+    }
+
+    public synchronized TypeRegistry freeze() {
+        if (!frozen) {
+            for (Environment.Type type : types.values()) {
+                for (Scope scope = type.getScope(); scope != null; scope = scope.getParent()) {
+                    scope.freeze();
+                }
+            }
+            frozen = true;
+        }
+        return this;
+    }
+
+    public boolean isFrozen() {
+        return frozen;
+    }
+
+    @Override
+    public String toString() {
+        return "TypeRegistry{" +
+                "types=" + types.keySet() +
+                ", frozen=" + frozen +
+                '}';
+    }
+
+}
@@ -0,0 +1,377 @@
+package plc.project;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Executes {@link Bytecode} in a single dispatch loop. Frames live in arrays
+ * on the heap rather than on the Java stack: calls between methods of the
+ * same program push a frame and continue in the same loop, and a return pops
+ * it, so neither recurses in Java. Locals and operands of all frames share
+ * one value stack, with a frame's arguments becoming its first locals.
+ *
+ * The methods of an executed program are defined in the scope like those of
+ * the other engines, and re-enter the loop when invoked from outside. A
+ * machine executes on one thread at a time.
+ *
+ * Since calls within a program use no Java stack, recursion depth is bounded
+ * by a configurable maximum rather than the thread's stack size, and deep
+ * recursion runs on threads with small stacks.
+ */
+public final class VirtualMachine {
+
+    public static final int DEFAULT_MAX_DEPTH = 100_000;
+
+    private final Scope scope;
+    private final int maxDepth;
+
+    private Object[] stack = new Object[256];
+    private int sp = 0;
+
+    private Bytecode.Chunk[] chunks = new Bytecode.Chunk[16];
+    private int[] pcs = new int[16];
+    private int[] bases = new int[16];
+    private int depth = 0;
+
+    public VirtualMachine(Scope parent) {
+        this(parent, DEFAULT_MAX_DEPTH);
+    }
+
+    /**
+     * Creates a machine whose calls may nest at most the given number of
+     * frames deep, failing with a runtime error beyond it.
+     */
+    public VirtualMachine(Scope parent, int maxDepth) {
+        if (maxDepth < 1) {
+            throw new IllegalArgumentException("The maximum depth must be positive.");
+        }
+        this.scope = new Scope(parent);
+        this.maxDepth = maxDepth;
+        Builtins.define(scope);
+    }
+
+    public Scope getScope() {
+        return scope;
+    }
+
+    /**
+     * Initializes the fields of the program, defines its methods and invokes
+     * its {@code main/0} method, like {@link Interpreter#visit(Ast.Source)}.
+     */
+    public Environment.PlcObject execute(Bytecode.Program program) {
+        run(program, program.getFields());
+        for (Bytecode.Chunk chunk : program.getMethods()) {
+            define(program, chunk);
+        }
+        return scope.lookupFunction("main", 0).invoke();
+    }
+
+    private void define(Bytecode.Program program, Bytecode.Chunk chunk) {
+        switch (chunk.getArity()) {
+            case 0:
+                scope.defineFunction(chunk.getName(), () -> run(program, chunk));
+                break;
+            case 1:
+                scope.defineFunction(chunk.getName(), first -> {
+                    push(first);
+                    return run(program, chunk);
+                });
+                break;
+            case 2:
+                scope.defineFunction(chunk.getName(), (first, second) -> {
+                    push(first);
+                    push(second);
+                    return run(program, chunk);
+                });
+                break;
+            default:
+                scope.defineFunction(chunk.getName(), chunk.getArity(), args -> {
+                    args.forEach(this::push);
+                    return run(program, chunk);
+                });
+        }
+    }
+
+    private void push(Environment.PlcObject object) {
+        if (sp == stack.length) {
+            stack = Arrays.copyOf(stack, stack.length * 2);
+        }
+        stack[sp++] = object;
+    }
+
+    /**
+     * Pushes a frame for the chunk, whose arguments are the topmost values of
+     * the stack, and returns the base of the frame.
+     */
+    private int enter(Bytecode.Chunk chunk, int sp) {
+        int base = sp - chunk.getArity();
+        if (depth == maxDepth) {
+            throw new RuntimeException("The maximum call depth of " + maxDepth + " was exceeded in " + chunk.getName() + "/" + chunk.getArity() + ".");
+        } else if (depth == chunks.length) {
+            int length = (int) Math.min((long) depth * 2, maxDepth);
+            chunks = Arrays.copyOf(chunks, length);
+            pcs = Arrays.copyOf(pcs, length);
+            bases = Arrays.copyOf(bases, length);
+        }
+        int required = base + chunk.getLocals() + chunk.getMaxStack();
+        if (required > stack.length) {
+            stack = Arrays.copyOf(stack, Math.max(stack.length * 2, required));
+        }
+        chunks[depth] = chunk;
+        bases[depth] = base;
+        depth++;
+        return base;
+    }
+
+    @SuppressWarnings("unchecked")
+    private Environment.PlcObject run(Bytecode.Program program, Bytecode.Chunk entry) {
+        int entryDepth = depth;
+        int entryBase = sp - entry.getArity();
+        Bytecode.Chunk chunk = entry;
+        int base;
+        try {
+            base = enter(chunk, this.sp);
+        } catch (RuntimeException e) {
+            Arrays.fill(this.stack, entryBase, this.sp, null);
+            this.sp = entryBase;
+            throw e;
+        }
+        int sp = base + chunk.getLocals();
+        int pc = 0;
+        int[] code = chunk.getCode();
+        Object[] constants = chunk.getConstants();
+        Object[] stack = this.stack;
+        try {
+            while (true) {
+                switch (code[pc++]) {
+                    case Bytecode.NIL:
+                        stack[sp++] = Environment.NIL;
+                        break;
+                    case Bytecode.CONST:
+                        stack[sp++] = constants[code[pc++]];
+                        break;
+                    case Bytecode.POP:
+                        stack[--sp] = null;
+                        break;
+                    case Bytecode.LOAD_LOCAL:
+                        stack[sp++] = stack[base + code[pc++]];
+                        break;
+                    case Bytecode.STORE_LOCAL:
+                        stack[base + code[pc++]] = stack[--sp];
+                        break;
+                    case Bytecode.LOAD_GLOBAL:
+                        stack[sp++] = ((Bytecode.VariableSite) constants[code[pc++]]).resolve(scope).getValue();
+                        break;
+                    case Bytecode.STORE_GLOBAL:
+                        ((Bytecode.VariableSite) constants[code[pc++]]).resolve(scope).setValue((Environment.PlcObject) stack[--sp]);
+                        break;
+                    case Bytecode.DEFINE_GLOBAL:
+                        scope.defineVariable(((Bytecode.VariableSite) constants[code[pc++]]).getSymbol(scope.getSymbols()), (Environment.PlcObject) stack[--sp]);
+                        break;
+                    case Bytecode.GET_FIELD:
+                        stack[sp - 1] = ((Bytecode.FieldSite) constants[code[pc++]]).get((Environment.PlcObject) stack[sp - 1]);
+                        break;
+                    case Bytecode.SET_FIELD: {
+                        Environment.PlcObject receiver = (Environment.PlcObject) stack[--sp];
+                        ((Bytecode.FieldSite) constants[code[pc++]]).set(receiver, (Environment.PlcObject) stack[--sp]);
+                        break;
+                    }
+                    case Bytecode.ADD: {
+                        Environment.PlcObject right = (Environment.PlcObject) stack[--sp];
+                        stack[sp - 1] = Operators.add((Environment.PlcObject) stack[sp - 1], right);
+                        break;
+                    }
+                    case Bytecode.SUBTRACT: {
+                        Environment.PlcObject right = (Environment.PlcObject) stack[--sp];
+                        stack[sp - 1] = Operators.subtract((Environment.PlcObject) stack[sp - 1], right);
+                        break;
+                    }
+                    case Bytecode.MULTIPLY: {
+                        Environment.PlcObject right = (Environment.PlcObject) stack[--sp];
+                        stack[sp - 1] = Operators.multiply((Environment.PlcObject) stack[sp - 1], right);
+                        break;
+                    }
+                    case Bytecode.DIVIDE: {
+                        Environment.PlcObject right = (Environment.PlcObject) stack[--sp];
+                        stack[sp - 1] = Operators.divide((Environment.PlcObject) stack[sp - 1], right);
+                        break;
+                    }
+                    case Bytecode.LESS: {
+                        Environment.PlcObject right = (Environment.PlcObject) stack[--sp];
+                        stack[sp - 1] = Environment.create(Operators.compare((Environment.PlcObject) stack[sp - 1], right) < 0);
+                        break;
+                    }
+                    case Bytecode.GREATER: {
+                        Environment.PlcObject right = (Environment.PlcObject) stack[--sp];
+                        stack[sp - 1] = Environment.create(Operators.compare((Environment.PlcObject) stack[sp - 1], right) > 0);
+                        break;
+                    }
+                    case Bytecode.LESS_EQUAL: {
+                        Environment.PlcObject right = (Environment.PlcObject) stack[--sp];
+                        stack[sp - 1] = Environment.create(Operators.compare((Environment.PlcObject) stack[sp - 1], right) <= 0);
+                        break;
+                    }
+                    case Bytecode.GREATER_EQUAL: {
+                        Environment.PlcObject right = (Environment.PlcObject) stack[--sp];
+                        stack[sp - 1] = Environment.create(Operators.compare((Environment.PlcObject) stack[sp - 1], right) >= 0);
+                        break;
+                    }
+                    case Bytecode.EQUAL: {
+                        Environment.PlcObject right = (Environment.PlcObject) stack[--sp];
+                        stack[sp - 1] = Environment.create(Operators.compare((Environment.PlcObject) stack[sp - 1], right) == 0);
+                        break;
+                    }
+                    case Bytecode.NOT_EQUAL: {
+                        Environment.PlcObject right = (Environment.PlcObject) stack[--sp];
+                        stack[sp - 1] = Environment.create(Operators.compare((Environment.PlcObject) stack[sp - 1], right) != 0);
+                        break;
+                    }
+                    case Bytecode.AND:
+                        if (Operators.requireType(Boolean.class, (Environment.PlcObject) stack[--sp])) {
+                            pc++;
+                        } else {
+                            stack[sp++] = Environment.FALSE;
+                            pc = code[pc];
+                        }
+                        break;
+                    case Bytecode.OR:
+                        if (Operators.requireType(Boolean.class, (Environment.PlcObject) stack[--sp])) {
+                            stack[sp++] = Environment.TRUE;
+                            pc = code[pc];
+                        } else {
+                            pc++;
+                        }
+                        break;
+                    case Bytecode.BOOLEAN:
+                        stack[sp - 1] = Environment.create(Operators.requireType(Boolean.class, (Environment.PlcObject) stack[sp - 1]));
+                        break;
+                    case Bytecode.JUMP:
+                        pc = code[pc];
+                        break;
+                    case Bytecode.JUMP_IF_FALSE:
+                        if (Operators.requireType(Boolean.class, (Environment.PlcObject) stack[--sp]))
+                            pc++;
+                        else
+                            pc = code[pc];
+                        break;
+                    case Bytecode.ITERATE:
+                        stack[sp - 1] = Operators.requireType(Iterable.class, (Environment.PlcObject) stack[sp - 1]).iterator();
+                        break;
+                    case Bytecode.NEXT: {
+                        Iterator<Object> iterator = (Iterator<Object>) stack[sp - 1];
+                        if (iterator.hasNext()) {
+                            stack[base + code[pc]] = iterator.next();
+                            pc += 2;
+                        } else {
+                            stack[--sp] = null;
+                            pc = code[pc + 1];
+                        }
+                        break;
+                    }
+                    case Bytecode.CALL: {
+                        Environment.Function function = ((Bytecode.CallSite) constants[code[pc]]).resolve(scope);
+                        int count = code[pc + 1];
+                        pc += 2;
+                        this.sp = sp;
+                        Environment.PlcObject result = call(function, stack, sp - count, count);
+                        stack = this.stack;
+                        sp -= count;
+                        stack[sp++] = result;
+                        break;
+                    }
+                    case Bytecode.INVOKE: {
+                        Bytecode.MethodSite site = (Bytecode.MethodSite) constants[code[pc]];
+                        int count = code[pc + 1];
+                        pc += 2;
+                        Environment.PlcObject receiver = (Environment.PlcObject) stack[sp - 1];
+                        this.sp = sp;
+                        Environment.PlcObject result = invoke(site.resolve(receiver.getType()), receiver, stack, sp - 1 - count, count);
+                        stack = this.stack;
+                        sp -= count + 1;
+                        stack[sp++] = result;
+                        break;
+                    }
+                    case Bytecode.CALL_DIRECT: {
+                        Bytecode.Chunk callee = program.getMethods().get(code[pc]);
+                        pcs[depth - 1] = pc + 2;
+                        chunk = callee;
+                        base = enter(chunk, sp);
+                        sp = base + chunk.getLocals();
+                        pc = 0;
+                        code = chunk.getCode();
+                        constants = chunk.getConstants();
+                        stack = this.stack;
+                        break;
+                    }
+                    case Bytecode.RETURN: {
+                        Object result = stack[--sp];
+                        Arrays.fill(stack, base, sp, null);
+                        sp = base;
+                        depth--;
+                        if (depth == entryDepth) {
+                            this.sp = sp;
+                            return (Environment.PlcObject) result;
+                        }
+                        chunk = chunks[depth - 1];
+                        base = bases[depth - 1];
+                        pc = pcs[depth - 1];
+                        code = chunk.getCode();
+                        constants = chunk.getConstants();
+                        stack[sp++] = result;
+                        break;
+                    }
+                    default:
+                        throw new AssertionError(code[pc - 1]);
+                }
+            }
+        } catch (RuntimeException e) {
+            Arrays.fill(this.stack, entryBase, this.stack.length, null);
+            this.sp = entryBase;
+            depth = entryDepth;
+            throw e;
+        }
+    }
+
+    private static Environment.PlcObject call(Environment.Function function, Object[] stack, int start, int count) {
+        switch (count) {
+            case 0:
+                return function.invoke();
+            case 1:
+                return function.invoke((Environment.PlcObject) stack[start]);
+            case 2:
+                return function.invoke((Environment.PlcObject) stack[start], (Environment.PlcObject) stack[start + 1]);
+            case 3:
+                return function.invoke((Environment.PlcObject) stack[start], (Environment.PlcObject) stack[start + 1],
+                        (Environment.PlcObject) stack[start + 2]);
+            default:
+                return function.invoke(arguments(null, stack, start, count));
+        }
+    }
+
+    private static Environment.PlcObject invoke(Environment.Function function, Environment.PlcObject receiver, Object[] stack, int start, int count) {
+        switch (count) {
+            case 0:
+                return function.invoke(receiver);
+            case 1:
+                return function.invoke(receiver, (Environment.PlcObject) stack[start]);
+            case 2:
+                return function.invoke(receiver, (Environment.PlcObject) stack[start], (Environment.PlcObject) stack[start + 1]);
+            default:
+                return function.invoke(arguments(receiver, stack, start, count));
+        }
+    }
+
+    private static List<Environment.PlcObject> arguments(Environment.PlcObject receiver, Object[] stack, int start, int count) {
+        List<Environment.PlcObject> arguments = new ArrayList<>(count + 1);
+        if (receiver != null) {
+            arguments.add(receiver);
+        }
+        for (int i = start; i < start + count; i++) {
+            arguments.add((Environment.PlcObject) stack[i]);
+        }
+        return arguments;
+    }
+
+}
@@ -8,8 +8,10 @@ import org.junit.jupiter.params.provider.MethodSource;
 import java.math.BigDecimal;
 import java.math.BigInteger;
 import java.util.Arrays;
+import java.util.List;
 import java.util.Optional;
 import java.util.function.Consumer;
+import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 /**
@@ -294,6 +296,25 @@ public final class AnalyzerTests {
                                 init(new Ast.Expr.Literal(BigInteger.TEN), ast -> ast.setType(Environment.Type.INTEGER))
                         ), ast -> ast.setType(Environment.Type.INTEGER))
                 ),
+                Arguments.of("String Concatenation Right",
+                        // 10 + "Ben"
+                        new Ast.Expr.Binary("+",
+                                new Ast.Expr.Literal(BigInteger.TEN),
+                                new Ast.Expr.Literal("Ben")
+                        ),
+                        init(new Ast.Expr.Binary("+",
+                                init(new Ast.Expr.Literal(BigInteger.TEN), ast -> ast.setType(Environment.Type.INTEGER)),
+                                init(new Ast.Expr.Literal("Ben"), ast -> ast.setType(Environment.Type.STRING))
+                        ), ast -> ast.setType(Environment.Type.STRING))
+                ),
+                Arguments.of("String Subtraction",
+                        // "Ben" - 10
+                        new Ast.Expr.Binary("-",
+                                new Ast.Expr.Literal("Ben"),
+                                new Ast.Expr.Literal(BigInteger.TEN)
+                        ),
+                        null
+                ),
                 Arguments.of("Integer Decimal Addition",
                         // 1 + 1.0
                         new Ast.Expr.Binary("+",
@@ -381,6 +402,57 @@ public final class AnalyzerTests {
         );
     }
 
+    @ParameterizedTest(name = "{0}")
+    @MethodSource
+    public void testPurity(String test, List<Ast.Method> methods, List<Boolean> expected) {
+        Purity.classify(methods);
+        Assertions.assertEquals(expected, methods.stream().map(Ast.Method::isPure).collect(Collectors.toList()));
+    }
+
+    private static Stream<Arguments> testPurity() {
+        return Stream.of(
+                Arguments.of("Recursion", Arrays.asList(
+                        new Ast.Method("f", Arrays.asList("n"), Arrays.asList(
+                                new Ast.Stmt.Return(new Ast.Expr.Function(Optional.empty(), "f", Arrays.asList(
+                                        new Ast.Expr.Access(Optional.empty(), "n")
+                                )))
+                        ))
+                ), Arrays.asList(true)),
+                Arguments.of("Locals", Arrays.asList(
+                        new Ast.Method("f", Arrays.asList("n"), Arrays.asList(
+                                new Ast.Stmt.Declaration("x", Optional.empty(), Optional.of(new Ast.Expr.Access(Optional.empty(), "n"))),
+                                new Ast.Stmt.For("i", new Ast.Expr.Function(Optional.empty(), "range", Arrays.asList(
+                                        new Ast.Expr.Literal(BigInteger.ZERO),
+                                        new Ast.Expr.Access(Optional.empty(), "n")
+                                )), Arrays.asList(
+                                        new Ast.Stmt.Assignment(new Ast.Expr.Access(Optional.empty(), "x"), new Ast.Expr.Access(Optional.empty(), "i"))
+                                )),
+                                new Ast.Stmt.Return(new Ast.Expr.Access(Optional.empty(), "x"))
+                        ))
+                ), Arrays.asList(true)),
+                Arguments.of("Field Read", Arrays.asList(
+                        new Ast.Method("f", Arrays.asList(), Arrays.asList(
+                                new Ast.Stmt.Return(new Ast.Expr.Access(Optional.empty(), "field"))
+                        ))
+                ), Arrays.asList(false)),
+                Arguments.of("Field Write", Arrays.asList(
+                        new Ast.Method("f", Arrays.asList("n"), Arrays.asList(
+                                new Ast.Stmt.Assignment(new Ast.Expr.Access(Optional.empty(), "field"), new Ast.Expr.Access(Optional.empty(), "n"))
+                        ))
+                ), Arrays.asList(false)),
+                Arguments.of("Impure Callee", Arrays.asList(
+                        new Ast.Method("f", Arrays.asList(), Arrays.asList(
+                                new Ast.Stmt.Expression(new Ast.Expr.Function(Optional.empty(), "g", Arrays.asList()))
+                        )),
+                        new Ast.Method("g", Arrays.asList(), Arrays.asList(
+                                new Ast.Stmt.Expression(new Ast.Expr.Function(Optional.empty(), "print", Arrays.asList(
+                                        new Ast.Expr.Literal("g")
+                                )))
+                        ))
+                ), Arrays.asList(false, false))
+        );
+    }
+
     /**
      * Helper function for tests. If {@param expected} is {@code null}, analysis
      * is expected to throw a {@link RuntimeException}.
@@ -0,0 +1,780 @@
+package plc.project;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+final class ClosureCompilerTests {
+
+    @ParameterizedTest
+    @MethodSource
+    void testSource(String test, Ast.Source ast, Object expected) {
+        test(ast, expected, new Scope(null));
+    }
+
+    private static Stream<Arguments> testSource() {
+        return Stream.of(
+                Arguments.of("Main", new Ast.Source(
+                        Arrays.asList(),
+                        Arrays.asList(new Ast.Method("main", Arrays.asList(), Arrays.asList(
+                                new Ast.Stmt.Return(new Ast.Expr.Literal(BigInteger.ZERO)))
+                        ))
+                ), BigInteger.ZERO),
+                Arguments.of("Fields & No Return", new Ast.Source(
+                        Arrays.asList(
+                                new Ast.Field("x", Optional.of(new Ast.Expr.Literal(BigInteger.ONE))),
+                                new Ast.Field("y", Optional.of(new Ast.Expr.Literal(BigInteger.TEN)))
+                        ),
+                        Arrays.asList(new Ast.Method("main", Arrays.asList(), Arrays.asList(
+                                new Ast.Stmt.Expression(new Ast.Expr.Binary("+",
+                                        new Ast.Expr.Access(Optional.empty(), "x"),
+                                        new Ast.Expr.Access(Optional.empty(), "y")                                ))
+                        )))
+                ), Environment.NIL.getValue())
+        );
+    }
+
+    @ParameterizedTest
+    @MethodSource
+    void testField(String test, Ast.Field ast, Object expected) {
+        Scope scope = test(ast, Environment.NIL.getValue(), new Scope(null));
+        Assertions.assertEquals(expected, scope.lookupVariable(ast.getName()).getValue().getValue());
+    }
+
+    private static Stream<Arguments> testField() {
+        return Stream.of(
+                Arguments.of("Declaration", new Ast.Field("name", Optional.empty()), Environment.NIL.getValue()),
+                Arguments.of("Initialization", new Ast.Field("name", Optional.of(new Ast.Expr.Literal(BigInteger.ONE))), BigInteger.ONE)
+        );
+    }
+
+    @ParameterizedTest
+    @MethodSource
+    void testMethod(String test, Ast.Method ast, List<Environment.PlcObject> args, Object expected) {
+        Scope scope = test(ast, Environment.NIL.getValue(), new Scope(null));
+        Assertions.assertEquals(expected, scope.lookupFunction(ast.getName(), args.size()).invoke(args).getValue());
+    }
+
+    private static Stream<Arguments> testMethod() {
+        return Stream.of(
+                Arguments.of("Main",
+                        new Ast.Method("main", Arrays.asList(), Arrays.asList(
+                                new Ast.Stmt.Return(new Ast.Expr.Literal(BigInteger.ZERO)))
+                        ),
+                        Arrays.asList(),
+                        BigInteger.ZERO
+                ),
+                Arguments.of("Arguments",
+                        new Ast.Method("main", Arrays.asList("x"), Arrays.asList(
+                                new Ast.Stmt.Return(new Ast.Expr.Binary("*",
+                                        new Ast.Expr.Access(Optional.empty(), "x"),
+                                        new Ast.Expr.Access(Optional.empty(), "x")
+                                ))
+                        )),
+                        Arrays.asList(Environment.create(BigInteger.TEN)),
+                        BigInteger.valueOf(100)
+                )
+        );
+    }
+
+    @Test
+    void testExpressionStatement() {
+        PrintStream sysout = System.out;
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        System.setOut(new PrintStream(out));
+        try {
+            test(new Ast.Stmt.Expression(
+                    new Ast.Expr.Function(Optional.empty(), "print", Arrays.asList(new Ast.Expr.Literal("Hello, World!")))
+            ), Environment.NIL.getValue(), new Scope(null));
+            Assertions.assertEquals("Hello, World!" + System.lineSeparator(), out.toString());
+        } finally {
+            System.setOut(sysout);
+        }
+    }
+
+    @ParameterizedTest
+    @MethodSource
+    void testDeclarationStatement(String test, Ast.Stmt.Declaration ast, Object expected) {
+        Scope scope = test(ast, Environment.NIL.getValue(), new Scope(null));
+        Assertions.assertEquals(expected, scope.lookupVariable(ast.getName()).getValue().getValue());
+    }
+
+    private static Stream<Arguments> testDeclarationStatement() {
+        return Stream.of(
+                Arguments.of("Declaration",
+                        new Ast.Stmt.Declaration("name", Optional.empty()),
+                        Environment.NIL.getValue()
+                ),
+                Arguments.of("Initialization",
+                        new Ast.Stmt.Declaration("name", Optional.of(new Ast.Expr.Literal(BigInteger.ONE))),
+                        BigInteger.ONE
+                )
+        );
+    }
+
+    @Test
+    void testVariableAssignmentStatement() {
+        Scope scope = new Scope(null);
+        scope.defineVariable("variable", Environment.create("variable"));
+        test(new Ast.Stmt.Assignment(
+                new Ast.Expr.Access(Optional.empty(),"variable"),
+                new Ast.Expr.Literal(BigInteger.ONE)
+        ), Environment.NIL.getValue(), scope);
+        Assertions.assertEquals(BigInteger.ONE, scope.lookupVariable("variable").getValue().getValue());
+    }
+
+    @Test
+    void testFieldAssignmentStatement() {
+        Scope scope = new Scope(null);
+        Scope object = new Scope(null);
+        object.defineVariable("field", Environment.create("object.field"));
+        scope.defineVariable("object", new Environment.PlcObject(object, "object"));
+        test(new Ast.Stmt.Assignment(
+                new Ast.Expr.Access(Optional.of(new Ast.Expr.Access(Optional.empty(), "object")),"field"),
+                new Ast.Expr.Literal(BigInteger.ONE)
+        ), Environment.NIL.getValue(), scope);
+        Assertions.assertEquals(BigInteger.ONE, object.lookupVariable("field").getValue().getValue());
+    }
+
+    @ParameterizedTest
+    @MethodSource
+    void testIfStatement(String test, Ast.Stmt.If ast, Object expected) {
+        Scope scope = new Scope(null);
+        scope.defineVariable("num", Environment.NIL);
+        test(ast, Environment.NIL.getValue(), scope);
+        Assertions.assertEquals(expected, scope.lookupVariable("num").getValue().getValue());
+    }
+
+    private static Stream<Arguments> testIfStatement() {
+        return Stream.of(
+                Arguments.of("True Condition",
+                        new Ast.Stmt.If(
+                                new Ast.Expr.Literal(true),
+                                Arrays.asList(new Ast.Stmt.Assignment(new Ast.Expr.Access(Optional.empty(),"num"), new Ast.Expr.Literal(BigInteger.ONE))),
+                                Arrays.asList()
+                        ),
+                        BigInteger.ONE
+                ),
+                Arguments.of("False Condition",
+                        new Ast.Stmt.If(
+                                new Ast.Expr.Literal(false),
+                                Arrays.asList(),
+                                Arrays.asList(new Ast.Stmt.Assignment(new Ast.Expr.Access(Optional.empty(),"num"), new Ast.Expr.Literal(BigInteger.TEN)))
+                        ),
+                        BigInteger.TEN
+                )
+        );
+    }
+
+    @Test
+    void testForStatement() {
+        Scope scope = new Scope(null);
+        scope.defineVariable("sum", Environment.create(BigInteger.ZERO));
+        scope.defineVariable("list", Environment.create(IntStream.range(0, 5)
+                .mapToObj(i -> Environment.create(BigInteger.valueOf(i)))
+                .collect(Collectors.toList())));
+        test(new Ast.Stmt.For("num",
+                new Ast.Expr.Access(Optional.empty(), "list"),
+                Arrays.asList(new Ast.Stmt.Assignment(
+                        new Ast.Expr.Access(Optional.empty(),"sum"),
+                        new Ast.Expr.Binary("+",
+                                new Ast.Expr.Access(Optional.empty(),"sum"),
+                                new Ast.Expr.Access(Optional.empty(),"num")
+                        )
+                ))
+        ), Environment.NIL.getValue(), scope);
+        Assertions.assertEquals(BigInteger.TEN, scope.lookupVariable("sum").getValue().getValue());
+    }
+
+    @Test
+    void testRange() {
+        Scope scope = new Scope(null);
+        scope.defineVariable("sum", Environment.create(BigInteger.ZERO));
+        test(new Ast.Stmt.For("num",
+                new Ast.Expr.Function(Optional.empty(), "range", Arrays.asList(
+                        new Ast.Expr.Literal(BigInteger.TEN),
+                        new Ast.Expr.Literal(BigInteger.ZERO),
+                        new Ast.Expr.Literal(BigInteger.valueOf(-3))
+                )),
+                Arrays.asList(new Ast.Stmt.Assignment(
+                        new Ast.Expr.Access(Optional.empty(), "sum"),
+                        new Ast.Expr.Binary("+",
+                                new Ast.Expr.Access(Optional.empty(), "sum"),
+                                new Ast.Expr.Access(Optional.empty(), "num")
+                        )
+                ))
+        ), Environment.NIL.getValue(), scope);
+        Assertions.assertEquals(BigInteger.valueOf(22), scope.lookupVariable("sum").getValue().getValue());
+
+        // FOR i IN range(0, 2000) DO sum = sum + i; END
+        // FOR i IN range(0, 3) DO i = i * 10; sum = sum + i; END
+        Ast.Source source = new Ast.Source(Arrays.asList(), Arrays.asList(
+                new Ast.Method("main", Arrays.asList(), Arrays.asList(
+                        new Ast.Stmt.Declaration("sum", Optional.of(new Ast.Expr.Literal(BigInteger.ZERO))),
+                        new Ast.Stmt.For("i",
+                                new Ast.Expr.Function(Optional.empty(), "range", Arrays.asList(
+                                        new Ast.Expr.Literal(BigInteger.ZERO),
+                                        new Ast.Expr.Literal(BigInteger.valueOf(2000))
+                                )),
+                                Arrays.asList(new Ast.Stmt.Assignment(
+                                        new Ast.Expr.Access(Optional.empty(), "sum"),
+                                        new Ast.Expr.Binary("+",
+                                                new Ast.Expr.Access(Optional.empty(), "sum"),
+                                                new Ast.Expr.Access(Optional.empty(), "i")
+                                        )
+                                ))
+                        ),
+                        new Ast.Stmt.For("i",
+                                new Ast.Expr.Function(Optional.empty(), "range", Arrays.asList(
+                                        new Ast.Expr.Literal(BigInteger.ZERO),
+                                        new Ast.Expr.Literal(BigInteger.valueOf(3))
+                                )),
+                                Arrays.asList(
+                                        new Ast.Stmt.Assignment(
+                                                new Ast.Expr.Access(Optional.empty(), "i"),
+                                                new Ast.Expr.Binary("*",
+                                                        new Ast.Expr.Access(Optional.empty(), "i"),
+                                                        new Ast.Expr.Literal(BigInteger.TEN)
+                                                )
+                                        ),
+                                        new Ast.Stmt.Assignment(
+                                                new Ast.Expr.Access(Optional.empty(), "sum"),
+                                                new Ast.Expr.Binary("+",
+                                                        new Ast.Expr.Access(Optional.empty(), "sum"),
+                                                        new Ast.Expr.Access(Optional.empty(), "i")
+                                                )
+                                        )
+                                )
+                        ),
+                        new Ast.Stmt.Return(new Ast.Expr.Access(Optional.empty(), "sum"))
+                ))
+        ));
+        Assertions.assertEquals(BigInteger.valueOf(1999030), new ClosureCompiler(new Scope(null)).execute(source).getValue());
+    }
+
+    @Test
+    void testWhileStatement() {
+        Scope scope = new Scope(null);
+        scope.defineVariable("num", Environment.create(BigInteger.ZERO));
+        test(new Ast.Stmt.While(
+                new Ast.Expr.Binary("<",
+                        new Ast.Expr.Access(Optional.empty(),"num"),
+                        new Ast.Expr.Literal(BigInteger.TEN)
+                ),
+                Arrays.asList(new Ast.Stmt.Assignment(
+                        new Ast.Expr.Access(Optional.empty(),"num"),
+                        new Ast.Expr.Binary("+",
+                                new Ast.Expr.Access(Optional.empty(),"num"),
+                                new Ast.Expr.Literal(BigInteger.ONE)
+                        )
+                ))
+        ),Environment.NIL.getValue(), scope);
+        Assertions.assertEquals(BigInteger.TEN, scope.lookupVariable("num").getValue().getValue());
+    }
+
+    @ParameterizedTest
+    @MethodSource
+    void testLiteralExpression(String test, Ast ast, Object expected) {
+        test(ast, expected, new Scope(null));
+    }
+
+    private static Stream<Arguments> testLiteralExpression() {
+        return Stream.of(
+                Arguments.of("Nil", new Ast.Expr.Literal(null), Environment.NIL.getValue()), //remember, special case
+                Arguments.of("Boolean", new Ast.Expr.Literal(true), true),
+                Arguments.of("Integer", new Ast.Expr.Literal(BigInteger.ONE), BigInteger.ONE),
+                Arguments.of("Decimal", new Ast.Expr.Literal(BigDecimal.ONE), BigDecimal.ONE),
+                Arguments.of("Character", new Ast.Expr.Literal('c'), 'c'),
+                Arguments.of("String", new Ast.Expr.Literal("string"), "string")
+        );
+    }
+
+    @ParameterizedTest
+    @MethodSource
+    void testGroupExpression(String test, Ast ast, Object expected) {
+        test(ast, expected, new Scope(null));
+    }
+
+    private static Stream<Arguments> testGroupExpression() {
+        return Stream.of(
+                Arguments.of("Literal", new Ast.Expr.Group(new Ast.Expr.Literal(BigInteger.ONE)), BigInteger.ONE),
+                Arguments.of("Binary",
+                        new Ast.Expr.Group(new Ast.Expr.Binary("+",
+                                new Ast.Expr.Literal(BigInteger.ONE),
+                                new Ast.Expr.Literal(BigInteger.TEN)
+                        )),
+                        BigInteger.valueOf(11)
+                )
+        );
+    }
+
+    @ParameterizedTest
+    @MethodSource
+    void testBinaryExpression(String test, Ast ast, Object expected) {
+        test(ast, expected, new Scope(null));
+    }
+
+    private static Stream<Arguments> testBinaryExpression() {
+        return Stream.of(
+                Arguments.of("And",
+                        new Ast.Expr.Binary("AND",
+                                new Ast.Expr.Literal(true),
+                                new Ast.Expr.Literal(false)
+                        ),
+                        false
+                ),
+                Arguments.of("Or (Short Circuit)",
+                        new Ast.Expr.Binary("OR",
+                                new Ast.Expr.Literal(true),
+                                new Ast.Expr.Access(Optional.empty(), "undefined")
+                        ),
+                        true
+                ),
+                Arguments.of("Less Than",
+                        new Ast.Expr.Binary("<",
+                                new Ast.Expr.Literal(BigInteger.ONE),
+                                new Ast.Expr.Literal(BigInteger.TEN)
+                        ),
+                        true
+                ),
+                Arguments.of("Greater Than or Equal",
+                        new Ast.Expr.Binary(">=",
+                                new Ast.Expr.Literal(BigInteger.ONE),
+                                new Ast.Expr.Literal(BigInteger.TEN)
+                        ),
+                        false
+                ),
+                Arguments.of("Equal",
+                        new Ast.Expr.Binary("==",
+                                new Ast.Expr.Literal(BigInteger.ONE),
+                                new Ast.Expr.Literal(BigInteger.TEN)
+                        ),
+                        false
+                ),
+                Arguments.of("Concatenation",
+                        new Ast.Expr.Binary("+",
+                                new Ast.Expr.Literal("a"),
+                                new Ast.Expr.Literal("b")
+                        ),
+                        "ab"
+                ),
+                Arguments.of("Addition",
+                        new Ast.Expr.Binary("+",
+                                new Ast.Expr.Literal(BigInteger.ONE),
+                                new Ast.Expr.Literal(BigInteger.TEN)
+                        ),
+                        BigInteger.valueOf(11)
+                ),
+                Arguments.of("Division",
+                        new Ast.Expr.Binary("/",
+                                new Ast.Expr.Literal(new BigDecimal("1.2")),
+                                new Ast.Expr.Literal(new BigDecimal("3.4"))
+                        ),
+                        new BigDecimal("0.4")
+                )
+        );
+    }
+
+    @ParameterizedTest
+    @MethodSource
+    void testAccessExpression(String test, Ast ast, Object expected) {
+        Scope scope = new Scope(null);
+        scope.defineVariable("variable", Environment.create("variable"));
+        Scope object = new Scope(null);
+        object.defineVariable("field", Environment.create("object.field"));
+        scope.defineVariable("object", new Environment.PlcObject(object, "object"));
+        test(ast, expected, scope);
+    }
+
+    private static Stream<Arguments> testAccessExpression() {
+        return Stream.of(
+                Arguments.of("Variable",
+                        new Ast.Expr.Access(Optional.empty(), "variable"),
+                        "variable"
+                ),
+                Arguments.of("Field",
+                        new Ast.Expr.Access(Optional.of(new Ast.Expr.Access(Optional.empty(), "object")), "field"),
+                        "object.field"
+                )
+        );
+    }
+
+    @ParameterizedTest
+    @MethodSource
+    void testFunctionExpression(String test, Ast ast, Object expected) {
+        Scope scope = new Scope(null);
+        scope.defineFunction("function", 0, args -> Environment.create("function"));
+        Scope object = new Scope(null);
+        object.defineFunction("method", 1, args -> Environment.create("object.method"));
+        scope.defineVariable("object", new Environment.PlcObject(object, "object"));
+        test(ast, expected, scope);
+    }
+
+    private static Stream<Arguments> testFunctionExpression() {
+        return Stream.of(
+                Arguments.of("Function",
+                        new Ast.Expr.Function(Optional.empty(), "function", Arrays.asList()),
+                        "function"
+                ),
+                Arguments.of("Method",
+                        new Ast.Expr.Function(Optional.of(new Ast.Expr.Access(Optional.empty(), "object")), "method", Arrays.asList()),
+                        "object.method"
+                ),
+                Arguments.of("Print",
+                        new Ast.Expr.Function(Optional.empty(), "print", Arrays.asList(new Ast.Expr.Literal("Hello, World!"))),
+                        Environment.NIL.getValue()
+                )
+        );
+    }
+
+    @ParameterizedTest
+    @MethodSource
+    void testLinking(String test, Ast.Source ast, Object expected) {
+        test(ast, expected, new Scope(null));
+    }
+
+    private static Stream<Arguments> testLinking() {
+        return Stream.of(
+                Arguments.of("Recursion", new Ast.Source(
+                        Arrays.asList(),
+                        Arrays.asList(
+                                new Ast.Method("factorial", Arrays.asList("n"), Arrays.asList(
+                                        new Ast.Stmt.If(
+                                                new Ast.Expr.Binary("<=",
+                                                        new Ast.Expr.Access(Optional.empty(), "n"),
+                                                        new Ast.Expr.Literal(BigInteger.ONE)
+                                                ),
+                                                Arrays.asList(new Ast.Stmt.Return(new Ast.Expr.Literal(BigInteger.ONE))),
+                                                Arrays.asList()
+                                        ),
+                                        new Ast.Stmt.Return(new Ast.Expr.Binary("*",
+                                                new Ast.Expr.Access(Optional.empty(), "n"),
+                                                new Ast.Expr.Function(Optional.empty(), "factorial", Arrays.asList(
+                                                        new Ast.Expr.Binary("-",
+                                                                new Ast.Expr.Access(Optional.empty(), "n"),
+                                                                new Ast.Expr.Literal(BigInteger.ONE)
+                                                        )
+                                                ))
+                                        ))
+                                )),
+                                new Ast.Method("main", Arrays.asList(), Arrays.asList(
+                                        new Ast.Stmt.Return(new Ast.Expr.Function(Optional.empty(), "factorial", Arrays.asList(
+                                                new Ast.Expr.Literal(BigInteger.valueOf(5))
+                                        )))
+                                ))
+                        )
+                ), BigInteger.valueOf(120)),
+                Arguments.of("Return From Loop", new Ast.Source(
+                        Arrays.asList(new Ast.Field("limit", Optional.of(new Ast.Expr.Literal(BigInteger.valueOf(3))))),
+                        Arrays.asList(new Ast.Method("main", Arrays.asList(), Arrays.asList(
+                                new Ast.Stmt.Declaration("i", Optional.of(new Ast.Expr.Literal(BigInteger.ZERO))),
+                                new Ast.Stmt.While(new Ast.Expr.Literal(true), Arrays.asList(
+                                        new Ast.Stmt.Declaration("next", Optional.of(new Ast.Expr.Binary("+",
+                                                new Ast.Expr.Access(Optional.empty(), "i"),
+                                                new Ast.Expr.Literal(BigInteger.ONE)
+                                        ))),
+                                        new Ast.Stmt.If(
+                                                new Ast.Expr.Binary("==",
+                                                        new Ast.Expr.Access(Optional.empty(), "next"),
+                                                        new Ast.Expr.Access(Optional.empty(), "limit")
+                                                ),
+                                                Arrays.asList(new Ast.Stmt.Return(new Ast.Expr.Access(Optional.empty(), "next"))),
+                                                Arrays.asList()
+                                        ),
+                                        new Ast.Stmt.Assignment(
+                                                new Ast.Expr.Access(Optional.empty(), "i"),
+                                                new Ast.Expr.Access(Optional.empty(), "next")
+                                        )
+                                ))
+                        )))
+                ), BigInteger.valueOf(3)),
+                Arguments.of("Redefined Local", new Ast.Source(
+                        Arrays.asList(),
+                        Arrays.asList(new Ast.Method("main", Arrays.asList(), Arrays.asList(
+                                new Ast.Stmt.Declaration("x", Optional.empty()),
+                                new Ast.Stmt.Declaration("x", Optional.empty())
+                        )))
+                ), null)
+        );
+    }
+
+    @Test
+    void testRepeatedExecution() {
+        ClosureCompiler compiler = new ClosureCompiler(new Scope(null));
+        compiler.getScope().defineVariable("num", Environment.create(BigInteger.ZERO));
+        ClosureCompiler.Program program = compiler.compile(new Ast.Stmt.Assignment(
+                new Ast.Expr.Access(Optional.empty(), "num"),
+                new Ast.Expr.Binary("+",
+                        new Ast.Expr.Access(Optional.empty(), "num"),
+                        new Ast.Expr.Literal(BigInteger.ONE)
+                )
+        ));
+        for (int i = 0; i < 3; i++) {
+            program.execute();
+        }
+        Assertions.assertEquals(BigInteger.valueOf(3), compiler.getScope().lookupVariable("num").getValue().getValue());
+    }
+
+    @Test
+    void testCompiledProgram() throws InterruptedException {
+        ClosureCompiler compiler = new ClosureCompiler(new Scope(null));
+        CompiledProgram program = compiler.compileProgram(new Ast.Source(
+                Arrays.asList(new Ast.Field("count", Optional.of(new Ast.Expr.Literal(BigInteger.ZERO)))),
+                Arrays.asList(
+                        new Ast.Method("increment", Arrays.asList("n"), Arrays.asList(
+                                new Ast.Stmt.Assignment(
+                                        new Ast.Expr.Access(Optional.empty(), "count"),
+                                        new Ast.Expr.Binary("+",
+                                                new Ast.Expr.Access(Optional.empty(), "count"),
+                                                new Ast.Expr.Access(Optional.empty(), "n")
+                                        )
+                                ),
+                                new Ast.Stmt.Return(new Ast.Expr.Access(Optional.empty(), "count"))
+                        )),
+                        new Ast.Method("main", Arrays.asList(), Arrays.asList(
+                                new Ast.Stmt.Return(new Ast.Expr.Function(Optional.empty(), "increment", Arrays.asList(
+                                        new Ast.Expr.Literal(BigInteger.TEN)
+                                )))
+                        ))
+                )
+        ));
+        BigInteger[] results = new BigInteger[8];
+        Thread[] threads = new Thread[results.length];
+        for (int i = 0; i < threads.length; i++) {
+            int index = i;
+            threads[i] = new Thread(() -> {
+                ExecutionContext context = program.createContext();
+                for (int j = 0; j < 1000; j++) {
+                    context.invoke("increment", Environment.create(BigInteger.ONE));
+                }
+                results[index] = (BigInteger) context.getField("count").getValue();
+            });
+            threads[i].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        for (BigInteger result : results) {
+            Assertions.assertEquals(BigInteger.valueOf(1000), result);
+        }
+        Assertions.assertEquals(BigInteger.TEN, program.execute().getValue());
+        Assertions.assertThrows(RuntimeException.class, () -> compiler.getScope().lookupVariable("count"));
+        Assertions.assertThrows(RuntimeException.class, () -> program.createContext().invoke("undefined"));
+    }
+
+    @Test
+    void testBudget() {
+        CompiledProgram program = new ClosureCompiler(new Scope(null)).compileProgram(new Ast.Source(Arrays.asList(), Arrays.asList(
+                new Ast.Method("main", Arrays.asList(), Arrays.asList(
+                        new Ast.Stmt.While(new Ast.Expr.Literal(true), Arrays.asList())
+                ))
+        )));
+        ResourceBudget fuel = new ResourceBudget(10000);
+        RuntimeException exception = Assertions.assertThrows(RuntimeException.class, () -> program.execute(fuel));
+        Assertions.assertEquals("The fuel limit of 10000 was exceeded.", exception.getMessage());
+        Assertions.assertEquals(10000L, fuel.getFuelUsed());
+
+        ResourceBudget interrupted = new ResourceBudget(ResourceBudget.UNLIMITED);
+        interrupted.interrupt();
+        exception = Assertions.assertThrows(RuntimeException.class, () -> program.execute(interrupted));
+        Assertions.assertEquals("The execution was interrupted.", exception.getMessage());
+    }
+
+    @Test
+    void testBudgetOnAnotherThread() throws InterruptedException {
+        CompiledProgram program = new ClosureCompiler(new Scope(null)).compileProgram(new Ast.Source(Arrays.asList(), Arrays.asList(
+                new Ast.Method("main", Arrays.asList(), Arrays.asList(
+                        new Ast.Stmt.While(new Ast.Expr.Literal(true), Arrays.asList())
+                ))
+        )));
+        // the creating thread has used far more CPU time than the running one
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        long spun = threads.getCurrentThreadCpuTime() + Duration.ofMillis(500).toNanos();
+        while (threads.isCurrentThreadCpuTimeSupported() && threads.getCurrentThreadCpuTime() < spun) {
+            Thread.onSpinWait();
+        }
+        ResourceBudget budget = new ResourceBudget(ResourceBudget.UNLIMITED, Duration.ofMillis(50), Duration.ofSeconds(10));
+        ExecutionContext context = program.createContext(budget);
+        RuntimeException[] exception = new RuntimeException[1];
+        Thread thread = new Thread(() -> exception[0] = Assertions.assertThrows(RuntimeException.class, context::execute));
+        thread.start();
+        thread.join();
+        Assertions.assertEquals("The CPU time limit of 50ms was exceeded.", exception[0].getMessage());
+        Assertions.assertTrue(budget.getWallTime().compareTo(Duration.ofMillis(400)) < 0, budget.toString());
+    }
+
+    @Test
+    void testGlobalShadowing() {
+        Scope parent = new Scope(null);
+        parent.defineVariable("x", Environment.create(BigInteger.ONE));
+        ClosureCompiler compiler = new ClosureCompiler(parent);
+        ClosureCompiler.Program program = compiler.compile(new Ast.Expr.Access(Optional.empty(), "x"));
+        Assertions.assertEquals(BigInteger.ONE, program.execute().getValue());
+        int version = compiler.getScope().getVariableVersion();
+        new Scope(null).defineVariable("x", Environment.NIL);
+        Assertions.assertEquals(version, compiler.getScope().getVariableVersion());
+        compiler.getScope().defineVariable("x", Environment.create(BigInteger.TEN));
+        Assertions.assertEquals(BigInteger.TEN, program.execute().getValue());
+        Assertions.assertTrue(parent.getVariableVersion() == compiler.getScope().getVariableVersion());
+    }
+
+    @Test
+    void testSpecialization() {
+        ClosureCompiler compiler = new ClosureCompiler(new Scope(null));
+        Environment.Variable x = compiler.getScope().defineVariable("x", "x", Environment.Type.ANY, Environment.create(BigInteger.ONE));
+        Environment.Variable y = compiler.getScope().defineVariable("y", "y", Environment.Type.ANY, Environment.create(BigInteger.TEN));
+        ClosureCompiler.Program program = compiler.compile(new Ast.Expr.Binary("+",
+                new Ast.Expr.Access(Optional.empty(), "x"),
+                new Ast.Expr.Access(Optional.empty(), "y")
+        ));
+        Assertions.assertEquals(BigInteger.valueOf(11), program.execute().getValue());
+        x.setValue(Environment.create("x"));
+        y.setValue(Environment.create("y"));
+        Assertions.assertEquals("xy", program.execute().getValue());
+        y.setValue(Environment.create(BigInteger.ONE));
+        Assertions.assertThrows(RuntimeException.class, program::execute);
+        x.setValue(Environment.create(new BigDecimal("1.5")));
+        y.setValue(Environment.create(new BigDecimal("2.5")));
+        Assertions.assertEquals(new BigDecimal("4.0"), program.execute().getValue());
+    }
+
+    @Test
+    void testConcurrentSpecialization() throws InterruptedException {
+        CompiledProgram program = new ClosureCompiler(new Scope(null)).compileProgram(new Ast.Source(Arrays.asList(), Arrays.asList(
+                new Ast.Method("add", Arrays.asList("a", "b"), Arrays.asList(
+                        new Ast.Stmt.Return(new Ast.Expr.Binary("+",
+                                new Ast.Expr.Access(Optional.empty(), "a"),
+                                new Ast.Expr.Access(Optional.empty(), "b")
+                        ))
+                ))
+        )));
+        Object[] arguments = {BigInteger.ONE, new BigDecimal("1.5")};
+        Object[] expected = {BigInteger.valueOf(2), new BigDecimal("3.0")};
+        boolean[] correct = new boolean[8];
+        Thread[] threads = new Thread[correct.length];
+        for (int i = 0; i < threads.length; i++) {
+            int index = i;
+            threads[i] = new Thread(() -> {
+                ExecutionContext context = program.createContext();
+                Environment.PlcObject argument = Environment.create(arguments[index % 2]);
+                boolean result = true;
+                for (int j = 0; j < 1000; j++) {
+                    result &= expected[index % 2].equals(context.invoke("add", argument, argument).getValue());
+                }
+                correct[index] = result;
+            });
+            threads[i].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        for (boolean result : correct) {
+            Assertions.assertTrue(result);
+        }
+    }
+
+    @Test
+    void testIntegerSpecialization() {
+        ClosureCompiler compiler = new ClosureCompiler(new Scope(null));
+        Environment.Variable x = compiler.getScope().defineVariable("x", "x", Environment.Type.ANY, Environment.createInteger(1L << 40));
+        Environment.Variable y = compiler.getScope().defineVariable("y", "y", Environment.Type.ANY, Environment.createInteger(3));
+        List<ClosureCompiler.Program> programs = Stream.of("+", "-", "*", "/", "<")
+                .map(operator -> compiler.compile(new Ast.Expr.Binary(operator,
+                        new Ast.Expr.Access(Optional.empty(), "x"),
+                        new Ast.Expr.Access(Optional.empty(), "y")
+                )))
+                .collect(Collectors.toList());
+        BigInteger big = BigInteger.ONE.shiftLeft(40);
+        Object[] expected = {big.add(BigInteger.valueOf(3)), big.subtract(BigInteger.valueOf(3)), big.multiply(BigInteger.valueOf(3)), big.divide(BigInteger.valueOf(3)), false};
+        for (int i = 0; i < programs.size(); i++) {
+            Environment.PlcObject result = programs.get(i).execute();
+            Assertions.assertEquals(expected[i], result.getValue());
+            Assertions.assertEquals(i < 4, result.isLong());
+        }
+        // overflowing longs, and Integers beyond a long, stay specialized
+        x.setValue(Environment.createInteger(Long.MAX_VALUE));
+        Assertions.assertEquals(BigInteger.valueOf(Long.MAX_VALUE).add(BigInteger.valueOf(3)), programs.get(0).execute().getValue());
+        x.setValue(Environment.createInteger(Long.MIN_VALUE));
+        y.setValue(Environment.createInteger(-1));
+        Assertions.assertEquals(BigInteger.valueOf(Long.MIN_VALUE).negate(), programs.get(3).execute().getValue());
+        x.setValue(Environment.create(BigInteger.valueOf(Long.MAX_VALUE).pow(2)));
+        Assertions.assertEquals(BigInteger.valueOf(Long.MAX_VALUE).pow(2).negate(), programs.get(2).execute().getValue());
+        y.setValue(Environment.createInteger(0));
+        Assertions.assertThrows(RuntimeException.class, programs.get(3)::execute);
+    }
+
+    @ParameterizedTest
+    @MethodSource
+    void testArithmetic(ClosureCompiler.Arithmetic arithmetic, Object integer, Object decimal) {
+        Ast.Source overflow = new Ast.Source(Arrays.asList(), Arrays.asList(main(
+                init(new Ast.Stmt.Declaration("x", Optional.of("Integer"), Optional.of(literal(BigInteger.valueOf(Integer.MAX_VALUE), Environment.Type.INTEGER))),
+                        ast -> ast.setVariable(new Environment.Variable("x", "x", Environment.Type.INTEGER, Environment.NIL))),
+                new Ast.Stmt.Return(binary("+", local("x", Environment.Type.INTEGER), literal(BigInteger.ONE, Environment.Type.INTEGER), Environment.Type.INTEGER))
+        )));
+        Environment.PlcObject result = new ClosureCompiler(new Scope(null), arithmetic).execute(overflow);
+        Assertions.assertEquals(integer, result.getValue());
+        Assertions.assertTrue(result.isLong());
+        Ast.Source division = new Ast.Source(Arrays.asList(), Arrays.asList(main(
+                new Ast.Stmt.Return(binary("/", literal(new BigDecimal("1.0"), Environment.Type.DECIMAL), literal(new BigDecimal("3.0"), Environment.Type.DECIMAL), Environment.Type.DECIMAL))
+        )));
+        Assertions.assertEquals(decimal, new ClosureCompiler(new Scope(null), arithmetic).execute(division).getValue());
+    }
+
+    private static Stream<Arguments> testArithmetic() {
+        return Stream.of(
+                Arguments.of(ClosureCompiler.Arithmetic.EXACT, BigInteger.valueOf(2147483648L), new BigDecimal("0.3")),
+                Arguments.of(ClosureCompiler.Arithmetic.PRIMITIVE, BigInteger.valueOf(Integer.MIN_VALUE), BigDecimal.valueOf(1.0 / 3.0))
+        );
+    }
+
+    private static Ast.Method main(Ast.Stmt... statements) {
+        return init(new Ast.Method("main", Arrays.asList(), Arrays.asList(), Optional.empty(), Arrays.asList(statements)),
+                ast -> ast.setFunction(new Environment.Function("main", "main", Arrays.asList(), Environment.Type.ANY, args -> Environment.NIL)));
+    }
+
+    private static Ast.Expr local(String name, Environment.Type type) {
+        return init(new Ast.Expr.Access(Optional.empty(), name),
+                ast -> ast.setVariable(new Environment.Variable(name, name, type, Environment.NIL)));
+    }
+
+    private static Ast.Expr literal(Object value, Environment.Type type) {
+        return init(new Ast.Expr.Literal(value), ast -> ast.setType(type));
+    }
+
+    private static Ast.Expr binary(String operator, Ast.Expr left, Ast.Expr right, Environment.Type type) {
+        return init(new Ast.Expr.Binary(operator, left, right), ast -> ast.setType(type));
+    }
+
+    private static <T> T init(T value, Consumer<T> initializer) {
+        initializer.accept(value);
+        return value;
+    }
+
+    private static Scope test(Ast ast, Object expected, Scope scope) {
+        ClosureCompiler compiler = new ClosureCompiler(scope);
+        if (expected != null) {
+            Assertions.assertEquals(expected, compiler.execute(ast).getValue());
+        } else {
+            Assertions.assertThrows(RuntimeException.class, () -> compiler.execute(ast));
+        }
+        return compiler.getScope();
+    }
+
+}
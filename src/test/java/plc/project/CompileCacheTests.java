@@ -0,0 +1,76 @@
+package plc.project;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+final class CompileCacheTests {
+
+    @Test
+    void testSingleFlight() throws InterruptedException {
+        AtomicInteger compilations = new AtomicInteger();
+        CountDownLatch latch = new CountDownLatch(1);
+        CompileCache<String> cache = new CompileCache<>(10, 1000, source -> {
+            compilations.incrementAndGet();
+            try {
+                latch.await();
+            } catch (InterruptedException e) {
+                throw new RuntimeException(e);
+            }
+            return source.toUpperCase();
+        });
+        String[] results = new String[8];
+        Thread[] threads = new Thread[results.length];
+        for (int i = 0; i < threads.length; i++) {
+            int index = i;
+            threads[i] = new Thread(() -> results[index] = cache.get("source"));
+            threads[i].start();
+        }
+        while (cache.getHits() + cache.getMisses() < threads.length) {
+            Thread.sleep(1);
+        }
+        latch.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        for (String result : results) {
+            Assertions.assertEquals("SOURCE", result);
+        }
+        Assertions.assertEquals(1, compilations.get());
+        Assertions.assertEquals(1L, cache.getMisses());
+        Assertions.assertEquals(7L, cache.getHits());
+    }
+
+    @Test
+    void testEviction() {
+        CompileCache<String> cache = new CompileCache<>(2, 10, source -> source);
+        cache.get("a");
+        cache.get("b");
+        cache.get("a");
+        cache.get("c");
+        Assertions.assertEquals(2, cache.size());
+        Assertions.assertEquals(1L, cache.getEvictions());
+        cache.get("a");
+        Assertions.assertEquals(2L, cache.getHits());
+        cache.get("0123456789");
+        Assertions.assertEquals(1, cache.size());
+        Assertions.assertEquals(10L, cache.getWeight());
+        Assertions.assertEquals(3L, cache.getEvictions());
+    }
+
+    @Test
+    void testError() {
+        AtomicInteger compilations = new AtomicInteger();
+        CompileCache<String> cache = new CompileCache<>(10, 1000, source -> {
+            compilations.incrementAndGet();
+            throw new ParseException("Invalid source.", 0);
+        });
+        Assertions.assertThrows(ParseException.class, () -> cache.get("source"));
+        Assertions.assertThrows(ParseException.class, () -> cache.get("source"));
+        Assertions.assertEquals(2, compilations.get());
+        Assertions.assertEquals(0, cache.size());
+    }
+
+}
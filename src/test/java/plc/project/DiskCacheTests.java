@@ -0,0 +1,98 @@
+package plc.project;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+final class DiskCacheTests {
+
+    private static final String SOURCE = "DEF main(): Integer DO RETURN 0; END";
+
+    @Test
+    void testStore() throws IOException {
+        Path directory = Files.createTempDirectory("plc-cache");
+        try {
+            DiskCache cache = new DiskCache(directory, 1 << 20);
+            Assertions.assertEquals(Optional.empty(), cache.load(SOURCE));
+            DiskCache.Artifacts artifacts = new DiskCache.Artifacts(new Lexer(SOURCE).lex(), "public class Main {}");
+            cache.store(SOURCE, artifacts);
+            SymbolTable symbols = new SymbolTable();
+            DiskCache.Artifacts loaded = new DiskCache(directory, 1 << 20).load(SOURCE, symbols).get();
+            Assertions.assertEquals(artifacts, loaded);
+            Assertions.assertEquals(artifacts.hashCode(), loaded.hashCode());
+            Assertions.assertTrue(symbols == loaded.getTokens().get(1).getSymbol().getTable());
+            Assertions.assertEquals(symbols.lookup("main"), loaded.getTokens().get(1).getSymbol().getId());
+            Assertions.assertEquals(Optional.empty(), new DiskCache(directory, 1 << 20, "0").load(SOURCE));
+            try (Stream<Path> files = Files.list(directory)) {
+                Assertions.assertEquals(1L, files.count());
+            }
+        } finally {
+            delete(directory);
+        }
+    }
+
+    @Test
+    void testCorruption() throws IOException {
+        Path directory = Files.createTempDirectory("plc-cache");
+        try {
+            DiskCache cache = new DiskCache(directory, 1 << 20);
+            cache.store(SOURCE, new DiskCache.Artifacts(new Lexer(SOURCE).lex(), null));
+            try (Stream<Path> files = Files.list(directory)) {
+                Path entry = files.findFirst().get();
+                byte[] bytes = Files.readAllBytes(entry);
+                Files.write(entry, Arrays.copyOf(bytes, bytes.length / 2));
+            }
+            Assertions.assertEquals(Optional.empty(), cache.load(SOURCE));
+        } finally {
+            delete(directory);
+        }
+    }
+
+    @Test
+    void testEviction() throws IOException {
+        Path directory = Files.createTempDirectory("plc-cache");
+        try {
+            DiskCache.Artifacts artifacts = new DiskCache.Artifacts(Arrays.asList(), new String(new char[100]));
+            DiskCache cache = new DiskCache(directory, 250);
+            cache.store("first", artifacts);
+            cache.store("second", artifacts);
+            try (Stream<Path> files = Files.list(directory)) {
+                files.forEach(file -> setTime(file, 0));
+            }
+            cache.load("first");
+            cache.store("third", artifacts);
+            try (Stream<Path> files = Files.list(directory)) {
+                Assertions.assertEquals(2L, files.count());
+            }
+            Assertions.assertTrue(cache.load("first").isPresent());
+            Assertions.assertFalse(cache.load("second").isPresent());
+            Assertions.assertTrue(cache.load("third").isPresent());
+            Assertions.assertTrue(cache.size() <= 250);
+        } finally {
+            delete(directory);
+        }
+    }
+
+    private static void setTime(Path file, long millis) {
+        try {
+            Files.setLastModifiedTime(file, FileTime.fromMillis(millis));
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static void delete(Path directory) throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            files.sorted(Comparator.reverseOrder()).forEach(file -> file.toFile().delete());
+        }
+    }
+
+}
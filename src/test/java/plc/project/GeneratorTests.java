@@ -1,6 +1,7 @@
 package plc.project;
 
 import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.Arguments;
 import org.junit.jupiter.params.provider.MethodSource;
@@ -124,6 +125,85 @@ public class GeneratorTests {
         );
     }
 
+    @ParameterizedTest(name = "{0}")
+    @MethodSource
+    void testForStatement(String test, Ast.Stmt.For ast, String expected) {
+        test(ast, expected);
+    }
+
+    private static Stream<Arguments> testForStatement() {
+        return Stream.of(
+                Arguments.of("Range",
+                        // FOR i IN range(0, n) DO
+                        //     stmt;
+                        // END
+                        new Ast.Stmt.For("i", range(
+                                integer(0),
+                                init(new Ast.Expr.Access(Optional.empty(), "n"), ast -> ast.setVariable(new Environment.Variable("n", "n", Environment.Type.INTEGER, Environment.NIL)))
+                        ), Arrays.asList(new Ast.Stmt.Expression(init(new Ast.Expr.Access(Optional.empty(), "stmt"), ast -> ast.setVariable(new Environment.Variable("stmt", "stmt", Environment.Type.NIL, Environment.NIL)))))),
+                        String.join(System.lineSeparator(),
+                                "for (int i = 0, i$end = n; i < i$end; i++) {",
+                                "    stmt;",
+                                "}"
+                        )
+                ),
+                Arguments.of("Range Step",
+                        // FOR i IN range(10, 0, -2) DO
+                        //     stmt;
+                        // END
+                        new Ast.Stmt.For("i", range(integer(10), integer(0), integer(-2)),
+                                Arrays.asList(new Ast.Stmt.Expression(init(new Ast.Expr.Access(Optional.empty(), "stmt"), ast -> ast.setVariable(new Environment.Variable("stmt", "stmt", Environment.Type.NIL, Environment.NIL)))))),
+                        String.join(System.lineSeparator(),
+                                "for (int i = 10, i$end = 0; i > i$end; i += -2) {",
+                                "    stmt;",
+                                "}"
+                        )
+                )
+        );
+    }
+
+    @Test
+    void testExactArithmetic() {
+        // (x + 1) * y / 2
+        Ast.Expr x = init(new Ast.Expr.Access(Optional.empty(), "x"), ast -> ast.setVariable(new Environment.Variable("x", "x", Environment.Type.INTEGER, Environment.NIL)));
+        Ast.Expr y = init(new Ast.Expr.Access(Optional.empty(), "y"), ast -> ast.setVariable(new Environment.Variable("y", "y", Environment.Type.INTEGER, Environment.NIL)));
+        Ast.Expr sum = init(new Ast.Expr.Group(init(new Ast.Expr.Binary("+", x, integer(1)), ast -> ast.setType(Environment.Type.INTEGER))), ast -> ast.setType(Environment.Type.INTEGER));
+        Ast.Expr product = init(new Ast.Expr.Binary("*", sum, y), ast -> ast.setType(Environment.Type.INTEGER));
+        Ast.Expr ast = init(new Ast.Expr.Binary("/", product, integer(2)), binary -> binary.setType(Environment.Type.INTEGER));
+        StringWriter writer = new StringWriter();
+        new Generator(new PrintWriter(writer), true).visit(ast);
+        Assertions.assertEquals("Math.toIntExact((long) Math.multiplyExact((Math.addExact(x, 1)), y) / 2)", writer.toString());
+    }
+
+    @Test
+    void testForUserRange() {
+        // FOR i IN range(0, n) DO stmt; END, where range is a method of the source
+        Ast.Stmt.For ast = new Ast.Stmt.For("i",
+                init(new Ast.Expr.Function(Optional.empty(), "range", Arrays.asList(integer(0), integer(3))),
+                        call -> call.setFunction(new Environment.Function("range", "range", Arrays.asList(Environment.Type.INTEGER, Environment.Type.INTEGER), Environment.Type.INTEGER_ITERABLE, args -> Environment.NIL))),
+                Arrays.asList(new Ast.Stmt.Expression(init(new Ast.Expr.Access(Optional.empty(), "stmt"), access -> access.setVariable(new Environment.Variable("stmt", "stmt", Environment.Type.NIL, Environment.NIL))))));
+        test(ast, String.join(System.lineSeparator(),
+                "for (int i : range(0, 3)) {",
+                "    stmt;",
+                "}"
+        ));
+    }
+
+    @Test
+    void testForZeroStep() {
+        Ast.Stmt.For ast = new Ast.Stmt.For("i", range(integer(0), integer(10), integer(0)), Arrays.asList());
+        Assertions.assertThrows(RuntimeException.class, () -> new Generator(new PrintWriter(new StringWriter())).visit(ast));
+    }
+
+    private static Ast.Expr range(Ast.Expr... arguments) {
+        Environment.Function function = arguments.length == 2 ? Analyzer.RANGE : Analyzer.RANGE_STEP;
+        return init(new Ast.Expr.Function(Optional.empty(), "range", Arrays.asList(arguments)), ast -> ast.setFunction(function));
+    }
+
+    private static Ast.Expr integer(long value) {
+        return init(new Ast.Expr.Literal(BigInteger.valueOf(value)), ast -> ast.setType(Environment.Type.INTEGER));
+    }
+
     @ParameterizedTest(name = "{0}")
     @MethodSource
     void testBinaryExpression(String test, Ast.Expr.Binary ast, String expected) {
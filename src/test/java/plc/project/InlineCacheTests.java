@@ -0,0 +1,108 @@
+package plc.project;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+
+final class InlineCacheTests {
+
+    @Test
+    void testHit() {
+        Environment.Type type = type(new Scope(Environment.Type.ANY.getScope()));
+        Environment.Function method = define(type.getScope());
+        InlineCache cache = new InlineCache();
+        Assertions.assertTrue(method == lookup(cache, type));
+        Assertions.assertTrue(method == lookup(cache, type));
+        Assertions.assertEquals(1, cache.getMisses());
+    }
+
+    @Test
+    void testPolymorphic() {
+        Scope parent = new Scope(Environment.Type.ANY.getScope());
+        Environment.Function method = define(parent);
+        InlineCache cache = new InlineCache();
+        Environment.Type[] types = new Environment.Type[5];
+        for (int i = 0; i < types.length; i++) {
+            types[i] = type(new Scope(parent));
+        }
+        for (int i = 0; i < 4; i++) {
+            lookup(cache, types[i]);
+        }
+        for (int i = 0; i < 4; i++) {
+            Assertions.assertTrue(method == lookup(cache, types[i]));
+        }
+        Assertions.assertEquals(4, cache.getMisses());
+        Assertions.assertFalse(cache.isMegamorphic());
+        Assertions.assertTrue(method == lookup(cache, types[4]));
+        Assertions.assertTrue(cache.isMegamorphic());
+        Assertions.assertTrue(method == lookup(cache, types[0]));
+        Assertions.assertEquals(6, cache.getMisses());
+    }
+
+    @Test
+    void testInvalidation() {
+        Scope parent = new Scope(Environment.Type.ANY.getScope());
+        Environment.Type type = type(new Scope(parent));
+        Environment.Function inherited = define(parent);
+        InlineCache cache = new InlineCache();
+        Assertions.assertTrue(inherited == lookup(cache, type));
+        Environment.MethodTable table = type.getMethodTable();
+        Assertions.assertTrue(table == type.getMethodTable());
+
+        Environment.Function overridden = define(type.getScope());
+        Assertions.assertTrue(overridden == lookup(cache, type));
+        Assertions.assertEquals(2, cache.getMisses());
+        Assertions.assertFalse(table == type.getMethodTable());
+    }
+
+    @Test
+    void testUnrelatedDefinition() {
+        Environment.Type type = type(new Scope(Environment.Type.ANY.getScope()));
+        Environment.Function method = define(type.getScope());
+        InlineCache cache = new InlineCache();
+        Assertions.assertTrue(method == lookup(cache, type));
+        Environment.MethodTable table = type.getMethodTable();
+
+        define(new Scope(null));
+        define(new Scope(Environment.Type.ANY.getScope()));
+        Builtins.define(new Scope(null));
+        Assertions.assertTrue(method == lookup(cache, type));
+        Assertions.assertEquals(1, cache.getMisses());
+        Assertions.assertTrue(table == type.getMethodTable());
+    }
+
+    @Test
+    void testForeignTable() {
+        Environment.Type type = type(new Scope(Environment.Type.ANY.getScope(), new SymbolTable()));
+        Environment.Function method = define(type.getScope());
+        SymbolTable caller = new SymbolTable();
+        caller.intern("other");
+        InlineCache cache = new InlineCache();
+        Assertions.assertFalse(caller.intern("method") == type.getScope().getSymbols().lookup("method"));
+        Assertions.assertTrue(method == cache.lookup(type, caller, caller.intern("method"), 0));
+        Assertions.assertTrue(method == cache.lookup(type, caller, caller.intern("method"), 0));
+        Assertions.assertEquals(1, cache.getMisses());
+        RuntimeException exception = Assertions.assertThrows(RuntimeException.class,
+                () -> new InlineCache().lookup(type, caller, caller.intern("missing"), 0));
+        Assertions.assertEquals("The function missing/1 is not defined in this scope.", exception.getMessage());
+    }
+
+    /**
+     * Looks up the method named method in the cache, by a symbol of the
+     * type's table.
+     */
+    private static Environment.Function lookup(InlineCache cache, Environment.Type type) {
+        SymbolTable symbols = type.getScope().getSymbols();
+        return cache.lookup(type, symbols, symbols.intern("method"), 0);
+    }
+
+    private static Environment.Type type(Scope scope) {
+        return new Environment.Type("Test", "Test", scope);
+    }
+
+    private static Environment.Function define(Scope scope) {
+        return scope.defineFunction("method", "method", Arrays.asList(Environment.Type.ANY), Environment.Type.ANY, args -> Environment.NIL);
+    }
+
+}
@@ -0,0 +1,87 @@
+package plc.project;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+final class InteropTests {
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource
+    void testStatic(String test, Ast.Expr.Function ast, Object expected) {
+        Scope scope = new Scope(null);
+        Interop.defineStatic(scope, "max", Math.class, "max", long.class, long.class);
+        Interop.defineStatic(scope, "sqrt", Math.class, "sqrt", double.class);
+        Interop.defineStatic(scope, "upper", Character.class, "toUpperCase", char.class);
+        Interop.defineStatic(scope, "parse", Boolean.class, "parseBoolean", String.class);
+        Interop.defineStatic(scope, "valueOf", BigInteger.class, "valueOf", long.class);
+        test(ast, expected, scope);
+    }
+
+    private static Stream<Arguments> testStatic() {
+        return Stream.of(
+                Arguments.of("Integer",
+                        new Ast.Expr.Function(Optional.empty(), "max", Arrays.asList(new Ast.Expr.Literal(BigInteger.ONE), new Ast.Expr.Literal(BigInteger.TEN))),
+                        BigInteger.TEN
+                ),
+                Arguments.of("Decimal",
+                        new Ast.Expr.Function(Optional.empty(), "sqrt", Arrays.asList(new Ast.Expr.Literal(new BigDecimal("2.25")))),
+                        new BigDecimal("1.5")
+                ),
+                Arguments.of("Character",
+                        new Ast.Expr.Function(Optional.empty(), "upper", Arrays.asList(new Ast.Expr.Literal('c'))),
+                        'C'
+                ),
+                Arguments.of("String to Boolean",
+                        new Ast.Expr.Function(Optional.empty(), "parse", Arrays.asList(new Ast.Expr.Literal("true"))),
+                        true
+                ),
+                Arguments.of("Object Return",
+                        new Ast.Expr.Function(Optional.empty(), "valueOf", Arrays.asList(new Ast.Expr.Literal(BigInteger.ONE))),
+                        BigInteger.ONE
+                ),
+                Arguments.of("Invalid Argument",
+                        new Ast.Expr.Function(Optional.empty(), "max", Arrays.asList(new Ast.Expr.Literal("one"), new Ast.Expr.Literal(BigInteger.TEN))),
+                        null
+                )
+        );
+    }
+
+    @Test
+    void testMethod() {
+        Scope type = new Scope(null);
+        Interop.defineMethod(type, "repeat", String.class, "repeat", int.class);
+        Scope scope = new Scope(null);
+        scope.defineVariable("string", new Environment.PlcObject(type, "ab"));
+        test(new Ast.Expr.Function(Optional.of(new Ast.Expr.Access(Optional.empty(), "string")), "repeat", Arrays.asList(
+                new Ast.Expr.Literal(BigInteger.valueOf(3))
+        )), "ababab", scope);
+    }
+
+    @Test
+    void testSignature() {
+        Scope scope = new Scope(null);
+        Environment.Function function = Interop.defineStatic(scope, "max", Math.class, "max", long.class, long.class);
+        Assertions.assertEquals("java.lang.Math.max", function.getJvmName());
+        Assertions.assertEquals(Arrays.asList(Environment.Type.INTEGER, Environment.Type.INTEGER), function.getParameterTypes());
+        Assertions.assertEquals(Environment.Type.INTEGER, function.getReturnType());
+    }
+
+    private static void test(Ast ast, Object expected, Scope scope) {
+        Interpreter interpreter = new Interpreter(scope);
+        if (expected != null) {
+            Assertions.assertEquals(expected, interpreter.visit(ast).getValue());
+        } else {
+            Assertions.assertThrows(RuntimeException.class, () -> interpreter.visit(ast));
+        }
+    }
+
+}
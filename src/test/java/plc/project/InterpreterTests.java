@@ -10,9 +10,12 @@ import java.io.ByteArrayOutputStream;
 import java.io.PrintStream;
 import java.math.BigDecimal;
 import java.math.BigInteger;
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
 import java.util.stream.Stream;
@@ -43,7 +46,20 @@ final class InterpreterTests {
                                         new Ast.Expr.Access(Optional.empty(), "x"),
                                         new Ast.Expr.Access(Optional.empty(), "y")                                ))
                         )))
-                ), Environment.NIL.getValue())
+                ), Environment.NIL.getValue()),
+                Arguments.of("Return In Loop", new Ast.Source(
+                        Arrays.asList(),
+                        Arrays.asList(new Ast.Method("main", Arrays.asList(), Arrays.asList(
+                                new Ast.Stmt.While(new Ast.Expr.Literal(true), Arrays.asList(
+                                        new Ast.Stmt.If(new Ast.Expr.Literal(true),
+                                                Arrays.asList(new Ast.Stmt.Return(new Ast.Expr.Literal(BigInteger.ONE))),
+                                                Arrays.asList()
+                                        ),
+                                        new Ast.Stmt.Return(new Ast.Expr.Literal(BigInteger.TEN))
+                                )),
+                                new Ast.Stmt.Return(new Ast.Expr.Literal(BigInteger.ZERO))
+                        )))
+                ), BigInteger.ONE)
         );
     }
 
@@ -61,6 +77,151 @@ final class InterpreterTests {
         );
     }
 
+    @Test
+    void testTailCall() {
+        Ast.Source ast = new Ast.Source(
+                Arrays.asList(),
+                Arrays.asList(
+                        parity("even", "odd", true),
+                        parity("odd", "even", false),
+                        new Ast.Method("main", Arrays.asList(), Arrays.asList(
+                                new Ast.Stmt.Return(new Ast.Expr.Function(Optional.empty(), "even", Arrays.asList(
+                                        new Ast.Expr.Literal(BigInteger.valueOf(100001))
+                                )))
+                        ))
+                )
+        );
+        test(ast, false, new Scope(null));
+    }
+
+    @Test
+    void testCaughtError() {
+        // DEF fail() DO RETURN divide(1); END, a tail call
+        Ast.Stmt.Return call = new Ast.Stmt.Return(new Ast.Expr.Function(Optional.empty(), "divide", Arrays.asList(
+                new Ast.Expr.Literal(BigInteger.ONE)
+        )));
+        call.setTailCall(true);
+        Ast.Source ast = new Ast.Source(Arrays.asList(), Arrays.asList(
+                new Ast.Method("divide", Arrays.asList("n"), Arrays.asList(
+                        new Ast.Stmt.Return(new Ast.Expr.Binary("/",
+                                new Ast.Expr.Access(Optional.empty(), "n"),
+                                new Ast.Expr.Literal(BigInteger.ZERO)
+                        ))
+                )),
+                new Ast.Method("fail", Arrays.asList(), Arrays.asList(call)),
+                new Ast.Method("main", Arrays.asList(), Arrays.asList(
+                        new Ast.Stmt.Expression(new Ast.Expr.Function(Optional.empty(), "attempt", Arrays.asList())),
+                        new Ast.Stmt.Return(new Ast.Expr.Binary("+",
+                                new Ast.Expr.Function(Optional.empty(), "attempt", Arrays.asList()),
+                                new Ast.Expr.Literal(BigInteger.ONE)
+                        ))
+                ))
+        ));
+        Interpreter interpreter = new Interpreter(new Scope(null));
+        interpreter.getScope().defineFunction("attempt", () -> {
+            try {
+                return interpreter.getScope().lookupFunction("fail", 0).invoke(Arrays.asList());
+            } catch (RuntimeException e) {
+                return Environment.create(BigInteger.TEN);
+            }
+        });
+        Assertions.assertEquals(BigInteger.valueOf(11), interpreter.visit(ast).getValue());
+        Assertions.assertEquals(BigInteger.valueOf(11), interpreter.getScope().lookupFunction("main", 0).invoke(Arrays.asList()).getValue());
+    }
+
+    @Test
+    void testMemoization() {
+        Ast.Method fibonacci = new Ast.Method("fibonacci", Arrays.asList("n"), Arrays.asList(
+                new Ast.Stmt.If(
+                        new Ast.Expr.Binary("<",
+                                new Ast.Expr.Access(Optional.empty(), "n"),
+                                new Ast.Expr.Literal(BigInteger.valueOf(2))
+                        ),
+                        Arrays.asList(new Ast.Stmt.Return(new Ast.Expr.Access(Optional.empty(), "n"))),
+                        Arrays.asList()
+                ),
+                new Ast.Stmt.Return(new Ast.Expr.Binary("+",
+                        new Ast.Expr.Function(Optional.empty(), "fibonacci", Arrays.asList(new Ast.Expr.Binary("-",
+                                new Ast.Expr.Access(Optional.empty(), "n"),
+                                new Ast.Expr.Literal(BigInteger.ONE)
+                        ))),
+                        new Ast.Expr.Function(Optional.empty(), "fibonacci", Arrays.asList(new Ast.Expr.Binary("-",
+                                new Ast.Expr.Access(Optional.empty(), "n"),
+                                new Ast.Expr.Literal(BigInteger.valueOf(2))
+                        )))
+                ))
+        ));
+        fibonacci.setPure(true);
+        Ast.Source ast = new Ast.Source(Arrays.asList(), Arrays.asList(
+                fibonacci,
+                new Ast.Method("main", Arrays.asList(), Arrays.asList(
+                        new Ast.Stmt.Return(new Ast.Expr.Function(Optional.empty(), "fibonacci", Arrays.asList(
+                                new Ast.Expr.Literal(BigInteger.valueOf(90))
+                        )))
+                ))
+        ));
+        MemoCache memo = new MemoCache(16);
+        Interpreter interpreter = new Interpreter(new Scope(null), RuntimeContext.builtins(), memo);
+        Assertions.assertEquals(new BigInteger("2880067194370816120"), interpreter.visit(ast).getValue());
+        Assertions.assertEquals(91L, memo.getMisses());
+        Assertions.assertEquals(88L, memo.getHits());
+        Assertions.assertEquals(16, memo.size());
+    }
+
+    @Test
+    void testBudget() {
+        Ast.Source ast = new Ast.Source(Arrays.asList(), Arrays.asList(
+                new Ast.Method("main", Arrays.asList(), Arrays.asList(
+                        new Ast.Stmt.While(new Ast.Expr.Literal(true), Arrays.asList(
+                                new Ast.Stmt.Declaration("x", Optional.empty(), Optional.of(new Ast.Expr.Literal(BigInteger.ONE)))
+                        ))
+                ))
+        ));
+        ResourceBudget fuel = new ResourceBudget(10000);
+        RuntimeException exception = Assertions.assertThrows(RuntimeException.class,
+                () -> new Interpreter(new Scope(null), RuntimeContext.builtins(), null, fuel).visit(ast));
+        Assertions.assertEquals("The fuel limit of 10000 was exceeded.", exception.getMessage());
+        Assertions.assertEquals(10000L, fuel.getFuelUsed());
+
+        ResourceBudget wall = new ResourceBudget(ResourceBudget.UNLIMITED, null, Duration.ofMillis(50));
+        exception = Assertions.assertThrows(RuntimeException.class,
+                () -> new Interpreter(new Scope(null), RuntimeContext.builtins(), null, wall).visit(ast));
+        Assertions.assertEquals("The wall-clock time limit of 50ms was exceeded.", exception.getMessage());
+        Assertions.assertTrue(wall.getWallTime().toMillis() >= 50);
+
+        ResourceBudget interrupted = new ResourceBudget(ResourceBudget.UNLIMITED);
+        interrupted.interrupt();
+        exception = Assertions.assertThrows(RuntimeException.class,
+                () -> new Interpreter(new Scope(null), RuntimeContext.builtins(), null, interrupted).visit(ast));
+        Assertions.assertEquals("The execution was interrupted.", exception.getMessage());
+        Assertions.assertEquals((long) ResourceBudget.CHECK_INTERVAL, interrupted.getFuelUsed());
+    }
+
+    /**
+     * Returns a method which decides the parity of its argument by tail
+     * calling the other parity method.
+     */
+    private static Ast.Method parity(String name, String other, boolean zero) {
+        Ast.Stmt.Return call = new Ast.Stmt.Return(new Ast.Expr.Function(Optional.empty(), other, Arrays.asList(
+                new Ast.Expr.Binary("-",
+                        new Ast.Expr.Access(Optional.empty(), "n"),
+                        new Ast.Expr.Literal(BigInteger.ONE)
+                )
+        )));
+        call.setTailCall(true);
+        return new Ast.Method(name, Arrays.asList("n"), Arrays.asList(
+                new Ast.Stmt.If(
+                        new Ast.Expr.Binary("==",
+                                new Ast.Expr.Access(Optional.empty(), "n"),
+                                new Ast.Expr.Literal(BigInteger.ZERO)
+                        ),
+                        Arrays.asList(new Ast.Stmt.Return(new Ast.Expr.Literal(zero))),
+                        Arrays.asList()
+                ),
+                call
+        ));
+    }
+
     @ParameterizedTest
     @MethodSource
     void testMethod(String test, Ast.Method ast, List<Environment.PlcObject> args, Object expected) {
@@ -219,6 +380,126 @@ final class InterpreterTests {
         Assertions.assertEquals(BigInteger.TEN, scope.lookupVariable("num").getValue().getValue());
     }
 
+    @Test
+    void testLoopDeclarations() {
+        Scope scope = new Scope(null);
+        AtomicInteger evaluations = new AtomicInteger();
+        scope.defineVariable("sum", Environment.create(BigInteger.ZERO));
+        scope.defineFunction("list", 0, args -> {
+            evaluations.incrementAndGet();
+            return Environment.create(IntStream.range(0, 5)
+                    .mapToObj(i -> Environment.create(BigInteger.valueOf(i)))
+                    .collect(Collectors.toList()));
+        });
+        test(new Ast.Stmt.For("num",
+                new Ast.Expr.Function(Optional.empty(), "list", Arrays.asList()),
+                Arrays.asList(
+                        new Ast.Stmt.Declaration("square", Optional.of(new Ast.Expr.Binary("*",
+                                new Ast.Expr.Access(Optional.empty(), "num"),
+                                new Ast.Expr.Access(Optional.empty(), "num")
+                        ))),
+                        new Ast.Stmt.Assignment(
+                                new Ast.Expr.Access(Optional.empty(), "sum"),
+                                new Ast.Expr.Binary("+",
+                                        new Ast.Expr.Access(Optional.empty(), "sum"),
+                                        new Ast.Expr.Access(Optional.empty(), "square")
+                                )
+                        )
+                )
+        ), Environment.NIL.getValue(), scope);
+        Assertions.assertEquals(BigInteger.valueOf(30), scope.lookupVariable("sum").getValue().getValue());
+        Assertions.assertEquals(1, evaluations.get());
+    }
+
+    @ParameterizedTest
+    @MethodSource
+    void testRange(String test, List<Ast.Expr> arguments, Object expected) {
+        Scope scope = new Scope(null);
+        scope.defineVariable("sum", Environment.create(BigInteger.ZERO));
+        Ast.Stmt.For loop = new Ast.Stmt.For("num",
+                new Ast.Expr.Function(Optional.empty(), "range", arguments),
+                Arrays.asList(new Ast.Stmt.Assignment(
+                        new Ast.Expr.Access(Optional.empty(), "sum"),
+                        new Ast.Expr.Binary("+",
+                                new Ast.Expr.Access(Optional.empty(), "sum"),
+                                new Ast.Expr.Access(Optional.empty(), "num")
+                        )
+                ))
+        );
+        if (expected != null) {
+            test(loop, Environment.NIL.getValue(), scope);
+            Assertions.assertEquals(expected, scope.lookupVariable("sum").getValue().getValue());
+        } else {
+            test(loop, null, scope);
+        }
+    }
+
+    private static Stream<Arguments> testRange() {
+        return Stream.of(
+                Arguments.of("Range", Arrays.asList(
+                        new Ast.Expr.Literal(BigInteger.ZERO),
+                        new Ast.Expr.Literal(BigInteger.valueOf(5))
+                ), BigInteger.TEN),
+                Arguments.of("Cache Boundary", Arrays.asList(
+                        new Ast.Expr.Literal(BigInteger.valueOf(1000)),
+                        new Ast.Expr.Literal(BigInteger.valueOf(1050))
+                ), BigInteger.valueOf(51225)),
+                Arguments.of("Empty", Arrays.asList(
+                        new Ast.Expr.Literal(BigInteger.TEN),
+                        new Ast.Expr.Literal(BigInteger.ZERO)
+                ), BigInteger.ZERO),
+                Arguments.of("Negative Step", Arrays.asList(
+                        new Ast.Expr.Literal(BigInteger.TEN),
+                        new Ast.Expr.Literal(BigInteger.ZERO),
+                        new Ast.Expr.Literal(BigInteger.valueOf(-3))
+                ), BigInteger.valueOf(22)),
+                Arguments.of("Overflow", Arrays.asList(
+                        new Ast.Expr.Literal(BigInteger.valueOf(Long.MAX_VALUE - 1)),
+                        new Ast.Expr.Literal(BigInteger.valueOf(Long.MAX_VALUE)),
+                        new Ast.Expr.Literal(BigInteger.TEN)
+                ), BigInteger.valueOf(Long.MAX_VALUE - 1)),
+                Arguments.of("Zero Step", Arrays.asList(
+                        new Ast.Expr.Literal(BigInteger.ZERO),
+                        new Ast.Expr.Literal(BigInteger.TEN),
+                        new Ast.Expr.Literal(BigInteger.ZERO)
+                ), null)
+        );
+    }
+
+    @Test
+    void testRangeAssignment() {
+        Scope scope = new Scope(null);
+        scope.defineVariable("sum", Environment.create(BigInteger.ZERO));
+        // FOR num IN range(1020, 1030) DO LET twice = num + num; num = 0; sum = sum + twice + num; END
+        test(new Ast.Stmt.For("num",
+                new Ast.Expr.Function(Optional.empty(), "range", Arrays.asList(
+                        new Ast.Expr.Literal(BigInteger.valueOf(1020)),
+                        new Ast.Expr.Literal(BigInteger.valueOf(1030))
+                )),
+                Arrays.asList(
+                        new Ast.Stmt.Declaration("twice", Optional.of(new Ast.Expr.Binary("+",
+                                new Ast.Expr.Access(Optional.empty(), "num"),
+                                new Ast.Expr.Access(Optional.empty(), "num")
+                        ))),
+                        new Ast.Stmt.Assignment(
+                                new Ast.Expr.Access(Optional.empty(), "num"),
+                                new Ast.Expr.Literal(BigInteger.ZERO)
+                        ),
+                        new Ast.Stmt.Assignment(
+                                new Ast.Expr.Access(Optional.empty(), "sum"),
+                                new Ast.Expr.Binary("+",
+                                        new Ast.Expr.Binary("+",
+                                                new Ast.Expr.Access(Optional.empty(), "sum"),
+                                                new Ast.Expr.Access(Optional.empty(), "twice")
+                                        ),
+                                        new Ast.Expr.Access(Optional.empty(), "num")
+                                )
+                        )
+                )
+        ), Environment.NIL.getValue(), scope);
+        Assertions.assertEquals(BigInteger.valueOf(20490), scope.lookupVariable("sum").getValue().getValue());
+    }
+
     @ParameterizedTest
     @MethodSource
     void testLiteralExpression(String test, Ast ast, Object expected) {
@@ -312,12 +593,92 @@ final class InterpreterTests {
                         ),
                         BigInteger.valueOf(11)
                 ),
+                Arguments.of("Addition Overflow",
+                        new Ast.Expr.Binary("+",
+                                new Ast.Expr.Literal(BigInteger.valueOf(Long.MAX_VALUE)),
+                                new Ast.Expr.Literal(BigInteger.ONE)
+                        ),
+                        BigInteger.valueOf(Long.MAX_VALUE).add(BigInteger.ONE)
+                ),
+                Arguments.of("Subtraction",
+                        new Ast.Expr.Binary("-",
+                                new Ast.Expr.Literal(BigInteger.ONE),
+                                new Ast.Expr.Literal(BigInteger.TEN)
+                        ),
+                        BigInteger.valueOf(-9)
+                ),
+                Arguments.of("Decimal Subtraction",
+                        new Ast.Expr.Binary("-",
+                                new Ast.Expr.Literal(new BigDecimal("3.4")),
+                                new Ast.Expr.Literal(new BigDecimal("1.2"))
+                        ),
+                        new BigDecimal("2.2")
+                ),
+                Arguments.of("Subtraction Demotion",
+                        new Ast.Expr.Binary("-",
+                                new Ast.Expr.Binary("-",
+                                        new Ast.Expr.Literal(BigInteger.valueOf(Long.MIN_VALUE)),
+                                        new Ast.Expr.Literal(BigInteger.ONE)
+                                ),
+                                new Ast.Expr.Literal(BigInteger.valueOf(-2))
+                        ),
+                        BigInteger.valueOf(Long.MIN_VALUE + 1)
+                ),
+                Arguments.of("Multiplication Boundary",
+                        new Ast.Expr.Binary("*",
+                                new Ast.Expr.Literal(BigInteger.valueOf(1L << 32)),
+                                new Ast.Expr.Literal(BigInteger.valueOf(-(1L << 31)))
+                        ),
+                        BigInteger.valueOf(Long.MIN_VALUE)
+                ),
+                Arguments.of("Division Overflow",
+                        new Ast.Expr.Binary("/",
+                                new Ast.Expr.Literal(BigInteger.valueOf(Long.MIN_VALUE)),
+                                new Ast.Expr.Literal(BigInteger.valueOf(-1))
+                        ),
+                        BigInteger.valueOf(Long.MIN_VALUE).negate()
+                ),
                 Arguments.of("Division",
                         new Ast.Expr.Binary("/",
                                 new Ast.Expr.Literal(new BigDecimal("1.2")),
                                 new Ast.Expr.Literal(new BigDecimal("3.4"))
                         ),
                         new BigDecimal("0.4")
+                ),
+                Arguments.of("Integer Division",
+                        new Ast.Expr.Binary("/",
+                                new Ast.Expr.Literal(BigInteger.valueOf(7)),
+                                new Ast.Expr.Literal(BigInteger.valueOf(2))
+                        ),
+                        BigInteger.valueOf(3)
+                ),
+                Arguments.of("Integer Division Truncation",
+                        new Ast.Expr.Binary("/",
+                                new Ast.Expr.Literal(BigInteger.valueOf(-7)),
+                                new Ast.Expr.Literal(BigInteger.valueOf(2))
+                        ),
+                        BigInteger.valueOf(-3)
+                ),
+                Arguments.of("Integer Division by Zero",
+                        new Ast.Expr.Binary("/",
+                                new Ast.Expr.Literal(BigInteger.ONE),
+                                new Ast.Expr.Literal(BigInteger.ZERO)
+                        ),
+                        null
+                ),
+                Arguments.of("Decimal Division by Zero",
+                        new Ast.Expr.Binary("/",
+                                new Ast.Expr.Literal(new BigDecimal("1.2")),
+                                new Ast.Expr.Literal(new BigDecimal("0.0"))
+                        ),
+                        null
+                ),
+                Arguments.of("Mixed Division",
+                        new Ast.Expr.Binary("/",
+                                new Ast.Expr.Literal(BigInteger.ONE),
+                                new Ast.Expr.Literal(new BigDecimal("1.0"))
+                        ),
+                        null
                 )
         );
     }
@@ -354,11 +715,24 @@ final class InterpreterTests {
         Scope object = new Scope(null);
         object.defineFunction("method", 1, args -> Environment.create("object.method"));
         scope.defineVariable("object", new Environment.PlcObject(object, "object"));
+        scope.defineFunction("join", () -> Environment.create(""));
+        scope.defineFunction("join", a -> Environment.create(a.getValue().toString()));
+        scope.defineFunction("join", (a, b) -> Environment.create(a.getValue() + "" + b.getValue()));
+        scope.defineFunction("join", (a, b, c) -> Environment.create(a.getValue() + "" + b.getValue() + c.getValue()));
+        scope.defineFunction("join", (a, b, c, d) -> Environment.create(a.getValue() + "" + b.getValue() + c.getValue() + d.getValue()));
+        scope.defineFunction("join", 5, args -> Environment.create(args.stream().map(arg -> arg.getValue().toString()).collect(Collectors.joining())));
         test(ast, expected, scope);
     }
 
     private static Stream<Arguments> testFunctionExpression() {
         return Stream.of(
+                Arguments.of("Arity 0", join(0), ""),
+                Arguments.of("Arity 1", join(1), "a"),
+                Arguments.of("Arity 2", join(2), "ab"),
+                Arguments.of("Arity 3", join(3), "abc"),
+                Arguments.of("Arity 4", join(4), "abcd"),
+                Arguments.of("Variadic", join(5), "abcde"),
+                Arguments.of("Undefined Arity", join(6), null),
                 Arguments.of("Function",
                         new Ast.Expr.Function(Optional.empty(), "function", Arrays.asList()),
                         "function"
@@ -374,6 +748,49 @@ final class InterpreterTests {
         );
     }
 
+    /**
+     * Returns a call of join with the given number of letters.
+     */
+    private static Ast.Expr.Function join(int arity) {
+        return new Ast.Expr.Function(Optional.empty(), "join", IntStream.range(0, arity)
+                .mapToObj(i -> new Ast.Expr.Literal(String.valueOf((char) ('a' + i))))
+                .collect(Collectors.toList()));
+    }
+
+    @Test
+    void testNativeFunction() {
+        Environment.PlcObject a = Environment.create("a");
+        Environment.PlcObject b = Environment.create("b");
+        Environment.PlcObject c = Environment.create("c");
+        Environment.PlcObject d = Environment.create("d");
+        Scope scope = new Scope(null);
+        Environment.Function zero = scope.defineFunction("f", () -> Environment.create(""));
+        Environment.Function one = scope.defineFunction("f", x -> x);
+        Environment.Function two = scope.defineFunction("f", (x, y) -> y);
+        Environment.Function three = scope.defineFunction("f", (x, y, z) -> z);
+        Environment.Function four = scope.defineFunction("f", (x, y, z, w) -> w);
+        Assertions.assertEquals("", zero.invoke().getValue());
+        Assertions.assertEquals("a", one.invoke(a).getValue());
+        Assertions.assertEquals("b", two.invoke(a, b).getValue());
+        Assertions.assertEquals("c", three.invoke(a, b, c).getValue());
+        Assertions.assertEquals("d", four.invoke(a, b, c, d).getValue());
+        Assertions.assertEquals("d", four.invoke(Arrays.asList(a, b, c, d)).getValue());
+        Assertions.assertTrue(two == scope.lookupFunction("f", 2));
+
+        // a list-based function is adapted to the fixed-arity overloads
+        List<List<Environment.PlcObject>> calls = new ArrayList<>();
+        Environment.Function variadic = new Environment.Function("g", 2, args -> {
+            calls.add(args);
+            return Environment.NIL;
+        });
+        variadic.invoke(a, b);
+        variadic.invoke(Arrays.asList(c, d));
+        Assertions.assertEquals(Arrays.asList(Arrays.asList(a, b), Arrays.asList(c, d)), calls);
+
+        Assertions.assertThrows(IllegalArgumentException.class, () -> new Environment.Function("h", "h",
+                Arrays.asList(Environment.Type.ANY), Environment.Type.ANY, (Environment.Function2) (x, y) -> x));
+    }
+
     private static Scope test(Ast ast, Object expected, Scope scope) {
         Interpreter interpreter = new Interpreter(scope);
         if (expected != null) {
@@ -193,6 +193,44 @@ final class ParserExpressionTests {
         );
     }
 
+    @ParameterizedTest
+    @MethodSource
+    void testBinaryOperator(String symbol, Ast.Expr.Binary.Operator expected) {
+        Ast.Expr.Binary binary = new Ast.Expr.Binary(symbol,
+                new Ast.Expr.Access(Optional.empty(), "expr1"),
+                new Ast.Expr.Access(Optional.empty(), "expr2")
+        );
+        Assertions.assertEquals(expected, binary.getKind());
+        Assertions.assertEquals(expected, Ast.Expr.Binary.Operator.of(symbol));
+        Assertions.assertEquals(symbol, expected.getSymbol());
+    }
+
+    private static Stream<Arguments> testBinaryOperator() {
+        return Stream.of(
+                Arguments.of("AND", Ast.Expr.Binary.Operator.AND),
+                Arguments.of("OR", Ast.Expr.Binary.Operator.OR),
+                Arguments.of("<", Ast.Expr.Binary.Operator.LESS),
+                Arguments.of(">", Ast.Expr.Binary.Operator.GREATER),
+                Arguments.of("<=", Ast.Expr.Binary.Operator.LESS_EQUAL),
+                Arguments.of(">=", Ast.Expr.Binary.Operator.GREATER_EQUAL),
+                Arguments.of("==", Ast.Expr.Binary.Operator.EQUAL),
+                Arguments.of("!=", Ast.Expr.Binary.Operator.NOT_EQUAL),
+                Arguments.of("+", Ast.Expr.Binary.Operator.ADD),
+                Arguments.of("-", Ast.Expr.Binary.Operator.SUBTRACT),
+                Arguments.of("*", Ast.Expr.Binary.Operator.MULTIPLY),
+                Arguments.of("/", Ast.Expr.Binary.Operator.DIVIDE)
+        );
+    }
+
+    @Test
+    void testUnknownOperator() {
+        Assertions.assertThrows(IllegalArgumentException.class, () -> Ast.Expr.Binary.Operator.of("%"));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> new Ast.Expr.Binary("&&",
+                new Ast.Expr.Literal(true),
+                new Ast.Expr.Literal(false)
+        ));
+    }
+
     @ParameterizedTest
     @MethodSource
     void testAccessExpression(String test, List<Token> tokens, Ast.Expr.Access expected) {
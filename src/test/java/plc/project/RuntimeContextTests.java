@@ -0,0 +1,108 @@
+package plc.project;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.Optional;
+
+final class RuntimeContextTests {
+
+    @Test
+    void testIsolation() {
+        RuntimeContext first = RuntimeContext.builtins();
+        RuntimeContext second = RuntimeContext.builtins();
+        Environment.Type point = new Environment.Type("Point", "Point", new Scope(Environment.Type.ANY.getScope()));
+        first.getTypes().register(point);
+        Assertions.assertTrue(point == first.getTypes().getType("Point"));
+        Assertions.assertFalse(second.getTypes().hasType("Point"));
+        Assertions.assertTrue(Environment.Type.INTEGER == second.getTypes().getType("Integer"));
+        Assertions.assertThrows(RuntimeException.class, () -> Environment.getType("Point"));
+
+        // LET p: Point;
+        Ast.Stmt.Declaration declaration = new Ast.Stmt.Declaration("p", Optional.of("Point"), Optional.empty());
+        new Analyzer(new Scope(null), first).visit(declaration);
+        Assertions.assertTrue(point == declaration.getVariable().getType());
+        Assertions.assertThrows(RuntimeException.class, () -> new Analyzer(new Scope(null), second)
+                .visit(new Ast.Stmt.Declaration("p", Optional.of("Point"), Optional.empty())));
+
+        // VAR p: Point;
+        Ast.Field field = new Ast.Field("p", "Point", Optional.empty());
+        Interpreter interpreter = new Interpreter(new Scope(null), first);
+        interpreter.visit(field);
+        Assertions.assertTrue(point == interpreter.getScope().lookupVariable("p").getType());
+        Assertions.assertThrows(RuntimeException.class, () -> new Interpreter(new Scope(null), second).visit(field));
+    }
+
+    @Test
+    void testSymbols() {
+        RuntimeContext first = RuntimeContext.builtins();
+        RuntimeContext second = RuntimeContext.builtins();
+        Ast.Expr.Access access = (Ast.Expr.Access) new Parser(first.lexer("tenant").lex()).parseExpression();
+        int symbol = first.getSymbols().lookup("tenant");
+        Assertions.assertFalse(symbol == -1);
+        Assertions.assertEquals(-1, second.getSymbols().lookup("tenant"));
+        Assertions.assertEquals(first.getSymbols().lookup("compare"), second.getSymbols().lookup("compare"));
+
+        int size = first.getSymbols().size();
+        Assertions.assertEquals(symbol, access.getSymbol(first.getSymbols()));
+        Assertions.assertEquals(size, first.getSymbols().size());
+        Assertions.assertEquals(second.getSymbols().intern("tenant"), access.getSymbol(second.getSymbols()));
+
+        Interpreter interpreter = new Interpreter(null, first);
+        Assertions.assertTrue(first.getSymbols() == interpreter.getScope().getSymbols());
+        interpreter.getScope().defineVariable("tenant", Environment.create("value"));
+        Assertions.assertEquals("value", interpreter.visit(access).getValue());
+    }
+
+    @Test
+    void testSharedAst() {
+        RuntimeContext first = RuntimeContext.builtins();
+        RuntimeContext second = RuntimeContext.builtins();
+        Ast.Expr.Access access = (Ast.Expr.Access) new Parser(first.lexer("tenant").lex()).parseExpression();
+        SymbolTable.Symbol parsed = access.getParsedSymbol();
+        Interpreter[] interpreters = {new Interpreter(null, first), new Interpreter(null, second)};
+        interpreters[0].getScope().defineVariable("tenant", Environment.create("first"));
+        interpreters[1].getScope().defineVariable("tenant", Environment.create("second"));
+        for (int i = 0; i < 4; i++) {
+            Assertions.assertEquals("first", interpreters[0].visit(access).getValue());
+            Assertions.assertEquals("second", interpreters[1].visit(access).getValue());
+        }
+        Assertions.assertTrue(parsed == access.getParsedSymbol());
+        Assertions.assertTrue(first.getSymbols() == parsed.getTable());
+    }
+
+    @Test
+    void testDefaultPipeline() {
+        Ast.Expr.Access access = (Ast.Expr.Access) new Parser(new Lexer("tenant").lex()).parseExpression();
+        SymbolTable symbols = access.getParsedSymbol().getTable();
+        Analyzer analyzer = new Analyzer(new Scope(null));
+        Interpreter interpreter = new Interpreter(new Scope(null));
+        Assertions.assertTrue(symbols == analyzer.getScope().getSymbols());
+        Assertions.assertTrue(symbols == interpreter.getScope().getSymbols());
+        Assertions.assertTrue(symbols == new Analyzer(null).getScope().getSymbols());
+        Assertions.assertTrue(symbols == new Interpreter(null).getScope().getSymbols());
+        interpreter.getScope().defineVariable("tenant", Environment.create("value"));
+        Assertions.assertEquals("value", interpreter.visit(access).getValue());
+        Assertions.assertEquals(access.getParsedSymbol().getId(), access.getSymbol(interpreter.getScope().getSymbols()));
+    }
+
+    @Test
+    void testFrozen() {
+        TypeRegistry registry = TypeRegistry.builtins();
+        Environment.Type point = new Environment.Type("Point", "Point", new Scope(Environment.Type.ANY.getScope()));
+        registry.register(point);
+        Assertions.assertThrows(IllegalArgumentException.class, () -> registry.register(point));
+        registry.freeze();
+        Assertions.assertTrue(registry.isFrozen());
+        Assertions.assertThrows(IllegalStateException.class, () -> registry.register(
+                new Environment.Type("Line", "Line", new Scope(Environment.Type.ANY.getScope()))));
+        Assertions.assertFalse(registry.hasType("Line"));
+        Assertions.assertThrows(IllegalStateException.class, () -> point.getScope().defineVariable("x", Environment.NIL));
+
+        TypeRegistry child = new TypeRegistry(registry);
+        child.register(new Environment.Type("Line", "Line", new Scope(Environment.Type.ANY.getScope())));
+        Assertions.assertTrue(child.hasType("Point"));
+        Assertions.assertFalse(registry.hasType("Line"));
+    }
+
+}
@@ -0,0 +1,148 @@
+package plc.project;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.math.BigInteger;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeoutException;
+
+final class ScriptExecutorTests {
+
+    @Test
+    void testSubmit() throws Exception {
+        CompiledProgram program = new ClosureCompiler(new Scope(null)).compileProgram(new Ast.Source(
+                Arrays.asList(),
+                Arrays.asList(new Ast.Method("main", Arrays.asList(), Arrays.asList(
+                        new Ast.Stmt.Return(new Ast.Expr.Literal(BigInteger.ONE))
+                )))
+        ));
+        try (ScriptExecutor executor = new ScriptExecutor(4, 1000, ScriptExecutor.Rejection.ABORT)) {
+            List<CompletableFuture<Environment.PlcObject>> futures = new ArrayList<>();
+            for (int i = 0; i < 1000; i++) {
+                futures.add(executor.submit(program, Duration.ofSeconds(10)));
+            }
+            for (CompletableFuture<Environment.PlcObject> future : futures) {
+                Assertions.assertEquals(BigInteger.ONE, future.get().getValue());
+            }
+            Assertions.assertEquals(0L, executor.getRejected());
+        }
+    }
+
+    @Test
+    void testRejection() throws Exception {
+        CountDownLatch latch = new CountDownLatch(1);
+        try (ScriptExecutor executor = new ScriptExecutor(1, 1, ScriptExecutor.Rejection.ABORT)) {
+            CompletableFuture<Environment.PlcObject> running = executor.submit(() -> await(latch));
+            CompletableFuture<Environment.PlcObject> queued = executor.submit(() -> Environment.create("queued"));
+            CompletableFuture<Environment.PlcObject> rejected = executor.submit(() -> Environment.create("rejected"));
+            ExecutionException exception = Assertions.assertThrows(ExecutionException.class, rejected::get);
+            Assertions.assertTrue(exception.getCause() instanceof RejectedExecutionException);
+            latch.countDown();
+            Assertions.assertEquals("running", running.get().getValue());
+            Assertions.assertEquals("queued", queued.get().getValue());
+            Assertions.assertEquals(1L, executor.getRejected());
+        }
+        CountDownLatch discard = new CountDownLatch(1);
+        try (ScriptExecutor executor = new ScriptExecutor(1, 1, ScriptExecutor.Rejection.DISCARD_OLDEST)) {
+            executor.submit(() -> await(discard));
+            CompletableFuture<Environment.PlcObject> oldest = executor.submit(() -> Environment.create("oldest"));
+            CompletableFuture<Environment.PlcObject> newest = executor.submit(() -> Environment.create("newest"));
+            discard.countDown();
+            Assertions.assertThrows(ExecutionException.class, oldest::get);
+            Assertions.assertEquals("newest", newest.get().getValue());
+        }
+    }
+
+    @Test
+    void testTimeout() throws Exception {
+        Ast.Source ast = new Ast.Source(Arrays.asList(), Arrays.asList(
+                new Ast.Method("main", Arrays.asList(), Arrays.asList(
+                        new Ast.Stmt.While(new Ast.Expr.Literal(true), Arrays.asList(
+                                new Ast.Stmt.Declaration("x", Optional.empty(), Optional.of(new Ast.Expr.Literal(BigInteger.ONE)))
+                        ))
+                ))
+        ));
+        ResourceBudget budget = new ResourceBudget(ResourceBudget.UNLIMITED);
+        try (ScriptExecutor executor = new ScriptExecutor(1, 0, ScriptExecutor.Rejection.ABORT)) {
+            CompletableFuture<Environment.PlcObject> future = executor.submit(
+                    () -> new Interpreter(new Scope(null), RuntimeContext.builtins(), null, budget).visit(ast), Duration.ofMillis(50));
+            ExecutionException exception = Assertions.assertThrows(ExecutionException.class, future::get);
+            Assertions.assertTrue(exception.getCause() instanceof TimeoutException);
+            Assertions.assertEquals(1L, executor.getTimedOut());
+            for (int i = 0; i < 100 && executor.getRunning() > 0; i++) {
+                Thread.sleep(10);
+            }
+            CompletableFuture<Environment.PlcObject> next = executor.submit(() -> Environment.create("next"));
+            Assertions.assertEquals("next", next.get().getValue());
+        }
+    }
+
+    @Test
+    void testCompiledTimeout() throws Exception {
+        CompiledProgram program = new ClosureCompiler(new Scope(null)).compileProgram(new Ast.Source(Arrays.asList(), Arrays.asList(
+                new Ast.Method("main", Arrays.asList(), Arrays.asList(
+                        new Ast.Stmt.While(new Ast.Expr.Literal(true), Arrays.asList())
+                ))
+        )));
+        try (ScriptExecutor executor = new ScriptExecutor(1, 0, ScriptExecutor.Rejection.ABORT)) {
+            CompletableFuture<Environment.PlcObject> future = executor.submit(program, Duration.ofMillis(50));
+            ExecutionException exception = Assertions.assertThrows(ExecutionException.class, future::get);
+            Assertions.assertTrue(exception.getCause() instanceof TimeoutException);
+            for (int i = 0; i < 100 && executor.getRunning() > 0; i++) {
+                Thread.sleep(10);
+            }
+            Assertions.assertEquals(0, executor.getRunning());
+            CompletableFuture<Environment.PlcObject> next = executor.submit(() -> Environment.create("next"));
+            Assertions.assertEquals("next", next.get().getValue());
+        }
+    }
+
+    @Test
+    void testCpuTimeLimit() throws Exception {
+        CompiledProgram program = new ClosureCompiler(new Scope(null)).compileProgram(new Ast.Source(Arrays.asList(), Arrays.asList(
+                new Ast.Method("main", Arrays.asList(), Arrays.asList(
+                        new Ast.Stmt.While(new Ast.Expr.Literal(true), Arrays.asList())
+                ))
+        )));
+        try (ScriptExecutor executor = new ScriptExecutor(1, 0, ScriptExecutor.Rejection.ABORT)) {
+            ResourceBudget budget = new ResourceBudget(ResourceBudget.UNLIMITED, Duration.ofMillis(100), null);
+            CompletableFuture<Environment.PlcObject> future = executor.submit(() -> program.execute(budget), Duration.ofSeconds(10));
+            ExecutionException exception = Assertions.assertThrows(ExecutionException.class, future::get);
+            Assertions.assertEquals("The CPU time limit of 100ms was exceeded.", exception.getCause().getMessage());
+            Assertions.assertEquals(!executor.isVirtual(), budget.isCpuTimeMeasured(), budget.toString());
+        }
+        // a thread whose CPU time reads as -1, as a virtual thread's does
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        boolean enabled = threads.isThreadCpuTimeEnabled();
+        threads.setThreadCpuTimeEnabled(false);
+        try {
+            ResourceBudget budget = new ResourceBudget(ResourceBudget.UNLIMITED, Duration.ofMillis(100), null);
+            RuntimeException exception = Assertions.assertThrows(RuntimeException.class, () -> program.execute(budget));
+            Assertions.assertEquals("The CPU time limit of 100ms was exceeded.", exception.getMessage());
+            Assertions.assertFalse(budget.isCpuTimeMeasured());
+        } finally {
+            threads.setThreadCpuTimeEnabled(enabled);
+        }
+    }
+
+    private static Environment.PlcObject await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            throw new RuntimeException(e);
+        }
+        return Environment.create("running");
+    }
+
+}
@@ -0,0 +1,132 @@
+package plc.project;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+final class ShapeTests {
+
+    @Test
+    void testDefineField() {
+        Environment.PlcObject object = new Environment.PlcObject(new Scope(null), "object");
+        object.defineField("x", Environment.create(1));
+        object.defineField("y", Environment.create(2));
+        Assertions.assertEquals(Environment.create(1).getValue(), object.getField("x").getValue().getValue());
+        Assertions.assertEquals(Environment.create(2).getValue(), object.getField("y").getValue().getValue());
+        Assertions.assertThrows(RuntimeException.class, () -> object.getField("z"));
+        Assertions.assertThrows(RuntimeException.class, () -> object.defineField("x", Environment.NIL));
+    }
+
+    @Test
+    void testFieldWrite() {
+        Environment.PlcObject object = new Environment.PlcObject(new Scope(null), "object");
+        object.defineField("x", Environment.create(1));
+        Assertions.assertTrue(object.getField("x") == object.getField("x"));
+        object.getField("x").setValue(Environment.create(2));
+        Assertions.assertEquals(Environment.create(2).getValue(), object.getField("x").getValue().getValue());
+        object.setField("x", Environment.create(3));
+        Assertions.assertEquals(Environment.create(3).getValue(), object.getField("x").getValue().getValue());
+    }
+
+    @Test
+    void testScopeFields() {
+        Scope scope = new Scope(null);
+        scope.defineVariable("field", Environment.create("value"));
+        Environment.PlcObject object = new Environment.PlcObject(scope, "object");
+        Assertions.assertTrue(object.getShape() != null);
+        Assertions.assertTrue(scope.getSymbols() == object.getShape().getSymbols());
+        Assertions.assertTrue(scope.lookupVariable("field") == object.getField("field"));
+        object.setField("field", Environment.create("written"));
+        Assertions.assertEquals("written", scope.lookupVariable("field").getValue().getValue());
+    }
+
+    @Test
+    void testSharedShape() {
+        Environment.Type type = new Environment.Type("Object", "Object", new Scope(null));
+        Environment.PlcObject first = new Environment.PlcObject(type, "first");
+        Environment.PlcObject second = new Environment.PlcObject(type, "second");
+        first.defineField("shared", Environment.NIL);
+        second.defineField("shared", Environment.NIL);
+        Assertions.assertTrue(first.getShape() == second.getShape());
+        Assertions.assertFalse(first.getShape() == new Environment.PlcObject(new Scope(null), "other").getShape());
+    }
+
+    @Test
+    void testTransitionLimit() {
+        Shape root = new SymbolTable().getShape();
+        SymbolTable symbols = root.getSymbols();
+        for (int i = 0; i < Shape.MAX_CACHED + 10; i++) {
+            root.withField(symbols.intern("field" + i));
+        }
+        Assertions.assertEquals(Shape.MAX_CACHED, root.getCached());
+        Shape uncached = root.withField(symbols.intern("field" + (Shape.MAX_CACHED + 5)));
+        Assertions.assertFalse(uncached == root.withField(symbols.intern("field" + (Shape.MAX_CACHED + 5))));
+        Assertions.assertTrue(root.withField(symbols.intern("field0")) == root.withField(symbols.intern("field0")));
+    }
+
+    @Test
+    void testBuiltinType() {
+        Assertions.assertThrows(RuntimeException.class, () -> Environment.create(1).defineField("x", Environment.NIL));
+        Assertions.assertThrows(RuntimeException.class, () -> Environment.create(1).getField("x"));
+        Environment.PlcObject object = new Environment.PlcObject(Environment.Type.ANY, "object");
+        Assertions.assertThrows(RuntimeException.class, () -> object.defineField("x", Environment.NIL));
+    }
+
+    @Test
+    void testCacheHit() {
+        Environment.Type type = new Environment.Type("Object", "Object", new Scope(null));
+        SymbolTable symbols = type.getScope().getSymbols();
+        FieldCache cache = new FieldCache();
+        Environment.PlcObject first = object(type, "a", "b");
+        Environment.PlcObject second = object(type, "a", "b");
+        Assertions.assertEquals("b", cache.get(first, symbols, symbols.intern("b")).getValue());
+        cache.set(second, symbols, symbols.intern("b"), Environment.create("written"));
+        Assertions.assertEquals("written", second.getField("b").getValue().getValue());
+        Assertions.assertEquals(1, cache.getMisses());
+    }
+
+    @Test
+    void testCacheForeignTable() {
+        Environment.PlcObject object = object(new Environment.Type("Object", "Object", new Scope(null)), "a", "b");
+        SymbolTable caller = new SymbolTable();
+        FieldCache cache = new FieldCache();
+        Assertions.assertEquals("b", cache.get(object, caller, caller.intern("b")).getValue());
+        Assertions.assertEquals("a", new FieldCache().get(object, caller, caller.intern("a")).getValue());
+        RuntimeException exception = Assertions.assertThrows(RuntimeException.class,
+                () -> new FieldCache().get(object, caller, caller.intern("c")));
+        Assertions.assertEquals("The variable c is not defined in this scope.", exception.getMessage());
+    }
+
+    @Test
+    void testCacheMegamorphic() {
+        Environment.Type type = new Environment.Type("Object", "Object", new Scope(null));
+        SymbolTable symbols = type.getScope().getSymbols();
+        int field = symbols.intern("field");
+        FieldCache cache = new FieldCache();
+        Environment.PlcObject[] objects = new Environment.PlcObject[5];
+        for (int i = 0; i < objects.length; i++) {
+            objects[i] = object(type, "padding" + i, "field");
+        }
+        for (int i = 0; i < 4; i++) {
+            cache.get(objects[i], symbols, field);
+            cache.get(objects[i], symbols, field);
+        }
+        Assertions.assertEquals(4, cache.getMisses());
+        Assertions.assertFalse(cache.isMegamorphic());
+        Assertions.assertEquals("field", cache.get(objects[4], symbols, field).getValue());
+        Assertions.assertTrue(cache.isMegamorphic());
+        Assertions.assertEquals("field", cache.get(objects[0], symbols, field).getValue());
+        Assertions.assertEquals(6, cache.getMisses());
+    }
+
+    /**
+     * Returns an object with the given fields, each holding its own name.
+     */
+    private static Environment.PlcObject object(Environment.Type type, String... fields) {
+        Environment.PlcObject object = new Environment.PlcObject(type, "object");
+        for (String field : fields) {
+            object.defineField(field, Environment.create(field));
+        }
+        return object;
+    }
+
+}
@@ -0,0 +1,137 @@
+package plc.project;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Optional;
+import java.util.function.Consumer;
+
+final class TieredRuntimeTests {
+
+    private static final Environment.Function FIBONACCI = function("fibonacci", 1);
+    private static final Environment.Function MAIN = function("main", 0);
+
+    @Test
+    void testCompile() {
+        Ast.Method fibonacci = init(new Ast.Method("fibonacci", Arrays.asList("n"), Arrays.asList("Integer"), Optional.of("Integer"), Arrays.asList(
+                new Ast.Stmt.If(
+                        binary("<", local("n"), integer(2), Environment.Type.BOOLEAN),
+                        Arrays.asList(new Ast.Stmt.Return(local("n"))),
+                        Arrays.asList()
+                ),
+                new Ast.Stmt.Return(binary("+",
+                        call(FIBONACCI, binary("-", local("n"), integer(1), Environment.Type.INTEGER)),
+                        call(FIBONACCI, binary("-", local("n"), integer(2), Environment.Type.INTEGER)),
+                        Environment.Type.INTEGER
+                ))
+        )), ast -> {
+            ast.setFunction(FIBONACCI);
+            ast.setPure(true);
+        });
+        TieredRuntime runtime = new TieredRuntime(new Scope(null), 10, Runnable::run);
+        Environment.PlcObject result = runtime.execute(new Ast.Source(Arrays.asList(), Arrays.asList(fibonacci, main(call(FIBONACCI, integer(15))))));
+        Assertions.assertEquals(BigInteger.valueOf(610), result.getValue());
+        Assertions.assertTrue(runtime.isCompiled("fibonacci", 1));
+        Assertions.assertFalse(runtime.isCompiled("main", 0));
+    }
+
+    @Test
+    void testField() {
+        Environment.Function counter = function("counter", 1);
+        Ast.Method method = init(new Ast.Method("counter", Arrays.asList("n"), Arrays.asList("Integer"), Optional.of("Integer"), Arrays.asList(
+                new Ast.Stmt.Return(binary("+", local("n"), local("offset"), Environment.Type.INTEGER))
+        )), ast -> ast.setFunction(counter));
+        TieredRuntime runtime = new TieredRuntime(new Scope(null), 1, Runnable::run);
+        Environment.PlcObject result = runtime.execute(new Ast.Source(
+                Arrays.asList(new Ast.Field("offset", Optional.of(integer(1)))),
+                Arrays.asList(method, main(call(counter, integer(1))))
+        ));
+        Assertions.assertEquals(BigInteger.valueOf(2), result.getValue());
+        Assertions.assertFalse(runtime.isCompiled("counter", 1));
+    }
+
+    @Test
+    void testFallback() {
+        Environment.Function divide = function("divide", 1);
+        Ast.Method method = init(new Ast.Method("divide", Arrays.asList("n"), Arrays.asList("Integer"), Optional.of("Integer"), Arrays.asList(
+                new Ast.Stmt.Return(binary("/", integer(10), local("n"), Environment.Type.INTEGER))
+        )), ast -> {
+            ast.setFunction(divide);
+            ast.setPure(true);
+        });
+        TieredRuntime runtime = new TieredRuntime(new Scope(null), 1, Runnable::run);
+        RuntimeException exception = Assertions.assertThrows(RuntimeException.class, () -> runtime.execute(new Ast.Source(
+                Arrays.asList(),
+                Arrays.asList(method, main(call(divide, integer(0))))
+        )));
+        Assertions.assertEquals("Division by zero.", exception.getMessage());
+        Assertions.assertTrue(runtime.isCompiled("divide", 1));
+    }
+
+    @Test
+    void testOverflow() {
+        Environment.Function multiply = function("multiply", 2);
+        Ast.Method method = init(new Ast.Method("multiply", Arrays.asList("x", "y"), Arrays.asList("Integer", "Integer"), Optional.of("Integer"), Arrays.asList(
+                new Ast.Stmt.Return(binary("*", local("x"), local("y"), Environment.Type.INTEGER))
+        )), ast -> {
+            ast.setFunction(multiply);
+            ast.setPure(true);
+        });
+        TieredRuntime runtime = new TieredRuntime(new Scope(null), 1, Runnable::run);
+        Environment.PlcObject result = runtime.execute(new Ast.Source(Arrays.asList(), Arrays.asList(method, main(binary("+",
+                call(multiply, integer(3), integer(4)),
+                call(multiply, integer(65536), integer(65536)),
+                Environment.Type.INTEGER
+        )))));
+        Assertions.assertTrue(runtime.isCompiled("multiply", 2));
+        Assertions.assertEquals(BigInteger.valueOf(4294967308L), result.getValue());
+    }
+
+    @Test
+    void testImpure() {
+        Environment.Function divide = function("divide", 1);
+        Ast.Method method = init(new Ast.Method("divide", Arrays.asList("n"), Arrays.asList("Integer"), Optional.of("Integer"), Arrays.asList(
+                new Ast.Stmt.Return(binary("/", integer(10), local("n"), Environment.Type.INTEGER))
+        )), ast -> ast.setFunction(divide));
+        TieredRuntime runtime = new TieredRuntime(new Scope(null), 1, Runnable::run);
+        Environment.PlcObject result = runtime.execute(new Ast.Source(Arrays.asList(), Arrays.asList(method, main(call(divide, integer(5))))));
+        Assertions.assertEquals(BigInteger.valueOf(2), result.getValue());
+        Assertions.assertFalse(runtime.isCompiled("divide", 1));
+    }
+
+    private static Ast.Method main(Ast.Expr value) {
+        return init(new Ast.Method("main", Arrays.asList(), Arrays.asList(), Optional.of("Integer"), Arrays.asList(
+                new Ast.Stmt.Return(value)
+        )), ast -> ast.setFunction(MAIN));
+    }
+
+    private static Environment.Function function(String name, int arity) {
+        return new Environment.Function(name, name, Collections.nCopies(arity, Environment.Type.INTEGER), Environment.Type.INTEGER, args -> Environment.NIL);
+    }
+
+    private static Ast.Expr local(String name) {
+        return init(new Ast.Expr.Access(Optional.empty(), name),
+                ast -> ast.setVariable(new Environment.Variable(name, name, Environment.Type.INTEGER, Environment.NIL)));
+    }
+
+    private static Ast.Expr integer(long value) {
+        return init(new Ast.Expr.Literal(BigInteger.valueOf(value)), ast -> ast.setType(Environment.Type.INTEGER));
+    }
+
+    private static Ast.Expr binary(String operator, Ast.Expr left, Ast.Expr right, Environment.Type type) {
+        return init(new Ast.Expr.Binary(operator, left, right), ast -> ast.setType(type));
+    }
+
+    private static Ast.Expr call(Environment.Function function, Ast.Expr... arguments) {
+        return init(new Ast.Expr.Function(Optional.empty(), function.getName(), Arrays.asList(arguments)), ast -> ast.setFunction(function));
+    }
+
+    private static <T> T init(T value, Consumer<T> initializer) {
+        initializer.accept(value);
+        return value;
+    }
+
+}
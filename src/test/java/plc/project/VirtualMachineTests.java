@@ -0,0 +1,246 @@
+package plc.project;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.Optional;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+final class VirtualMachineTests {
+
+    @ParameterizedTest
+    @MethodSource
+    void testSource(String test, Ast.Source ast, Object expected) {
+        test(ast, expected, new Scope(null));
+    }
+
+    private static Stream<Arguments> testSource() {
+        return Stream.of(
+                Arguments.of("Main", new Ast.Source(
+                        Arrays.asList(),
+                        Arrays.asList(new Ast.Method("main", Arrays.asList(), Arrays.asList(
+                                new Ast.Stmt.Return(new Ast.Expr.Literal(BigInteger.ZERO)))
+                        ))
+                ), BigInteger.ZERO),
+                Arguments.of("Fields & No Return", new Ast.Source(
+                        Arrays.asList(
+                                new Ast.Field("x", Optional.of(new Ast.Expr.Literal(BigInteger.ONE))),
+                                new Ast.Field("y", Optional.of(new Ast.Expr.Literal(BigInteger.TEN)))
+                        ),
+                        Arrays.asList(new Ast.Method("main", Arrays.asList(), Arrays.asList(
+                                new Ast.Stmt.Expression(new Ast.Expr.Binary("+",
+                                        new Ast.Expr.Access(Optional.empty(), "x"),
+                                        new Ast.Expr.Access(Optional.empty(), "y")
+                                ))
+                        )))
+                ), Environment.NIL.getValue()),
+                Arguments.of("Recursion", new Ast.Source(
+                        Arrays.asList(),
+                        Arrays.asList(
+                                new Ast.Method("factorial", Arrays.asList("n"), Arrays.asList(
+                                        new Ast.Stmt.If(
+                                                new Ast.Expr.Binary("<=",
+                                                        new Ast.Expr.Access(Optional.empty(), "n"),
+                                                        new Ast.Expr.Literal(BigInteger.ONE)
+                                                ),
+                                                Arrays.asList(new Ast.Stmt.Return(new Ast.Expr.Literal(BigInteger.ONE))),
+                                                Arrays.asList()
+                                        ),
+                                        new Ast.Stmt.Return(new Ast.Expr.Binary("*",
+                                                new Ast.Expr.Access(Optional.empty(), "n"),
+                                                new Ast.Expr.Function(Optional.empty(), "factorial", Arrays.asList(
+                                                        new Ast.Expr.Binary("-",
+                                                                new Ast.Expr.Access(Optional.empty(), "n"),
+                                                                new Ast.Expr.Literal(BigInteger.ONE)
+                                                        )
+                                                ))
+                                        ))
+                                )),
+                                new Ast.Method("main", Arrays.asList(), Arrays.asList(
+                                        new Ast.Stmt.Return(new Ast.Expr.Function(Optional.empty(), "factorial", Arrays.asList(
+                                                new Ast.Expr.Literal(BigInteger.valueOf(5))
+                                        )))
+                                ))
+                        )
+                ), BigInteger.valueOf(120)),
+                Arguments.of("For & Return", new Ast.Source(
+                        Arrays.asList(new Ast.Field("sum", Optional.of(new Ast.Expr.Literal(BigInteger.ZERO)))),
+                        Arrays.asList(new Ast.Method("main", Arrays.asList(), Arrays.asList(
+                                new Ast.Stmt.For("num", new Ast.Expr.Access(Optional.empty(), "list"), Arrays.asList(
+                                        new Ast.Stmt.If(
+                                                new Ast.Expr.Binary("AND",
+                                                        new Ast.Expr.Literal(true),
+                                                        new Ast.Expr.Binary("==",
+                                                                new Ast.Expr.Access(Optional.empty(), "num"),
+                                                                new Ast.Expr.Literal(BigInteger.valueOf(4))
+                                                        )
+                                                ),
+                                                Arrays.asList(new Ast.Stmt.Return(new Ast.Expr.Access(Optional.empty(), "sum"))),
+                                                Arrays.asList()
+                                        ),
+                                        new Ast.Stmt.Assignment(
+                                                new Ast.Expr.Access(Optional.empty(), "sum"),
+                                                new Ast.Expr.Binary("+",
+                                                        new Ast.Expr.Access(Optional.empty(), "sum"),
+                                                        new Ast.Expr.Access(Optional.empty(), "num")
+                                                )
+                                        )
+                                )),
+                                new Ast.Stmt.Return(new Ast.Expr.Literal(BigInteger.ONE))
+                        )))
+                ), BigInteger.valueOf(6)),
+                Arguments.of("Method Call", new Ast.Source(
+                        Arrays.asList(),
+                        Arrays.asList(new Ast.Method("main", Arrays.asList(), Arrays.asList(
+                                new Ast.Stmt.Return(new Ast.Expr.Function(
+                                        Optional.of(new Ast.Expr.Access(Optional.empty(), "object")), "method", Arrays.asList()
+                                ))
+                        )))
+                ), "object.method"),
+                Arguments.of("Undefined Main", new Ast.Source(
+                        Arrays.asList(),
+                        Arrays.asList(new Ast.Method("main", Arrays.asList("x"), Arrays.asList()))
+                ), null)
+        );
+    }
+
+    @Test
+    void testError() {
+        VirtualMachine machine = new VirtualMachine(new Scope(null));
+        Bytecode.Program division = new BytecodeCompiler().compile(new Ast.Source(
+                Arrays.asList(),
+                Arrays.asList(
+                        new Ast.Method("divide", Arrays.asList("x"), Arrays.asList(
+                                new Ast.Stmt.Return(new Ast.Expr.Binary("/",
+                                        new Ast.Expr.Literal(BigInteger.ONE),
+                                        new Ast.Expr.Access(Optional.empty(), "x")
+                                ))
+                        )),
+                        new Ast.Method("main", Arrays.asList(), Arrays.asList(
+                                new Ast.Stmt.Return(new Ast.Expr.Function(Optional.empty(), "divide", Arrays.asList(
+                                        new Ast.Expr.Literal(BigInteger.ZERO)
+                                )))
+                        ))
+                )
+        ));
+        Assertions.assertThrows(RuntimeException.class, () -> machine.execute(division));
+        Environment.Function divide = machine.getScope().lookupFunction("divide", 1);
+        Assertions.assertEquals(BigInteger.ONE, divide.invoke(Environment.create(BigInteger.ONE)).getValue());
+    }
+
+    @Test
+    void testDepth() throws InterruptedException {
+        Bytecode.Program program = new BytecodeCompiler().compile(new Ast.Source(
+                Arrays.asList(),
+                Arrays.asList(new Ast.Method("sum", Arrays.asList("n"), Arrays.asList(
+                        new Ast.Stmt.If(
+                                new Ast.Expr.Binary("<=",
+                                        new Ast.Expr.Access(Optional.empty(), "n"),
+                                        new Ast.Expr.Literal(BigInteger.ZERO)
+                                ),
+                                Arrays.asList(new Ast.Stmt.Return(new Ast.Expr.Literal(BigInteger.ZERO))),
+                                Arrays.asList()
+                        ),
+                        new Ast.Stmt.Return(new Ast.Expr.Binary("+",
+                                new Ast.Expr.Access(Optional.empty(), "n"),
+                                new Ast.Expr.Function(Optional.empty(), "sum", Arrays.asList(
+                                        new Ast.Expr.Binary("-",
+                                                new Ast.Expr.Access(Optional.empty(), "n"),
+                                                new Ast.Expr.Literal(BigInteger.ONE)
+                                        )
+                                ))
+                        ))
+                )), new Ast.Method("main", Arrays.asList(), Arrays.asList(
+                        new Ast.Stmt.Return(new Ast.Expr.Literal(BigInteger.ZERO))
+                )))
+        ));
+        VirtualMachine machine = new VirtualMachine(new Scope(null));
+        machine.execute(program);
+        Environment.Function sum = machine.getScope().lookupFunction("sum", 1);
+        Object[] result = new Object[1];
+        Thread thread = new Thread(null, () -> result[0] = sum.invoke(Environment.create(BigInteger.valueOf(50000))).getValue(), "small", 256 * 1024);
+        thread.start();
+        thread.join();
+        Assertions.assertEquals(BigInteger.valueOf(1250025000), result[0]);
+
+        VirtualMachine bounded = new VirtualMachine(new Scope(null), 100);
+        bounded.execute(program);
+        Environment.Function limited = bounded.getScope().lookupFunction("sum", 1);
+        RuntimeException exception = Assertions.assertThrows(RuntimeException.class, () -> limited.invoke(Environment.create(BigInteger.valueOf(100))));
+        Assertions.assertEquals("The maximum call depth of 100 was exceeded in sum/1.", exception.getMessage());
+        Assertions.assertEquals(BigInteger.valueOf(55), limited.invoke(Environment.create(BigInteger.TEN)).getValue());
+    }
+
+    @Test
+    void testGlobalShadowing() {
+        Scope parent = new Scope(null);
+        parent.defineVariable("x", Environment.create(BigInteger.ONE));
+        VirtualMachine machine = new VirtualMachine(parent);
+        machine.execute(new BytecodeCompiler().compile(new Ast.Source(
+                Arrays.asList(),
+                Arrays.asList(
+                        new Ast.Method("read", Arrays.asList(), Arrays.asList(
+                                new Ast.Stmt.Return(new Ast.Expr.Access(Optional.empty(), "x"))
+                        )),
+                        new Ast.Method("main", Arrays.asList(), Arrays.asList())
+                )
+        )));
+        Environment.Function read = machine.getScope().lookupFunction("read", 0);
+        Assertions.assertEquals(BigInteger.ONE, read.invoke().getValue());
+        machine.getScope().defineVariable("x", Environment.create(BigInteger.TEN));
+        Assertions.assertEquals(BigInteger.TEN, read.invoke().getValue());
+    }
+
+    @Test
+    void testDisassemble() {
+        Bytecode.Program program = new BytecodeCompiler().compile(new Ast.Source(
+                Arrays.asList(new Ast.Field("x", Optional.of(new Ast.Expr.Literal(BigInteger.ONE)))),
+                Arrays.asList(new Ast.Method("main", Arrays.asList(), Arrays.asList(
+                        new Ast.Stmt.Return(new Ast.Expr.Binary("+",
+                                new Ast.Expr.Access(Optional.empty(), "x"),
+                                new Ast.Expr.Literal("s")
+                        ))
+                )))
+        ));
+        Assertions.assertEquals(String.join("\n",
+                "== <fields>/0 (locals 0, stack 1) ==",
+                "0000  CONST             0  ; 1",
+                "0002  DEFINE_GLOBAL     1  ; x",
+                "0004  NIL           ",
+                "0005  RETURN        ",
+                "== main/0 (locals 0, stack 2) ==",
+                "0000  LOAD_GLOBAL       0  ; x",
+                "0002  CONST             1  ; \"s\"",
+                "0004  ADD           ",
+                "0005  RETURN        ",
+                "0006  NIL           ",
+                "0007  RETURN        ",
+                ""
+        ), program.disassemble());
+    }
+
+    private static Scope test(Ast.Source ast, Object expected, Scope scope) {
+        Scope object = new Scope(null);
+        object.defineFunction("method", 1, args -> Environment.create("object.method"));
+        scope.defineVariable("object", new Environment.PlcObject(object, "object"));
+        scope.defineVariable("list", Environment.create(IntStream.range(0, 5)
+                .mapToObj(i -> Environment.create(BigInteger.valueOf(i)))
+                .collect(Collectors.toList())));
+        VirtualMachine machine = new VirtualMachine(scope);
+        Bytecode.Program program = new BytecodeCompiler().compile(ast);
+        if (expected != null) {
+            Assertions.assertEquals(expected, machine.execute(program).getValue());
+        } else {
+            Assertions.assertThrows(RuntimeException.class, () -> machine.execute(program));
+        }
+        return machine.getScope();
+    }
+
+}